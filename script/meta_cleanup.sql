@@ -2,4 +2,5 @@ delete from data_commit_info;
 delete from table_info;
 delete from table_path_id;
 delete from table_name_id;
-delete from partition_info;
\ No newline at end of file
+delete from partition_info;
+delete from partition_latest_version;
\ No newline at end of file
@@ -34,6 +34,7 @@ create table if not exists data_commit_info (
     file_ops data_file_op [],
     commit_op text,
     timestamp bigint,
+    file_ops_bin bytea,
     primary key(table_id, partition_desc, commit_id)
 );
 
@@ -44,5 +45,13 @@ create table if not exists partition_info (
     commit_op text,
     snapshot UUID [],
     expression text,
+    checkpoint_version int,
     primary key(table_id, partition_desc, version)
-);
\ No newline at end of file
+);
+
+create table if not exists partition_latest_version (
+    table_id text,
+    partition_desc text,
+    version int,
+    primary key(table_id, partition_desc)
+);
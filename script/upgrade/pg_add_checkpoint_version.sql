@@ -0,0 +1,5 @@
+-- add the delta snapshot checkpoint column to partition_info
+-- existing rows keep a null checkpoint_version and are read as full snapshots.
+-- run this script before upgrading clients, they read checkpoint_version whether or not they write deltas.
+-- lakesoul.meta.snapshot.delta.enabled=true can then be set on any upgraded client.
+alter table partition_info add column if not exists checkpoint_version int;
@@ -0,0 +1,4 @@
+-- add the binary encoded file ops column to data_commit_info
+-- after running this script, set lakesoul.meta.fileOps.encoding=both until every reader is upgraded,
+-- then switch to lakesoul.meta.fileOps.encoding=binary. Existing rows keep being read from file_ops.
+alter table data_commit_info add column if not exists file_ops_bin bytea;
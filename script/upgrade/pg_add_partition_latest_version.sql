@@ -0,0 +1,13 @@
+-- add the table holding the latest version of every partition and fill it from partition_info.
+-- stop all writers while running this script, commits made afterwards keep the table up to date.
+create table if not exists partition_latest_version (
+    table_id text,
+    partition_desc text,
+    version int,
+    primary key(table_id, partition_desc)
+);
+insert into partition_latest_version
+select table_id, partition_desc, max(version) from partition_info
+group by table_id, partition_desc
+on conflict (table_id, partition_desc) do update set version = excluded.version
+where partition_latest_version.version < excluded.version;
@@ -0,0 +1,107 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the client side commit path of {@link DBManager}: how many commits ran into a concurrent
+ * commit of the same partitions, how many retries they needed and how long conflict resolution took.
+ */
+public class CommitMetrics {
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong conflictedCommits = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong maxRetries = new AtomicLong();
+    private final AtomicLong resolveNanos = new AtomicLong();
+    private final AtomicLong backoffNanos = new AtomicLong();
+
+    void recordCommit() {
+        commits.incrementAndGet();
+    }
+
+    void recordConflict(int retryCount, long elapsedNanos, boolean success) {
+        conflictedCommits.incrementAndGet();
+        if (!success) {
+            failedCommits.incrementAndGet();
+        }
+        retries.addAndGet(retryCount);
+        resolveNanos.addAndGet(elapsedNanos);
+        long max;
+        do {
+            max = maxRetries.get();
+        } while (retryCount > max && !maxRetries.compareAndSet(max, retryCount));
+    }
+
+    void recordBackoff(long nanos) {
+        backoffNanos.addAndGet(nanos);
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getConflictedCommits() {
+        return conflictedCommits.get();
+    }
+
+    public long getFailedCommits() {
+        return failedCommits.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getMaxRetries() {
+        return maxRetries.get();
+    }
+
+    public long getResolveMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(resolveNanos.get());
+    }
+
+    public long getBackoffMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(backoffNanos.get());
+    }
+
+    public void reset() {
+        commits.set(0);
+        conflictedCommits.set(0);
+        failedCommits.set(0);
+        retries.set(0);
+        maxRetries.set(0);
+        resolveNanos.set(0);
+        backoffNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "CommitMetrics{" +
+                "commits=" + getCommits() +
+                ", conflictedCommits=" + getConflictedCommits() +
+                ", failedCommits=" + getFailedCommits() +
+                ", retries=" + getRetries() +
+                ", maxRetries=" + getMaxRetries() +
+                ", resolveMillis=" + getResolveMillis() +
+                ", backoffMillis=" + getBackoffMillis() +
+                '}';
+    }
+}
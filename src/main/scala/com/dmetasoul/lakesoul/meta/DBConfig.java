@@ -19,6 +19,69 @@ package com.dmetasoul.lakesoul.meta;
 
 public abstract class DBConfig {
 
-    static int MAX_COMMIT_ATTEMPTS = 5;
+    // jdbc, embedded or the class name of a MetaStore implementation
+    static String META_STORE = DBUtil.getMetaProperties().getProperty("lakesoul.meta.store", "jdbc");
+
+    // journal file of the embedded meta store, kept in memory only when empty
+    static String META_EMBEDDED_PATH = DBUtil.getMetaProperties().getProperty("lakesoul.meta.embedded.path", "");
+
+    static int MAX_COMMIT_ATTEMPTS = Integer.parseInt(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.commit.maxAttempts", "5"));
+
+    // a conflicting commit sleeps a random time below min(maxMillis, baseMillis * 2^attempt) before retrying
+    static long COMMIT_BACKOFF_BASE_MILLIS = Long.parseLong(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.commit.backoff.baseMillis", "10"));
+
+    static long COMMIT_BACKOFF_MAX_MILLIS = Long.parseLong(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.commit.backoff.maxMillis", "1000"));
+
+    // run version bump, snapshot append and table properties update of a commit as one statement,
+    // falling back to the client side conflict resolution only when a concurrent commit wins
+    static boolean SERVER_SIDE_COMMIT = Boolean.parseBoolean(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.commit.serverSide", "false"));
+
+    // number of rows sent per JDBC batch when inserting partition_info and data_commit_info
+    public static int INSERT_BATCH_SIZE = Integer.parseInt(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.insert.batchSize", "1000"));
+
+    static boolean META_CACHE_ENABLED = Boolean.parseBoolean(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.cache.enabled", "true"));
+
+    // table_info has no stored version to validate cached rows against, so a change made by another JVM is only
+    // seen once the cached row expires. Off unless that staleness is acceptable
+    static boolean META_CACHE_TABLE_INFO_ENABLED = Boolean.parseBoolean(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.cache.tableInfo.enabled", "false"));
+
+    static long META_CACHE_TABLE_INFO_SIZE = Long.parseLong(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.cache.tableInfo.size", "1000"));
+
+    static long META_CACHE_TABLE_INFO_EXPIRE_SECONDS = Long.parseLong(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.cache.tableInfo.expireSeconds", "10"));
+
+    // weight of a cached partition is the number of commit ids in its snapshot
+    static long META_CACHE_PARTITION_INFO_WEIGHT = Long.parseLong(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.cache.partitionInfo.maxWeight", "10000000"));
+
+    // weight of a cached data commit is the number of file ops it contains
+    static long META_CACHE_DATA_COMMIT_INFO_WEIGHT = Long.parseLong(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.cache.dataCommitInfo.maxWeight", "5000000"));
+
+    // encoding of data_commit_info file ops: "text" only writes the data_file_op[] column, "both" also writes the
+    // file_ops_bin column while old readers are upgraded, "binary" only writes file_ops_bin.
+    // Readers always prefer file_ops_bin when it is set, so the setting only affects writes
+    public static String FILE_OPS_ENCODING =
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.fileOps.encoding", "text");
+
+    // maximum number of commit ids fetched in one query when listing the files of many partitions
+    static int META_READ_BATCH_COMMITS = Integer.parseInt(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.read.batchCommits", "5000"));
+
+    // store only the appended commit ids in partition_info.snapshot, with a full snapshot every
+    // SNAPSHOT_CHECKPOINT_INTERVAL versions. Only affects writes, delta rows are expanded by every client.
+    public static boolean SNAPSHOT_DELTA_ENABLED = Boolean.parseBoolean(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.snapshot.delta.enabled", "false"));
+
+    public static int SNAPSHOT_CHECKPOINT_INTERVAL = Integer.parseInt(
+            DBUtil.getMetaProperties().getProperty("lakesoul.meta.snapshot.checkpoint.interval", "20"));
 
 }
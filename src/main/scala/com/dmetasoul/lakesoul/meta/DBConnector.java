@@ -20,31 +20,198 @@ package com.dmetasoul.lakesoul.meta;
 import com.dmetasoul.lakesoul.meta.entity.DataBaseProperty;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Pooled connections to the meta database. The pool is created on first use from lakesoul_home, where
+ * lakesoul.pg.maximumPoolSize, minimumIdle, connectionTimeout, idleTimeout, maxLifetime and leakDetectionThreshold
+ * size the pool and every lakesoul.pg.ds.&lt;name&gt; entry is passed to the jdbc driver as data source property.
+ * When lakesoul.pg.replica.url is set, reads wrapped in {@link #readFromReplica} use a separate read-only pool on
+ * that url, configured by the same keys under lakesoul.pg.replica. and falling back to the primary settings.
+ * Connections borrowed with {@link #getConn(String)} are timed per DAO method until they are closed.
+ */
 public class DBConnector {
-    private static HikariConfig config = new HikariConfig();
-    private static HikariDataSource ds;
+    private static final Logger LOG = LoggerFactory.getLogger(DBConnector.class);
+
+    private static final String PRIMARY_PREFIX = "lakesoul.pg.";
+    private static final String REPLICA_PREFIX = "lakesoul.pg.replica.";
+    private static final String DS_PROPERTY_PREFIX = "lakesoul.pg.ds.";
+
+    private static volatile HikariDataSource ds;
+    private static volatile HikariDataSource replicaDs;
+
+    private static final DBMetrics metrics = new DBMetrics();
+
+    // operations of the current thread whose connections are not closed yet, innermost first
+    private static final ThreadLocal<ArrayDeque<Call>> calls = ThreadLocal.withInitial(ArrayDeque::new);
+
+    // whether the current thread runs inside readFromReplica
+    private static final ThreadLocal<Boolean> replicaScope = ThreadLocal.withInitial(() -> false);
+
+    private static class Call {
+        final String op;
+        final long startNanos;
+
+        Call(String op, long startNanos) {
+            this.op = op;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private DBConnector() {}
 
-    static {
+    private static HikariDataSource getDataSource() {
+        HikariDataSource dataSource = ds;
+        if (dataSource == null) {
+            synchronized (DBConnector.class) {
+                if (ds == null) {
+                    ds = createDataSource(PRIMARY_PREFIX);
+                }
+                dataSource = ds;
+            }
+        }
+        return dataSource;
+    }
+
+    private static HikariDataSource getReplicaDataSource() {
+        HikariDataSource dataSource = replicaDs;
+        if (dataSource == null) {
+            synchronized (DBConnector.class) {
+                if (replicaDs == null) {
+                    replicaDs = createDataSource(REPLICA_PREFIX);
+                }
+                dataSource = replicaDs;
+            }
+        }
+        return dataSource;
+    }
+
+    private static HikariDataSource createDataSource(String prefix) {
+        Properties properties = DBUtil.getMetaProperties();
         DataBaseProperty dataBaseProperty = DBUtil.getDBInfo();
+        boolean replica = REPLICA_PREFIX.equals(prefix);
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(replica ? "lakesoul-meta-replica" : "lakesoul-meta");
         config.setDriverClassName( dataBaseProperty.getDriver());
-        config.setJdbcUrl( dataBaseProperty.getUrl());
-        config.setUsername( dataBaseProperty.getUsername());
-        config.setPassword( dataBaseProperty.getPassword());
+        config.setJdbcUrl( replica ? properties.getProperty(REPLICA_PREFIX + "url") : dataBaseProperty.getUrl());
+        config.setUsername( properties.getProperty(prefix + "username", dataBaseProperty.getUsername()));
+        config.setPassword( properties.getProperty(prefix + "password", dataBaseProperty.getPassword()));
+        config.setReadOnly(replica);
+        setIfPresent(properties, prefix, "maximumPoolSize", v -> config.setMaximumPoolSize(Integer.parseInt(v)));
+        setIfPresent(properties, prefix, "minimumIdle", v -> config.setMinimumIdle(Integer.parseInt(v)));
+        setIfPresent(properties, prefix, "connectionTimeout", v -> config.setConnectionTimeout(Long.parseLong(v)));
+        setIfPresent(properties, prefix, "idleTimeout", v -> config.setIdleTimeout(Long.parseLong(v)));
+        setIfPresent(properties, prefix, "maxLifetime", v -> config.setMaxLifetime(Long.parseLong(v)));
+        setIfPresent(properties, prefix, "leakDetectionThreshold",
+                v -> config.setLeakDetectionThreshold(Long.parseLong(v)));
         config.addDataSourceProperty( "cachePrepStmts" , "true" );
         config.addDataSourceProperty( "prepStmtCacheSize" , "250" );
         config.addDataSourceProperty( "prepStmtCacheSqlLimit" , "2048" );
-        ds = new HikariDataSource( config );
+        // let the postgresql driver rewrite batched inserts into multi-row values statements
+        config.addDataSourceProperty( "reWriteBatchedInserts" , properties
+                .getProperty("lakesoul.pg.reWriteBatchedInserts", "true") );
+        // the postgresql driver keeps its own per connection statement cache, prepare server side on first reuse
+        config.addDataSourceProperty( "prepareThreshold" , properties
+                .getProperty("lakesoul.pg.prepareThreshold", "2") );
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(DS_PROPERTY_PREFIX)) {
+                config.addDataSourceProperty(name.substring(DS_PROPERTY_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        return new HikariDataSource( config );
     }
-    private DBConnector() {}
+
+    // prefix.key, or the primary setting of key when a replica setting is absent
+    private static void setIfPresent(Properties properties, String prefix, String key, Consumer<String> setter) {
+        String value = properties.getProperty(prefix + key, properties.getProperty(PRIMARY_PREFIX + key));
+        if (value != null && !value.trim().isEmpty()) {
+            setter.accept(value.trim());
+        }
+    }
+
+    public static boolean hasReadReplica() {
+        String url = DBUtil.getMetaProperties().getProperty(REPLICA_PREFIX + "url");
+        return url != null && !url.trim().isEmpty();
+    }
+
+    /**
+     * Runs read with connections of the read replica, or of the primary when no replica is configured.
+     * The replica may lag behind the primary, callers have to check the result against the versions they need.
+     */
+    public static <T> T readFromReplica(Supplier<T> read) {
+        if (replicaScope.get() || !hasReadReplica()) {
+            return read.get();
+        }
+        replicaScope.set(true);
+        try {
+            return read.get();
+        } finally {
+            replicaScope.set(false);
+        }
+    }
+
+    /**
+     * Overrides lakesoul_home settings, e.g. with the pool size and timeout of the engine configuration.
+     * Only takes effect for a pool created afterwards, returns false when the pool is already running.
+     */
+    public static synchronized boolean configure(Map<String, String> settings) {
+        Properties properties = DBUtil.getMetaProperties();
+        for (Map.Entry<String, String> entry : settings.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue());
+        }
+        return ds == null;
+    }
+
     public static Connection getConn() throws SQLException {
-        return ds.getConnection();
+        return getConn(null);
     }
-    public static void closeConn()  {
+
+    // the connection is timed as op until it is closed by closeConn
+    public static Connection getConn(String op) throws SQLException {
+        boolean replica = replicaScope.get();
+        calls.get().push(new Call(replica && op != null ? op + "@replica" : op, System.nanoTime()));
+        long start = System.nanoTime();
+        Connection conn = (replica ? getReplicaDataSource() : getDataSource()).getConnection();
+        metrics.recordPoolWait(System.nanoTime() - start);
+        return conn;
+    }
+
+    // counts and logs the error against the operation of the current thread, the callers keep their return values
+    public static void recordError(Exception e) {
+        Call call = calls.get().peek();
+        String op = call == null ? null : call.op;
+        metrics.recordError(op);
+        String sqlState = e instanceof SQLException ? ((SQLException) e).getSQLState() : null;
+        LOG.warn("Meta operation {} failed with SQLState {}", op, sqlState, e);
+    }
+
+    public static DBMetrics getMetrics() {
+        return metrics;
+    }
+
+    // null before the first connection is requested
+    public static HikariPoolMXBean getPoolMXBean() {
+        HikariDataSource dataSource = ds;
+        return dataSource == null ? null : dataSource.getHikariPoolMXBean();
+    }
+
+    public static synchronized void closeConn()  {
         if(ds != null) {
             ds.close();
+            ds = null;
+        }
+        if (replicaDs != null) {
+            replicaDs.close();
+            replicaDs = null;
         }
     }
     public static void closeConn(Connection conn) {
@@ -52,9 +219,13 @@ public class DBConnector {
            try {
                conn.close();
            } catch (SQLException e) {
-               e.printStackTrace();
+               LOG.warn("Failed to close meta connection", e);
            }
         }
+        Call call = calls.get().poll();
+        if (call != null && call.op != null) {
+            metrics.recordLatency(call.op, System.nanoTime() - call.startNanos);
+        }
     }
 
     public static void closeConn(Statement statement, Connection conn) {
@@ -62,7 +233,7 @@ public class DBConnector {
             try {
                 statement.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Failed to close meta statement", e);
             }
         }
         closeConn(conn);
@@ -73,7 +244,7 @@ public class DBConnector {
             try {
                 set.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Failed to close meta result set", e);
             }
         }
         closeConn(statement, conn);
@@ -18,48 +18,52 @@
 package com.dmetasoul.lakesoul.meta;
 
 import com.dmetasoul.lakesoul.meta.dao.*;
+import com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore;
 
 public class DBFactory {
-    private static TableInfoDao tableInfoDao;
-    private static TableNameIdDao TableNameIdDao;
-    private static TablePathIdDao tablePathIdDao;
-    private static DataCommitInfoDao dataCommitInfoDao;
-    private static PartitionInfoDao partitionInfoDao;
+    private static MetaStore metaStore;
 
     private DBFactory(){}
 
-    public static TableInfoDao getTableInfoDao() {
-        if (tableInfoDao == null) {
-            tableInfoDao = new TableInfoDao();
+    public static synchronized MetaStore getMetaStore() {
+        if (metaStore == null) {
+            metaStore = createMetaStore(DBConfig.META_STORE);
         }
-        return tableInfoDao;
+        return metaStore;
     }
 
-    public static com.dmetasoul.lakesoul.meta.dao.TableNameIdDao getTableNameIdDao() {
-        if (TableNameIdDao == null) {
-            TableNameIdDao = new TableNameIdDao();
+    public static MetaStore createMetaStore(String name) {
+        switch (name) {
+            case "jdbc":
+                return new JdbcMetaStore();
+            case "embedded":
+                return new EmbeddedMetaStore(DBConfig.META_EMBEDDED_PATH);
+            default:
+                try {
+                    return (MetaStore) Class.forName(name).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("unknown meta store: " + name, e);
+                }
         }
-        return TableNameIdDao;
+    }
+
+    public static TableInfoDao getTableInfoDao() {
+        return getMetaStore().getTableInfoDao();
+    }
+
+    public static TableNameIdDao getTableNameIdDao() {
+        return getMetaStore().getTableNameIdDao();
     }
 
     public static TablePathIdDao getTablePathIdDao() {
-        if (tablePathIdDao == null) {
-            tablePathIdDao = new TablePathIdDao();
-        }
-        return tablePathIdDao;
+        return getMetaStore().getTablePathIdDao();
     }
 
     public static DataCommitInfoDao getDataCommitInfoDao() {
-        if (dataCommitInfoDao == null) {
-            dataCommitInfoDao = new DataCommitInfoDao();
-        }
-        return dataCommitInfoDao;
+        return getMetaStore().getDataCommitInfoDao();
     }
 
     public static PartitionInfoDao getPartitionInfoDao() {
-        if (partitionInfoDao == null) {
-            partitionInfoDao = new PartitionInfoDao();
-        }
-        return partitionInfoDao;
+        return getMetaStore().getPartitionInfoDao();
     }
 }
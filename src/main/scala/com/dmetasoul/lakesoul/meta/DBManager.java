@@ -23,6 +23,9 @@ import com.dmetasoul.lakesoul.meta.entity.*;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 public class DBManager {
     private TableInfoDao tableInfoDao;
@@ -30,13 +33,41 @@ public class DBManager {
     private TablePathIdDao tablePathIdDao;
     private DataCommitInfoDao dataCommitInfoDao;
     private PartitionInfoDao partitionInfoDao;
+    private MetaCache metaCache;
+    private CommitMetrics commitMetrics;
+    private boolean replicaReads;
+
+    // latest partition versions committed through this manager, reads must see at least these versions
+    private final Map<String, Map<String, Integer>> committedVersions = new ConcurrentHashMap<>();
+
+    // tables whose table info was changed through this manager, their table info is read from the primary
+    private final Set<String> updatedTables = ConcurrentHashMap.newKeySet();
+
+    // short names of tables, which are never changed once set, so commits passing the name of a table skip
+    // the check against table_info after the first one
+    private final Map<String, String> shortTableNames = new ConcurrentHashMap<>();
 
     public DBManager() {
-        tableInfoDao = DBFactory.getTableInfoDao();
-        tableNameIdDao = DBFactory.getTableNameIdDao();
-        tablePathIdDao = DBFactory.getTablePathIdDao();
-        dataCommitInfoDao = DBFactory.getDataCommitInfoDao();
-        partitionInfoDao = DBFactory.getPartitionInfoDao();
+        this(DBFactory.getMetaStore());
+    }
+
+    public DBManager(MetaStore metaStore) {
+        tableInfoDao = metaStore.getTableInfoDao();
+        tableNameIdDao = metaStore.getTableNameIdDao();
+        tablePathIdDao = metaStore.getTablePathIdDao();
+        dataCommitInfoDao = metaStore.getDataCommitInfoDao();
+        partitionInfoDao = metaStore.getPartitionInfoDao();
+        metaCache = new MetaCache();
+        commitMetrics = new CommitMetrics();
+        replicaReads = metaStore instanceof JdbcMetaStore && DBConnector.hasReadReplica();
+    }
+
+    public MetaCache getMetaCache() {
+        return metaCache;
+    }
+
+    public CommitMetrics getCommitMetrics() {
+        return commitMetrics;
     }
 
     public boolean isTableExists(String tablePath) {
@@ -112,21 +143,100 @@ public class DBManager {
     }
 
     public TableInfo getTableInfo(String tablePath) {
-        TableInfo tableInfo = tableInfoDao.selectByTablePath(tablePath);
+        TableInfo tableInfo = metaCache.getTableInfo(tablePath);
+        if (tableInfo == null) {
+            tableInfo = readFromReplica(() -> tableInfoDao.selectByTablePath(tablePath));
+            if (replicaReads && (tableInfo == null || updatedTables.contains(tableInfo.getTableId()))) {
+                tableInfo = tableInfoDao.selectByTablePath(tablePath);
+            }
+            metaCache.putTableInfo(tablePath, tableInfo);
+        }
         return tableInfo;
     }
 
     public PartitionInfo getSinglePartitionInfo(String tableId, String partitionDesc) {
-        PartitionInfo p = partitionInfoDao.selectLatestPartitionInfo(tableId, partitionDesc);
-        return p;
+        int committedVersion = committedVersion(tableId, partitionDesc);
+        if (!metaCache.isEnabled()) {
+            PartitionInfo partitionInfo = readFromReplica(() ->
+                    partitionInfoDao.selectLatestPartitionInfo(tableId, partitionDesc));
+            if (partitionInfo.getTableId() == null ? committedVersion >= 0 : partitionInfo.getVersion() < committedVersion) {
+                partitionInfo = partitionInfoDao.selectLatestPartitionInfo(tableId, partitionDesc);
+            }
+            return partitionInfo;
+        }
+        int version = readFromReplica(() -> partitionInfoDao.selectLatestVersion(tableId, partitionDesc));
+        if (version < committedVersion) {
+            version = partitionInfoDao.selectLatestVersion(tableId, partitionDesc);
+        }
+        if (version < 0) {
+            return new PartitionInfo();
+        }
+        return getSinglePartitionInfo(tableId, partitionDesc, version);
     }
     //for partition snapshot with some version
     public PartitionInfo getSinglePartitionInfo(String tableId, String partitionDesc,int version) {
-        PartitionInfo partitionInfo = partitionInfoDao.findByKey(tableId, partitionDesc, version);
+        PartitionInfo partitionInfo = metaCache.getPartitionInfo(tableId, partitionDesc, version);
+        if (partitionInfo == null) {
+            partitionInfo = readFromReplica(() -> partitionInfoDao.findByKey(tableId, partitionDesc, version));
+            if (replicaReads && partitionInfo.getTableId() == null) {
+                partitionInfo = partitionInfoDao.findByKey(tableId, partitionDesc, version);
+            }
+            metaCache.putPartitionInfo(partitionInfo);
+        }
         return partitionInfo;
     }
     public List<PartitionInfo> getAllPartitionInfo(String tableId) {
-        return partitionInfoDao.getPartitionDescByTableId(tableId);
+        if (!metaCache.isEnabled()) {
+            List<PartitionInfo> partitionInfoList = readFromReplica(() -> partitionInfoDao.getPartitionDescByTableId(tableId));
+            if (replicaReads) {
+                Map<String, Integer> versions = new HashMap<>();
+                for (PartitionInfo partitionInfo : partitionInfoList) {
+                    versions.put(partitionInfo.getPartitionDesc(), partitionInfo.getVersion());
+                }
+                if (lagsBehind(tableId, versions)) {
+                    partitionInfoList = partitionInfoDao.getPartitionDescByTableId(tableId);
+                }
+            }
+            return partitionInfoList;
+        }
+        // only read the latest version numbers, and fetch the rows of the versions not cached yet
+        return getPartitionInfoByVersions(tableId, getLatestPartitionVersions(tableId));
+    }
+
+    // latest version of every partition of the table
+    public Map<String, Integer> getLatestPartitionVersions(String tableId) {
+        Map<String, Integer> latestVersions = readFromReplica(() -> partitionInfoDao.getLatestVersions(tableId));
+        if (lagsBehind(tableId, latestVersions)) {
+            latestVersions = partitionInfoDao.getLatestVersions(tableId);
+        }
+        return latestVersions;
+    }
+
+    // the given version of every given partition, versions missing in the meta store are left out
+    public List<PartitionInfo> getPartitionInfoByVersions(String tableId, Map<String, Integer> versions) {
+        List<PartitionInfo> rsList = new ArrayList<>(versions.size());
+        Map<String, Integer> missingVersions = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : versions.entrySet()) {
+            PartitionInfo partitionInfo = metaCache.getPartitionInfo(tableId, entry.getKey(), entry.getValue());
+            if (partitionInfo == null) {
+                missingVersions.put(entry.getKey(), entry.getValue());
+            } else {
+                rsList.add(partitionInfo);
+            }
+        }
+        if (missingVersions.isEmpty()) {
+            return rsList;
+        }
+        List<PartitionInfo> missingList = readFromReplica(() ->
+                partitionInfoDao.findByTableIdAndVersions(tableId, missingVersions));
+        if (replicaReads && missingList.size() < missingVersions.size()) {
+            missingList = partitionInfoDao.findByTableIdAndVersions(tableId, missingVersions);
+        }
+        for (PartitionInfo partitionInfo : missingList) {
+            metaCache.putPartitionInfo(partitionInfo);
+            rsList.add(partitionInfo);
+        }
+        return rsList;
     }
 
     public List<PartitionInfo> getOnePartitionVersions(String tableId,String partitionDesc) {
@@ -137,6 +247,7 @@ public class DBManager {
         TableInfo tableInfo = tableInfoDao.selectByTableId(tableId);
         tableInfo.setTableSchema(tableSchema);
         tableInfoDao.updateByTableId(tableId, "", "", tableSchema);
+        tableInfoUpdated(tableId);
     }
 
     public void deleteTableInfo(String tablePath, String tableId) {
@@ -147,15 +258,25 @@ public class DBManager {
             tableNameIdDao.delete(tableName);
         }
         tableInfoDao.deleteByIdAndPath(tableId, tablePath);
+        metaCache.invalidateTableInfo(tableId);
+        shortTableNames.remove(tableId);
     }
 
     public void deletePartitionInfoByTableId(String tableId) {
         partitionInfoDao.deleteByTableId(tableId);
+        committedVersions.remove(tableId);
+        metaCache.invalidatePartitionInfo(tableId);
     }
 
     public void deletePartitionInfoByTableAndPartition(String tableId, String partitionDesc) {
         partitionInfoDao.deleteByTableIdAndPartitionDesc(tableId, partitionDesc);
+        Map<String, Integer> versions = committedVersions.get(tableId);
+        if (versions != null) {
+            versions.remove(partitionDesc);
+        }
+        metaCache.invalidatePartitionInfo(tableId);
         dataCommitInfoDao.deleteByTableIdAndPartitionDesc(tableId, partitionDesc);
+        metaCache.invalidateDataCommitInfo(tableId);
     }
 
     public void logicDeletePartitionInfoByTableId(String tableId) {
@@ -167,22 +288,27 @@ public class DBManager {
             p.setCommitOp("DeleteCommit");
             p.setExpression("");
         }
-        partitionInfoDao.transactionInsert(curPartitionInfoList);
+        if (partitionInfoDao.transactionInsert(curPartitionInfoList)) {
+            recordCommittedVersions(tableId, curPartitionInfoList);
+        }
     }
 
     public void logicDeletePartitionInfoByRangeId(String tableId, String partitionDesc) {
-        PartitionInfo partitionInfo = getSinglePartitionInfo(tableId, partitionDesc);
+        PartitionInfo partitionInfo = partitionInfoDao.selectLatestPartitionInfo(tableId, partitionDesc);
         int version = partitionInfo.getVersion();
         partitionInfo.setVersion(version + 1);
         partitionInfo.setSnapshot(Arrays.asList());
         partitionInfo.setCommitOp("DeleteCommit");
         partitionInfo.setExpression("");
-        partitionInfoDao.insert(partitionInfo);
+        if (partitionInfoDao.insert(partitionInfo)) {
+            recordCommittedVersions(tableId, Collections.singletonList(partitionInfo));
+        }
     }
 
     public void deleteDataCommitInfo(String tableId, String partitionDesc, UUID commitId) {
         if (StringUtils.isNotBlank(commitId.toString())) {
             dataCommitInfoDao.deleteByPrimaryKey(tableId, partitionDesc, commitId);
+            metaCache.invalidateDataCommitInfo(tableId);
         } else {
             deleteDataCommitInfo(tableId, partitionDesc);
         }
@@ -191,6 +317,7 @@ public class DBManager {
     public void deleteDataCommitInfo(String tableId, String partitionDesc) {
         if (StringUtils.isNotBlank(partitionDesc)) {
             dataCommitInfoDao.deleteByTableIdAndPartitionDesc(tableId, partitionDesc);
+            metaCache.invalidateDataCommitInfo(tableId);
         } else {
             deleteDataCommitInfo(tableId);
         }
@@ -198,6 +325,7 @@ public class DBManager {
 
     public void deleteDataCommitInfo(String tableId) {
         dataCommitInfoDao.deleteByTableId(tableId);
+        metaCache.invalidateDataCommitInfo(tableId);
     }
 
     public void deleteShortTableName(String tableName, String tablePath) {
@@ -217,9 +345,18 @@ public class DBManager {
         TableInfo tableInfo = tableInfoDao.selectByTableId(tableId);
         tableInfo.setProperties(properties);
         tableInfoDao.updatePropertiesById(tableId, properties);
+        tableInfoUpdated(tableId);
     }
 
     public void updateTableShortName(String tablePath, String tableId, String tableName) {
+        String shortTableName = shortTableNames.get(tableId);
+        if (shortTableName != null) {
+            if (!shortTableName.equals(tableName)) {
+                throw new IllegalStateException("Table name already exists " + shortTableName + " for table id "
+                        + tableId);
+            }
+            return;
+        }
 
         TableInfo tableInfo = tableInfoDao.selectByTableId(tableId);
         if (tableInfo.getTableName() != null && !Objects.equals(tableInfo.getTableName(), "")) {
@@ -227,11 +364,14 @@ public class DBManager {
                 throw new IllegalStateException("Table name already exists " + tableInfo.getTableName() + " for table id "
                         + tableId);
             }
+            shortTableNames.put(tableId, tableName);
             return;
         }
         tableInfo.setTableName(tableName);
         tableInfo.setTablePath(tablePath);
         tableInfoDao.updateByTableId(tableId, tableName, tablePath, "");
+        tableInfoUpdated(tableId);
+        shortTableNames.put(tableId, tableName);
 
         TableNameId tableNameId = new TableNameId();
         tableNameId.setTableName(tableName);
@@ -251,6 +391,9 @@ public class DBManager {
         if (tableInfo.getTableName() != null) {
             updateTableShortName(tableInfo.getTablePath(), tableInfo.getTableId(), tableInfo.getTableName());
         }
+        if (DBConfig.SERVER_SIDE_COMMIT && serverSideCommitData(tableId, listPartitionInfo, tableInfo, commitOp)) {
+            return true;
+        }
        updateTableProperties(tableId, tableInfo.getProperties());
 
         List<PartitionInfo> newPartitionList = new ArrayList<>();
@@ -275,6 +418,9 @@ public class DBManager {
             String partitionDesc = curPartition.getPartitionDesc();
             curMap.put(partitionDesc, curPartition);
         }
+        // new versions of a dropped partition are numbered after its tombstone
+        Map<String, Integer> droppedVersions = curMap.size() == rawMap.size() ? Collections.emptyMap()
+                : partitionInfoDao.getLatestVersions(tableId, partitionDescList);
 
         if (commitOp.equals("AppendCommit")|| commitOp.equals("MergeCommit")) {
             for (PartitionInfo partitionInfo : listPartitionInfo) {
@@ -284,7 +430,7 @@ public class DBManager {
                     curPartitionInfo = new PartitionInfo();
                     curPartitionInfo.setTableId(tableId);
                     curPartitionInfo.setPartitionDesc(partitionDesc);
-                    curPartitionInfo.setVersion(-1);
+                    curPartitionInfo.setVersion(droppedVersions.getOrDefault(partitionDesc, -1));
                     curPartitionInfo.setSnapshot(new ArrayList<>());
                 }
                 List<UUID> curSnapshot = curPartitionInfo.getSnapshot();
@@ -307,7 +453,7 @@ public class DBManager {
                     curPartitionInfo = new PartitionInfo();
                     curPartitionInfo.setTableId(tableId);
                     curPartitionInfo.setPartitionDesc(partitionDesc);
-                    curPartitionInfo.setVersion(-1);
+                    curPartitionInfo.setVersion(droppedVersions.getOrDefault(partitionDesc, -1));
                 }
                 int curVersion = curPartitionInfo.getVersion();
                 int newVersion = curVersion + 1;
@@ -324,21 +470,12 @@ public class DBManager {
             throw new IllegalStateException("this operation is Illegal of the table:" + tableInfo.getTablePath());
         }
 
+        commitMetrics.recordCommit();
         boolean notConflict = partitionInfoDao.transactionInsert(newPartitionList);
-        if (!notConflict) {
-            switch(commitOp){
-                case "AppendCommit":
-                    notConflict = appendConflict(tableId, partitionDescList, rawMap, newMap,0);
-                    break;
-                case "CompactionCommit":
-                    notConflict = compactionConflict(tableId, partitionDescList, rawMap, newMap,0);
-                    break;
-                case "UpdateCommit":
-                    notConflict = updateConflict(tableId, partitionDescList, rawMap, newMap, 0);
-                    break;
-                case "MergeCommit":
-                    notConflict = mergeConflict(tableId, partitionDescList, rawMap, newMap, 0);
-            }
+        if (notConflict) {
+            recordCommittedVersions(tableId, newPartitionList);
+        } else {
+            notConflict = resolveCommitConflict(tableId, commitOp, rawMap, newMap);
         }
 
 //        if (notConflict && changeSchema) {
@@ -347,196 +484,294 @@ public class DBManager {
         return notConflict;
     }
 
-    public boolean appendConflict(String tableId, List<String> partitionDescList, Map<String, PartitionInfo> rawMap,
-                                  Map<String, PartitionInfo> newMap, int time) {
-        List<PartitionInfo> curPartitionList = partitionInfoDao.findByTableIdAndParList(tableId, partitionDescList);
-        List<PartitionInfo> newPartitionList = new ArrayList<>();
-        for (PartitionInfo curPartitionInfo : curPartitionList) {
-
-            String partitionDesc = curPartitionInfo.getPartitionDesc();
-            int current = curPartitionInfo.getVersion();
-            int lastVersion = newMap.get(partitionDesc).getVersion();
-
-            if (current + 1 == lastVersion) {
-                newPartitionList.add(newMap.get(partitionDesc));
-            } else {
-                List<UUID> curSnapshot = curPartitionInfo.getSnapshot();
-                int curVersion = curPartitionInfo.getVersion();
-                String curCommitOp = curPartitionInfo.getCommitOp();
-
-                int newVersion = curVersion + 1;
-
-                PartitionInfo partitionInfo = rawMap.get(partitionDesc);
-                if (curCommitOp.equals("CompactionCommit") || curCommitOp.equals("AppendCommit")) {
-                    curSnapshot.addAll(partitionInfo.getSnapshot());
-                    curPartitionInfo.setVersion(newVersion);
-                    curPartitionInfo.setSnapshot(curSnapshot);
-                    curPartitionInfo.setCommitOp(partitionInfo.getCommitOp());
-                    curPartitionInfo.setExpression(partitionInfo.getExpression());
-                    newPartitionList.add(curPartitionInfo);
-                    newMap.put(partitionDesc, curPartitionInfo);
-                } else {
-                    // other operate conflict, so fail
-                    throw new IllegalStateException("this tableId:" + tableId + " exists conflicting manipulation currently!");
+    // single round trip commit, returns false when the client side conflict resolution should take over
+    private boolean serverSideCommitData(String tableId, List<PartitionInfo> listPartitionInfo, TableInfo tableInfo,
+                                         String commitOp) {
+        boolean appendSnapshot;
+        if (commitOp.equals("AppendCommit") || commitOp.equals("MergeCommit")) {
+            appendSnapshot = true;
+        } else if (commitOp.equals("CompactionCommit") || commitOp.equals("UpdateCommit")) {
+            appendSnapshot = false;
+        } else {
+            return false;
+        }
+        boolean success = partitionInfoDao.serverSideCommit(tableId, listPartitionInfo, commitOp, appendSnapshot,
+                DBUtil.jsonToString(tableInfo.getProperties()));
+        if (success) {
+            tableInfoUpdated(tableId);
+            recordCommittedVersions(tableId, listPartitionInfo);
+        }
+        return success;
+    }
+
+    /**
+     * Retry a commit that lost the race against concurrent commits of the same partitions. Each attempt backs off
+     * with jitter, re-reads only the partitions whose latest version moved on and rebases the pending versions of
+     * those onto it, while unchanged partitions keep their prepared version.
+     */
+    private boolean resolveCommitConflict(String tableId, String commitOp, Map<String, PartitionInfo> rawMap,
+                                          Map<String, PartitionInfo> newMap) {
+        long start = System.nanoTime();
+        Map<String, Integer> readVersionMap = new HashMap<>();
+        for (Map.Entry<String, PartitionInfo> entry : newMap.entrySet()) {
+            readVersionMap.put(entry.getKey(), entry.getValue().getVersion() - 1);
+        }
+        boolean success = false;
+        int attempt = 0;
+        try {
+            while (!success && attempt < DBConfig.MAX_COMMIT_ATTEMPTS) {
+                attempt++;
+                if (!backoff(attempt)) {
+                    break;
+                }
+                List<String> pendingList = new ArrayList<>(newMap.keySet());
+                Map<String, Integer> latestVersionMap = partitionInfoDao.getLatestVersions(tableId, pendingList);
+                List<String> conflictList = new ArrayList<>();
+                for (String partitionDesc : pendingList) {
+                    int latestVersion = latestVersionMap.getOrDefault(partitionDesc, -1);
+                    if (latestVersion + 1 != newMap.get(partitionDesc).getVersion()) {
+                        conflictList.add(partitionDesc);
+                    }
+                }
+                if (!conflictList.isEmpty()) {
+                    for (PartitionInfo curPartitionInfo : partitionInfoDao.findByTableIdAndParList(tableId, conflictList)) {
+                        String partitionDesc = curPartitionInfo.getPartitionDesc();
+                        PartitionInfo rebased = rebasePartitionInfo(tableId, commitOp, curPartitionInfo,
+                                rawMap.get(partitionDesc), readVersionMap.get(partitionDesc));
+                        if (rebased == null) {
+                            newMap.remove(partitionDesc);
+                        } else {
+                            newMap.put(partitionDesc, rebased);
+                        }
+                    }
                 }
+                success = newMap.isEmpty() || partitionInfoDao.transactionInsert(new ArrayList<>(newMap.values()));
             }
+            if (success) {
+                recordCommittedVersions(tableId, newMap.values());
+            }
+        } finally {
+            commitMetrics.recordConflict(attempt, System.nanoTime() - start, success);
         }
-        boolean conflictFlag = partitionInfoDao.transactionInsert(newPartitionList);
-        while (!conflictFlag && time < DBConfig.MAX_COMMIT_ATTEMPTS) {
-            conflictFlag = appendConflict(tableId, partitionDescList, rawMap, newMap, time+1);
-        }
-
-        return conflictFlag;
-    }
-
-    public boolean compactionConflict(String tableId, List<String> partitionDescList, Map<String, PartitionInfo> rawMap,
-                                      Map<String, PartitionInfo> newMap, int time) {
-        List<PartitionInfo> curPartitionList = partitionInfoDao.findByTableIdAndParList(tableId, partitionDescList);
-        List<PartitionInfo> newPartitionList = new ArrayList<>();
-        for (PartitionInfo curPartitionInfo : curPartitionList) {
-
-            String partitionDesc = curPartitionInfo.getPartitionDesc();
-            int current = curPartitionInfo.getVersion();
-            int lastVersion = newMap.get(partitionDesc).getVersion();
-
-            if (current + 1 == lastVersion) {
-                newPartitionList.add(newMap.get(partitionDesc));
-            } else {
-                List<UUID> curSnapshot = curPartitionInfo.getSnapshot();
-                int curVersion = curPartitionInfo.getVersion();
-                String curCommitOp = curPartitionInfo.getCommitOp();
-
-                if (curCommitOp.equals("AppendCommit") || curCommitOp.equals("MergeCommit")) {
-                    int newVersion = curVersion + 1;
-                    PartitionInfo newPartitionInfo = new PartitionInfo();
-                    newPartitionInfo.setTableId(tableId);
-                    newPartitionInfo.setPartitionDesc(partitionDesc);
-                    newPartitionInfo.setExpression(rawMap.get(partitionDesc).getExpression());
-                    List<UUID> snapshot = new ArrayList<>();
-
-                    PartitionInfo lastVersionPartitionInfo = partitionInfoDao.findByKey(tableId, partitionDesc,lastVersion-1);
-                    List<UUID> lastSnapshot = lastVersionPartitionInfo.getSnapshot();
-
-                    PartitionInfo partitionInfo = rawMap.get(partitionDesc);
-
-                    newPartitionInfo.setVersion(newVersion);
-                    curSnapshot.removeAll(lastSnapshot);
-                    snapshot.addAll(partitionInfo.getSnapshot());
+        return success;
+    }
+
+    // the next version of a partition on top of its latest version curPartitionInfo, null if the commit is superseded
+    private PartitionInfo rebasePartitionInfo(String tableId, String commitOp, PartitionInfo curPartitionInfo,
+                                              PartitionInfo partitionInfo, int readVersion) {
+        String partitionDesc = curPartitionInfo.getPartitionDesc();
+        String curCommitOp = curPartitionInfo.getCommitOp();
+        List<UUID> curSnapshot = curPartitionInfo.getSnapshot();
+        boolean compatible;
+        switch (commitOp) {
+            case "AppendCommit":
+                compatible = curCommitOp.equals("CompactionCommit") || curCommitOp.equals("AppendCommit");
+                if (compatible) {
+                    curSnapshot.addAll(partitionInfo.getSnapshot());
+                }
+                break;
+            case "MergeCommit":
+                compatible = curCommitOp.equals("CompactionCommit");
+                if (compatible) {
+                    curSnapshot.addAll(partitionInfo.getSnapshot());
+                }
+                break;
+            case "UpdateCommit":
+                compatible = curCommitOp.equals("CompactionCommit");
+                if (compatible) {
+                    curPartitionInfo.setSnapshot(partitionInfo.getSnapshot());
+                }
+                break;
+            case "CompactionCommit":
+                if (curCommitOp.equals("CompactionCommit")) {
+                    // another compaction of the partition won, nothing left to commit
+                    return null;
+                }
+                compatible = curCommitOp.equals("AppendCommit") || curCommitOp.equals("MergeCommit");
+                if (compatible) {
+                    // keep the commits appended since the version the compaction read
+                    if (readVersion >= 0) {
+                        PartitionInfo readPartitionInfo = getSinglePartitionInfo(tableId, partitionDesc, readVersion);
+                        if (readPartitionInfo.getTableId() == null) {
+                            throw new IllegalStateException("version " + readVersion + " of partition " + partitionDesc
+                                    + " of the tableId:" + tableId + " has been cleaned up during compaction");
+                        }
+                        curSnapshot.removeAll(new HashSet<>(readPartitionInfo.getSnapshot()));
+                    }
+                    List<UUID> snapshot = new ArrayList<>(partitionInfo.getSnapshot());
                     snapshot.addAll(curSnapshot);
-                    newPartitionInfo.setSnapshot(snapshot);
-                    newPartitionInfo.setCommitOp(partitionInfo.getCommitOp());
-                    newPartitionList.add(newPartitionInfo);
-                    newMap.put(partitionDesc, newPartitionInfo);
-                } else if (curCommitOp.equals("CompactionCommit")){
-                    partitionDescList.remove(partitionDesc);
-                } else {
-                    // other operate conflict, so fail
-                    throw new IllegalStateException("this tableId:" + tableId + " exists conflicting manipulation currently!");
+                    curPartitionInfo.setSnapshot(snapshot);
                 }
-            }
+                break;
+            default:
+                compatible = false;
         }
-
-        boolean conflictFlag = partitionInfoDao.transactionInsert(newPartitionList);
-        while (!conflictFlag && time < DBConfig.MAX_COMMIT_ATTEMPTS) {
-            conflictFlag = appendConflict(tableId, partitionDescList, rawMap, newMap, time+1);
+        if (!compatible) {
+            // other operate conflict, so fail
+            throw new IllegalStateException("this tableId:" + tableId + " exists conflicting manipulation currently!");
+        }
+        curPartitionInfo.setVersion(curPartitionInfo.getVersion() + 1);
+        curPartitionInfo.setCommitOp(commitOp);
+        curPartitionInfo.setExpression(partitionInfo.getExpression());
+        return curPartitionInfo;
+    }
+
+    // full jitter exponential backoff, returns false when interrupted
+    private boolean backoff(int attempt) {
+        long maxMillis = Math.min(DBConfig.COMMIT_BACKOFF_MAX_MILLIS,
+                DBConfig.COMMIT_BACKOFF_BASE_MILLIS << Math.min(attempt, 20));
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            commitMetrics.recordBackoff(System.nanoTime() - start);
         }
-
-        return conflictFlag;
     }
 
-    public boolean updateConflict(String tableId, List<String> partitionDescList, Map<String, PartitionInfo> rawMap,
-                                  Map<String, PartitionInfo> newMap, int time) {
-        List<PartitionInfo> curPartitionList = partitionInfoDao.findByTableIdAndParList(tableId, partitionDescList);
-        List<PartitionInfo> newPartitionList = new ArrayList<>();
-        for (PartitionInfo curPartitionInfo : curPartitionList) {
-
-            String partitionDesc = curPartitionInfo.getPartitionDesc();
-            int current = curPartitionInfo.getVersion();
-            int lastVersion = newMap.get(partitionDesc).getVersion();
-
-            if (current + 1 == lastVersion) {
-                newPartitionList.add(newMap.get(partitionDesc));
-            } else {
-                int curVersion = curPartitionInfo.getVersion();
-                String curCommitOp = curPartitionInfo.getCommitOp();
+    public List<DataCommitInfo> getTableSinglePartitionDataInfo(PartitionInfo partitionInfo) {
+        String tableId = partitionInfo.getTableId();
+        String partitionDesc = partitionInfo.getPartitionDesc();
+        List<UUID> snapshotList = partitionInfo.getSnapshot();
 
-                int newVersion = curVersion + 1;
+        return getDataCommitInfoList(tableId, partitionDesc, snapshotList);
+    }
 
-                PartitionInfo partitionInfo = rawMap.get(partitionDesc);
-                if (curCommitOp.equals("CompactionCommit")) {
-                    curPartitionInfo.setVersion(newVersion);
-                    curPartitionInfo.setSnapshot(partitionInfo.getSnapshot());
-                    curPartitionInfo.setCommitOp(partitionInfo.getCommitOp());
-                    curPartitionInfo.setExpression(partitionInfo.getExpression());
-                    newPartitionList.add(curPartitionInfo);
-                    newMap.put(partitionDesc, curPartitionInfo);
-                } else {
-                    // other operate conflict, so fail
-                    throw new IllegalStateException("this tableId:" + tableId + " exists conflicting manipulation currently!");
+    /**
+     * Data commits of the snapshots of many partitions, in the order of the given partitions and of their snapshots.
+     * Commits missing from the cache are fetched with one query per META_READ_BATCH_COMMITS commit ids
+     * instead of one query per partition.
+     */
+    public List<List<DataCommitInfo>> getTableDataInfo(List<PartitionInfo> partitionInfoList) {
+        Map<String, Map<String, Map<UUID, DataCommitInfo>>> commitMap = new HashMap<>();
+        Map<String, List<String>> missingPartitionDescList = new HashMap<>();
+        Map<String, List<UUID>> missingCommitIdList = new HashMap<>();
+        for (PartitionInfo partitionInfo : partitionInfoList) {
+            String tableId = partitionInfo.getTableId();
+            String partitionDesc = partitionInfo.getPartitionDesc();
+            Map<UUID, DataCommitInfo> partitionCommits = commitMap
+                    .computeIfAbsent(tableId, k -> new HashMap<>())
+                    .computeIfAbsent(partitionDesc, k -> new HashMap<>());
+            for (UUID commitId : partitionInfo.getSnapshot()) {
+                if (partitionCommits.containsKey(commitId)) {
+                    continue;
+                }
+                DataCommitInfo dataCommitInfo = metaCache.getDataCommitInfo(tableId, partitionDesc, commitId);
+                partitionCommits.put(commitId, dataCommitInfo);
+                if (dataCommitInfo == null) {
+                    missingPartitionDescList.computeIfAbsent(tableId, k -> new ArrayList<>()).add(partitionDesc);
+                    missingCommitIdList.computeIfAbsent(tableId, k -> new ArrayList<>()).add(commitId);
                 }
             }
         }
-        boolean conflictFlag = partitionInfoDao.transactionInsert(newPartitionList);
-        while (!conflictFlag && time < DBConfig.MAX_COMMIT_ATTEMPTS) {
-            conflictFlag = updateConflict(tableId, partitionDescList, rawMap, newMap, time+1);
+        for (Map.Entry<String, List<UUID>> entry : missingCommitIdList.entrySet()) {
+            String tableId = entry.getKey();
+            List<String> partitionDescList = missingPartitionDescList.get(tableId);
+            List<UUID> commitIdList = entry.getValue();
+            for (int from = 0; from < commitIdList.size(); from += DBConfig.META_READ_BATCH_COMMITS) {
+                int to = Math.min(from + DBConfig.META_READ_BATCH_COMMITS, commitIdList.size());
+                for (DataCommitInfo dataCommitInfo : selectDataCommitInfoBatch(tableId,
+                        partitionDescList.subList(from, to), commitIdList.subList(from, to))) {
+                    metaCache.putDataCommitInfo(dataCommitInfo);
+                    commitMap.get(tableId).get(dataCommitInfo.getPartitionDesc())
+                            .put(dataCommitInfo.getCommitId(), dataCommitInfo);
+                }
+            }
         }
-        return conflictFlag;
+        List<List<DataCommitInfo>> rsList = new ArrayList<>(partitionInfoList.size());
+        for (PartitionInfo partitionInfo : partitionInfoList) {
+            Map<UUID, DataCommitInfo> partitionCommits =
+                    commitMap.get(partitionInfo.getTableId()).get(partitionInfo.getPartitionDesc());
+            List<DataCommitInfo> commitList = new ArrayList<>(partitionInfo.getSnapshot().size());
+            for (UUID commitId : partitionInfo.getSnapshot()) {
+                DataCommitInfo dataCommitInfo = partitionCommits.get(commitId);
+                if (dataCommitInfo != null) {
+                    commitList.add(dataCommitInfo);
+                }
+            }
+            rsList.add(commitList);
+        }
+        return rsList;
     }
 
-    public boolean mergeConflict(String tableId, List<String> partitionDescList, Map<String, PartitionInfo> rawMap,
-                                 Map<String, PartitionInfo> newMap, int time) {
-        List<PartitionInfo> curPartitionList = partitionInfoDao.findByTableIdAndParList(tableId, partitionDescList);
-        List<PartitionInfo> newPartitionList = new ArrayList<>();
-        for (PartitionInfo curPartitionInfo : curPartitionList) {
-
-            String partitionDesc = curPartitionInfo.getPartitionDesc();
-            int current = curPartitionInfo.getVersion();
-            int lastVersion = newMap.get(partitionDesc).getVersion();
+    public List<DataCommitInfo> getPartitionSnapshot(String tableId, String partitionDesc, int version) {
+        PartitionInfo partitionInfo = getSinglePartitionInfo(tableId, partitionDesc, version);
+        List<UUID> commitList = partitionInfo.getSnapshot();
+        return getDataCommitInfoList(tableId, partitionDesc, commitList);
+    }
 
-            if (current + 1 == lastVersion) {
-                newPartitionList.add(newMap.get(partitionDesc));
+    // data commits are write-once, so only the commit ids missing from the cache are fetched
+    private List<DataCommitInfo> getDataCommitInfoList(String tableId, String partitionDesc, List<UUID> commitIdList) {
+        if (!metaCache.isEnabled()) {
+            return selectDataCommitInfoList(tableId, partitionDesc, commitIdList);
+        }
+        Map<UUID, DataCommitInfo> commitMap = new HashMap<>();
+        List<UUID> missingCommitIdList = new ArrayList<>();
+        for (UUID commitId : commitIdList) {
+            DataCommitInfo dataCommitInfo = metaCache.getDataCommitInfo(tableId, partitionDesc, commitId);
+            if (dataCommitInfo == null) {
+                missingCommitIdList.add(commitId);
             } else {
-                List<UUID> curSnapshot = curPartitionInfo.getSnapshot();
-                int curVersion = curPartitionInfo.getVersion();
-                String curCommitOp = curPartitionInfo.getCommitOp();
-
-                int newVersion = curVersion + 1;
-
-                PartitionInfo partitionInfo = rawMap.get(partitionDesc);
-                if (curCommitOp.equals("CompactionCommit")) {
-                    curSnapshot.addAll(partitionInfo.getSnapshot());
-                    curPartitionInfo.setVersion(newVersion);
-                    curPartitionInfo.setSnapshot(curSnapshot);
-                    curPartitionInfo.setCommitOp(partitionInfo.getCommitOp());
-                    curPartitionInfo.setExpression(partitionInfo.getExpression());
-                    newPartitionList.add(curPartitionInfo);
-                    newMap.put(partitionDesc, curPartitionInfo);
-                } else {
-                    // other operate conflict, so fail
-                    throw new IllegalStateException("this tableId:" + tableId + " exists conflicting manipulation currently!");
-                }
+                commitMap.put(commitId, dataCommitInfo);
             }
         }
-        boolean conflictFlag = partitionInfoDao.transactionInsert(newPartitionList);
-        while (!conflictFlag && time < DBConfig.MAX_COMMIT_ATTEMPTS) {
-            conflictFlag = mergeConflict(tableId, partitionDescList, rawMap, newMap, time+1);
+        if (!missingCommitIdList.isEmpty()) {
+            for (DataCommitInfo dataCommitInfo : selectDataCommitInfoList(tableId, partitionDesc, missingCommitIdList)) {
+                metaCache.putDataCommitInfo(dataCommitInfo);
+                commitMap.put(dataCommitInfo.getCommitId(), dataCommitInfo);
+            }
         }
-
-        return conflictFlag;
+        List<DataCommitInfo> rsList = new ArrayList<>(commitMap.size());
+        for (UUID commitId : commitIdList) {
+            DataCommitInfo dataCommitInfo = commitMap.get(commitId);
+            if (dataCommitInfo != null) {
+                rsList.add(dataCommitInfo);
+            }
+        }
+        return rsList;
     }
 
-    public List<DataCommitInfo> getTableSinglePartitionDataInfo(PartitionInfo partitionInfo) {
-        String tableId = partitionInfo.getTableId();
-        String partitionDesc = partitionInfo.getPartitionDesc();
-        List<UUID> snapshotList = partitionInfo.getSnapshot();
+    // the replica may not have received all commits yet, in which case the primary is asked
+    private List<DataCommitInfo> selectDataCommitInfoList(String tableId, String partitionDesc, List<UUID> commitIdList) {
+        List<DataCommitInfo> rsList = readFromReplica(() ->
+                dataCommitInfoDao.selectByTableIdPartitionDescCommitList(tableId, partitionDesc, commitIdList));
+        if (replicaReads && rsList.size() < new HashSet<>(commitIdList).size()) {
+            rsList = dataCommitInfoDao.selectByTableIdPartitionDescCommitList(tableId, partitionDesc, commitIdList);
+        }
+        return rsList;
+    }
 
-        return dataCommitInfoDao.selectByTableIdPartitionDescCommitList(tableId, partitionDesc, snapshotList);
+    private List<DataCommitInfo> selectDataCommitInfoBatch(String tableId, List<String> partitionDescList,
+                                                           List<UUID> commitIdList) {
+        List<DataCommitInfo> rsList = readFromReplica(() ->
+                dataCommitInfoDao.selectByTableIdCommitPairs(tableId, partitionDescList, commitIdList));
+        if (replicaReads && rsList.size() < commitIdList.size()) {
+            rsList = dataCommitInfoDao.selectByTableIdCommitPairs(tableId, partitionDescList, commitIdList);
+        }
+        return rsList;
     }
 
-    public List<DataCommitInfo> getPartitionSnapshot(String tableId, String partitionDesc, int version) {
-        PartitionInfo partitionInfo = partitionInfoDao.findByKey(tableId, partitionDesc, version);
-        List<UUID> commitList = partitionInfo.getSnapshot();
-        return dataCommitInfoDao.selectByTableIdPartitionDescCommitList(tableId, partitionDesc, commitList);
+    /**
+     * Remove partition versions older than the latest retainVersions of each partition, then the data commits
+     * no longer referenced by any version and older than retentionMillis.
+     */
+    public MetaCleanupResult cleanupMetaVersions(String tableId, int retainVersions, long retentionMillis) {
+        if (retainVersions < 1) {
+            throw new IllegalArgumentException("at least one version of each partition must be retained");
+        }
+        MetaCleanupResult result = new MetaCleanupResult();
+        long[] partitionResult = partitionInfoDao.deleteExpiredVersions(tableId, retainVersions);
+        result.setPartitionInfoRows(partitionResult[0]);
+        result.setPartitionInfoBytes(partitionResult[1]);
+        long[] commitResult = dataCommitInfoDao.deleteUnreferenced(tableId, System.currentTimeMillis() - retentionMillis);
+        result.setDataCommitInfoRows(commitResult[0]);
+        result.setDataCommitInfoBytes(commitResult[1]);
+        metaCache.invalidatePartitionInfo(tableId);
+        metaCache.invalidateDataCommitInfo(tableId);
+        return result;
     }
 
     public boolean rollbackPartitionByVersion(String tableId, String partitionDesc, int version) {
@@ -546,7 +781,56 @@ public class DBManager {
         }
         PartitionInfo curPartitionInfo = partitionInfoDao.selectLatestPartitionInfo(tableId, partitionDesc);
         partitionInfo.setVersion(curPartitionInfo.getVersion() + 1);
-        return partitionInfoDao.insert(partitionInfo);
+        boolean success = partitionInfoDao.insert(partitionInfo);
+        if (success) {
+            recordCommittedVersions(tableId, Collections.singletonList(partitionInfo));
+        }
+        return success;
+    }
+
+    /**
+     * Snapshot reads go to the read replica when one is configured. Replica results are checked against the
+     * versions committed through this manager and read again from the primary when the replica lags behind,
+     * so a reader always sees its own commits.
+     */
+    private <T> T readFromReplica(Supplier<T> read) {
+        return replicaReads ? DBConnector.readFromReplica(read) : read.get();
+    }
+
+    private void recordCommittedVersions(String tableId, Collection<PartitionInfo> partitionInfoList) {
+        if (!replicaReads) {
+            return;
+        }
+        Map<String, Integer> versions = committedVersions.computeIfAbsent(tableId, k -> new ConcurrentHashMap<>());
+        for (PartitionInfo partitionInfo : partitionInfoList) {
+            versions.merge(partitionInfo.getPartitionDesc(), partitionInfo.getVersion(), Math::max);
+        }
+    }
+
+    // -1 if no version of the partition was committed through this manager
+    private int committedVersion(String tableId, String partitionDesc) {
+        Map<String, Integer> versions = committedVersions.get(tableId);
+        return versions == null ? -1 : versions.getOrDefault(partitionDesc, -1);
+    }
+
+    private boolean lagsBehind(String tableId, Map<String, Integer> latestVersions) {
+        Map<String, Integer> versions = committedVersions.get(tableId);
+        if (versions == null) {
+            return false;
+        }
+        for (Map.Entry<String, Integer> entry : versions.entrySet()) {
+            if (latestVersions.getOrDefault(entry.getKey(), -1) < entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void tableInfoUpdated(String tableId) {
+        if (replicaReads) {
+            updatedTables.add(tableId);
+        }
+        metaCache.invalidateTableInfo(tableId);
     }
 
 }
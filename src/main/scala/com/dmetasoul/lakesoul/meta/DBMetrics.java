@@ -0,0 +1,121 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Meta database metrics of this process: latency of every DAO method from borrowing its connection until
+ * returning it, time spent waiting for a pooled connection, and errors per DAO method.
+ * Operations are named "Dao.method" and show up on first use, listeners are told about every new operation
+ * so that metric registries can add it.
+ */
+public class DBMetrics {
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final CopyOnWriteArrayList<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    void recordLatency(String op, long nanos) {
+        latencyOf(op).record(nanos);
+    }
+
+    void recordPoolWait(long nanos) {
+        poolWait.record(nanos);
+    }
+
+    void recordError(String op) {
+        String key = op == null ? "unknown" : op;
+        latencyOf(key);
+        errors.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private LatencyHistogram latencyOf(String op) {
+        LatencyHistogram histogram = latencies.get(op);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = latencies.putIfAbsent(op, created);
+            if (histogram == null) {
+                histogram = created;
+                for (Consumer<String> listener : listeners) {
+                    listener.accept(op);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    // the listener is called for the operations seen so far and for every operation seen later
+    public void addOperationListener(Consumer<String> listener) {
+        listeners.add(listener);
+        for (String op : latencies.keySet()) {
+            listener.accept(op);
+        }
+    }
+
+    public LatencyHistogram getLatency(String op) {
+        return latencies.get(op);
+    }
+
+    public Map<String, LatencyHistogram> getLatencies() {
+        return Collections.unmodifiableMap(new TreeMap<>(latencies));
+    }
+
+    public LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    public long getErrorCount(String op) {
+        AtomicLong count = errors.get(op);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getErrorCount() {
+        long total = 0;
+        for (AtomicLong count : errors.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong count : errors.values()) {
+            count.set(0);
+        }
+        poolWait.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DBMetrics{poolWait={").append(poolWait).append('}');
+        for (Map.Entry<String, LatencyHistogram> entry : getLatencies().entrySet()) {
+            sb.append(", ").append(entry.getKey()).append("={").append(entry.getValue())
+                    .append(", errors=").append(getErrorCount(entry.getKey())).append('}');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -34,6 +34,7 @@ import java.util.Properties;
 import java.util.UUID;
 
 public class DBUtil {
+    private static Properties metaProperties;
 
     public static void init() {
         String tableInfo = "create table if not exists table_info (" +
@@ -68,6 +69,7 @@ public class DBUtil {
                 "file_ops data_file_op[]," +
                 "commit_op text," +
                 "timestamp bigint," +
+                "file_ops_bin bytea," +
                 "primary key(table_id, partition_desc, commit_id)" +
                 ")";
         String partitionInfo = "create table if not exists partition_info (" +
@@ -77,8 +79,16 @@ public class DBUtil {
                 "commit_op text," +
                 "snapshot UUID[]," +
                 "expression text," +
+                "checkpoint_version int," +
                 "primary key(table_id, partition_desc, version)" +
                 ")";
+        // latest version of every partition, maintained together with the inserts into partition_info
+        String partitionLatestVersion = "create table if not exists partition_latest_version (" +
+                "table_id text," +
+                "partition_desc text," +
+                "version int," +
+                "primary key(table_id, partition_desc)" +
+                ")";
         Connection conn = null;
         Statement stmt = null;
         try {
@@ -90,14 +100,28 @@ public class DBUtil {
             stmt.execute(dataFileOp);
             stmt.execute(dataCommitInfo);
             stmt.execute(partitionInfo);
+            stmt.execute(partitionLatestVersion);
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
-            DBConnector.closeConn();
+            DBConnector.closeConn(stmt, conn);
         }
     }
 
     public static DataBaseProperty getDBInfo() {
+        Properties properties = getMetaProperties();
+        DataBaseProperty dataBaseProperty = new DataBaseProperty();
+        dataBaseProperty.setDriver(properties.getProperty("lakesoul.pg.driver", "org.postgresql.Driver"));
+        dataBaseProperty.setUrl(properties.getProperty("lakesoul.pg.url", "jdbc:postgresql://127.0.0.1:5433/test_lakesoul_meta?stringtype=unspecified"));
+        dataBaseProperty.setUsername(properties.getProperty("lakesoul.pg.username", "yugabyte"));
+        dataBaseProperty.setPassword(properties.getProperty("lakesoul.pg.password", "yugabyte"));
+        return dataBaseProperty;
+    }
+
+    public static synchronized Properties getMetaProperties() {
+        if (metaProperties != null) {
+            return metaProperties;
+        }
         String configFile = System.getenv("lakesoul_home");
         Properties properties = new Properties();
         if (configFile != null ) {
@@ -107,12 +131,8 @@ public class DBUtil {
                 e.printStackTrace();
             }
         }
-        DataBaseProperty dataBaseProperty = new DataBaseProperty();
-        dataBaseProperty.setDriver(properties.getProperty("lakesoul.pg.driver", "org.postgresql.Driver"));
-        dataBaseProperty.setUrl(properties.getProperty("lakesoul.pg.url", "jdbc:postgresql://127.0.0.1:5433/test_lakesoul_meta?stringtype=unspecified"));
-        dataBaseProperty.setUsername(properties.getProperty("lakesoul.pg.username", "yugabyte"));
-        dataBaseProperty.setPassword(properties.getProperty("lakesoul.pg.password", "yugabyte"));
-        return dataBaseProperty;
+        metaProperties = properties;
+        return properties;
     }
 
     public static void cleanAllTable() {
@@ -121,6 +141,7 @@ public class DBUtil {
         String tablePathId = "truncate table table_path_id";
         String dataCommitInfo = "truncate table data_commit_info";
         String partitionInfo = "truncate table partition_info";
+        String partitionLatestVersion = "truncate table partition_latest_version";
         Connection conn = null;
         Statement stmt = null;
         try {
@@ -131,11 +152,12 @@ public class DBUtil {
             stmt.addBatch(tablePathId);
             stmt.addBatch(dataCommitInfo);
             stmt.addBatch(partitionInfo);
+            stmt.addBatch(partitionLatestVersion);
             stmt.executeBatch();
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
-            DBConnector.closeConn();
+            DBConnector.closeConn(stmt, conn);
         }
     }
 
@@ -200,30 +222,6 @@ public class DBUtil {
         return rsList;
     }
 
-    public static String changeUUIDListToString(List<UUID> uuidList) {
-        StringBuilder sb = new StringBuilder();
-        if (uuidList.size() == 0) {
-            return sb.toString();
-        }
-        for (UUID uuid : uuidList) {
-            sb.append(String.format("'%s',", uuid.toString()));
-        }
-        sb = new StringBuilder(sb.substring(0, sb.length()-1));
-        return sb.toString();
-    }
-
-    public static String changeUUIDListToOrderString(List<UUID> uuidList) {
-        StringBuilder sb = new StringBuilder();
-        if (uuidList.size() == 0) {
-            return sb.toString();
-        }
-        for (UUID uuid : uuidList) {
-            sb.append(String.format("%s,", uuid.toString()));
-        }
-        sb = new StringBuilder(sb.substring(0, sb.length()-1));
-        return sb.toString();
-    }
-
     public static List<UUID> changeStringToUUIDList(String s) {
         List<UUID> uuidList = new ArrayList<>();
         if (!s.startsWith("{") || !s.endsWith("}")) {
@@ -238,15 +236,4 @@ public class DBUtil {
         return uuidList;
     }
 
-    public static String changePartitionDescListToString(List<String> partitionDescList) {
-        StringBuilder sb = new StringBuilder();
-        if (partitionDescList.size() < 1) {
-            return sb.append("''").toString();
-        }
-        for (String s : partitionDescList) {
-            sb.append(String.format("'%s',", s));
-        }
-        return sb.substring(0, sb.length()-1);
-    }
-
 }
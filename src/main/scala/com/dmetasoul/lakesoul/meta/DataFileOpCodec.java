@@ -0,0 +1,148 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+import com.dmetasoul.lakesoul.meta.entity.DataFileOp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of data_commit_info.file_ops, stored in the file_ops_bin bytea column.
+ * <p>
+ * Layout: format version byte, varint op count, then for every op
+ * varint length of the path prefix shared with the previous path, varint suffix length, suffix bytes,
+ * dictionary reference of file_op, varint size, dictionary reference of file_exist_cols.
+ * A dictionary reference is a varint index, 0 stands for null and an index equal to the current dictionary
+ * size introduces a new entry followed by its varint length and bytes.
+ */
+public class DataFileOpCodec {
+    private static final byte FORMAT_VERSION = 1;
+
+    private DataFileOpCodec() {}
+
+    public static byte[] encode(List<DataFileOp> dataFileOpList) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + dataFileOpList.size() * 32);
+        out.write(FORMAT_VERSION);
+        writeVarLong(out, dataFileOpList.size());
+        Map<String, Integer> dictionary = new HashMap<>();
+        byte[] lastPath = new byte[0];
+        for (DataFileOp dataFileOp : dataFileOpList) {
+            byte[] path = dataFileOp.getPath().getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int maxShared = Math.min(path.length, lastPath.length);
+            while (shared < maxShared && path[shared] == lastPath[shared]) {
+                shared++;
+            }
+            writeVarLong(out, shared);
+            writeVarLong(out, path.length - shared);
+            out.write(path, shared, path.length - shared);
+            lastPath = path;
+
+            writeDictionaryRef(out, dictionary, dataFileOp.getFileOp());
+            writeVarLong(out, dataFileOp.getSize());
+            writeDictionaryRef(out, dictionary, dataFileOp.getFileExistCols());
+        }
+        return out.toByteArray();
+    }
+
+    public static List<DataFileOp> decode(byte[] bytes) {
+        int[] pos = new int[]{0};
+        byte version = bytes[pos[0]++];
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("unsupported file ops encoding version: " + version);
+        }
+        int count = (int) readVarLong(bytes, pos);
+        List<DataFileOp> rsList = new ArrayList<>(count);
+        List<String> dictionary = new ArrayList<>();
+        byte[] pathBuffer = new byte[256];
+        int pathLength = 0;
+        for (int i = 0; i < count; i++) {
+            int shared = (int) readVarLong(bytes, pos);
+            int suffix = (int) readVarLong(bytes, pos);
+            pathLength = shared + suffix;
+            if (pathLength > pathBuffer.length) {
+                pathBuffer = Arrays.copyOf(pathBuffer, Math.max(pathLength, pathBuffer.length * 2));
+            }
+            System.arraycopy(bytes, pos[0], pathBuffer, shared, suffix);
+            pos[0] += suffix;
+
+            DataFileOp dataFileOp = new DataFileOp();
+            dataFileOp.setPath(new String(pathBuffer, 0, pathLength, StandardCharsets.UTF_8));
+            dataFileOp.setFileOp(readDictionaryRef(bytes, pos, dictionary));
+            dataFileOp.setSize(readVarLong(bytes, pos));
+            dataFileOp.setFileExistCols(readDictionaryRef(bytes, pos, dictionary));
+            rsList.add(dataFileOp);
+        }
+        return rsList;
+    }
+
+    private static void writeDictionaryRef(ByteArrayOutputStream out, Map<String, Integer> dictionary, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarLong(out, index);
+        } else {
+            index = dictionary.size() + 1;
+            dictionary.put(value, index);
+            writeVarLong(out, index);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static String readDictionaryRef(byte[] bytes, int[] pos, List<String> dictionary) {
+        int index = (int) readVarLong(bytes, pos);
+        if (index == 0) {
+            return null;
+        }
+        if (index <= dictionary.size()) {
+            return dictionary.get(index - 1);
+        }
+        int length = (int) readVarLong(bytes, pos);
+        String value = new String(bytes, pos[0], length, StandardCharsets.UTF_8);
+        pos[0] += length;
+        dictionary.add(value);
+        return value;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -22,7 +22,7 @@ import org.apache.spark.sql.lakesoul.utils.{DataFileInfo, PartitionInfo}
 import java.util
 import java.util.UUID
 
-import scala.collection.{JavaConverters, mutable}
+import scala.collection.JavaConverters
 import scala.collection.JavaConverters.{asJavaIterableConverter, asScalaBufferConverter}
 import scala.collection.mutable.ArrayBuffer
 object DataOperation extends Logging {
@@ -31,9 +31,12 @@ object DataOperation extends Logging {
 
     val file_info_buf = new ArrayBuffer[DataFileInfo]()
 
-    for (partition_info <- partition_info_arr) {
+    //commits of all partitions are fetched in batches rather than with one query per partition
+    val dataCommitInfoLists = MetaVersion.dbManager.getTableDataInfo(
+      JavaConverters.seqAsJavaList(partition_info_arr.map(toMetaPartitionInfo))).asScala
+    for ((partition_info, dataCommitInfoList) <- partition_info_arr.zip(dataCommitInfoLists)) {
 
-      file_info_buf ++= getSinglePartitionDataInfo(partition_info)
+      file_info_buf ++= getSinglePartitionDataInfo(partition_info.range_value, dataCommitInfoList.asScala)
     }
 
     file_info_buf.toArray
@@ -41,78 +44,69 @@ object DataOperation extends Logging {
 
   //get fies info in this partition that match the current read version
   def getSinglePartitionDataInfo(partition_info: PartitionInfo): ArrayBuffer[DataFileInfo] = {
-    val file_arr_buf = new ArrayBuffer[DataFileInfo]()
-    val file_res_arr_buf = new ArrayBuffer[DataFileInfo]()
+    val dataCommitInfoList =
+      MetaVersion.dbManager.getTableSinglePartitionDataInfo(toMetaPartitionInfo(partition_info)).asScala
+    getSinglePartitionDataInfo(partition_info.range_value, dataCommitInfoList)
+  }
 
-    val dupCheck = new mutable.HashSet[String]()
+  private def toMetaPartitionInfo(partition_info: PartitionInfo): entity.PartitionInfo = {
     val metaPartitionInfo = new entity.PartitionInfo()
     metaPartitionInfo.setTableId(partition_info.table_id)
     metaPartitionInfo.setPartitionDesc(partition_info.range_value)
     metaPartitionInfo.setSnapshot(JavaConverters.bufferAsJavaList(partition_info.read_files.toBuffer))
-    val dataCommitInfoList = MetaVersion.dbManager.getTableSinglePartitionDataInfo(metaPartitionInfo).asScala.toArray
-    for (metaDataCommitInfo <- dataCommitInfoList) {
-      val fileOps = metaDataCommitInfo.getFileOps.asScala.toArray
-      for (file <- fileOps) {
-        file_arr_buf += DataFileInfo(
-          partition_info.range_value,
-          file.getPath(),
-          file.getFileOp(),
-          file.getSize(),
-          metaDataCommitInfo.getTimestamp(),
-          file.getFileExistCols()
-        )
-      }
-    }
-    if(file_arr_buf.length>1){
-      for(i <- Range(file_arr_buf.size-1,-1,-1)){
-        if(file_arr_buf(i).file_op.equals("del")) {
-          dupCheck.add(file_arr_buf(i).path)
-        }else{
-          if(dupCheck.size==0 || !dupCheck.contains(file_arr_buf(i).path)){
-            file_res_arr_buf += file_arr_buf(i)
-          }
-        }
-      }
-      file_res_arr_buf.reverse
-    }else{
-      file_arr_buf.filter(_.file_op.equals("add"))
-    }
+    metaPartitionInfo
   }
 
   def getSinglePartitionDataInfo(table_id: String, partition_desc: String, version: Int): ArrayBuffer[DataFileInfo] = {
-    val file_arr_buf = new ArrayBuffer[DataFileInfo]()
-    val file_res_arr_buf = new ArrayBuffer[DataFileInfo]()
-
-    val dupCheck = new mutable.HashSet[String]()
-    val dataCommitInfoList =  MetaVersion.dbManager.getPartitionSnapshot(table_id, partition_desc, version).asScala.toArray
-    dataCommitInfoList.foreach( data_commit_info => {
-      val fileOps = data_commit_info.getFileOps.asScala.toArray
-      fileOps.foreach( file => {
-        file_arr_buf += DataFileInfo(
-          data_commit_info.getPartitionDesc,
-          file.getPath(),
-          file.getFileOp(),
-          file.getSize(),
-          data_commit_info.getTimestamp(),
-          file.getFileExistCols()
-        )
-      })
-    })
-
-    if(file_arr_buf.length>1){
-      for(i <- Range(file_arr_buf.size-1,-1,-1)){
-        if(file_arr_buf(i).file_op.equals("del")) {
-          dupCheck.add(file_arr_buf(i).path)
-        }else{
-          if(dupCheck.size==0 || !dupCheck.contains(file_arr_buf(i).path) ){
-            file_res_arr_buf += file_arr_buf(i)
-          }
+    val dataCommitInfoList = MetaVersion.dbManager.getPartitionSnapshot(table_id, partition_desc, version).asScala
+    getSinglePartitionDataInfo(partition_desc, dataCommitInfoList)
+  }
+
+  /**
+    * Files of a partition snapshot: an added file is kept unless a later commit deletes its path.
+    * The file ops are walked backwards once with the deleted paths in a [[FilePathSet]],
+    * and a DataFileInfo is only created for the files that are kept.
+    */
+  private[meta] def getSinglePartitionDataInfo(range_value: String,
+                                               dataCommitInfoList: Seq[entity.DataCommitInfo]): ArrayBuffer[DataFileInfo] = {
+    val commits = dataCommitInfoList.toArray
+    val fileOpsList = commits.map(_.getFileOps)
+    var total = 0
+    fileOpsList.foreach(fileOps => total += fileOps.size)
+
+    //kept files are filled in from the end, so no reverse is needed
+    val files = new Array[DataFileInfo](total)
+    var kept = 0
+    val deleted = new FilePathSet(16)
+    var i = fileOpsList.length - 1
+    while (i >= 0) {
+      val timestamp = commits(i).getTimestamp
+      val it = fileOpsList(i).listIterator(fileOpsList(i).size)
+      while (it.hasPrevious) {
+        val file = it.previous()
+        if (file.getFileOp.equals("del")) {
+          deleted.add(file.getPath)
+        } else if (!deleted.contains(file.getPath)) {
+          kept += 1
+          files(total - kept) = DataFileInfo(
+            range_value,
+            file.getPath,
+            file.getFileOp,
+            file.getSize,
+            timestamp,
+            file.getFileExistCols
+          )
         }
       }
-      file_res_arr_buf.reverse
-    }else{
-      file_arr_buf.filter(_.file_op.equals("add"))
+      i -= 1
+    }
+    val file_res_arr_buf = new ArrayBuffer[DataFileInfo](kept)
+    var j = total - kept
+    while (j < total) {
+      file_res_arr_buf += files(j)
+      j += 1
     }
+    file_res_arr_buf
   }
 
   //add new data info to table data_info
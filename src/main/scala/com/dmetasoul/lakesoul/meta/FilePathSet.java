@@ -0,0 +1,100 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+/**
+ * Open addressing set of file paths, used to reconcile the add and del file ops of a partition snapshot.
+ * The hash codes of the paths are kept next to them, so probing compares ints and only calls equals on
+ * a hash match, and no entry object is allocated per path.
+ */
+public final class FilePathSet {
+    private String[] paths;
+    private int[] hashes;
+    private int size;
+
+    public FilePathSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        paths = new String[capacity];
+        hashes = new int[capacity];
+    }
+
+    public boolean add(String path) {
+        int hash = hash(path);
+        int mask = paths.length - 1;
+        int i = hash & mask;
+        while (paths[i] != null) {
+            if (hashes[i] == hash && paths[i].equals(path)) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        paths[i] = path;
+        hashes[i] = hash;
+        if (++size * 2 > paths.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(String path) {
+        if (size == 0) {
+            return false;
+        }
+        int hash = hash(path);
+        int mask = paths.length - 1;
+        int i = hash & mask;
+        while (paths[i] != null) {
+            if (hashes[i] == hash && paths[i].equals(path)) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] oldPaths = paths;
+        int[] oldHashes = hashes;
+        paths = new String[oldPaths.length << 1];
+        hashes = new int[oldPaths.length << 1];
+        int mask = paths.length - 1;
+        for (int j = 0; j < oldPaths.length; j++) {
+            if (oldPaths[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (paths[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                paths[i] = oldPaths[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    // paths of one table share long prefixes, spread the high bits before masking
+    private static int hash(String path) {
+        int h = path.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
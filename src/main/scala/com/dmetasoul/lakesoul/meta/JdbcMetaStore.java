@@ -0,0 +1,61 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+import com.dmetasoul.lakesoul.meta.dao.*;
+
+/**
+ * Meta store on PostgreSQL compatible databases, sharing the connection pool of {@link DBConnector}.
+ */
+public class JdbcMetaStore implements MetaStore {
+    private final TableInfoDao tableInfoDao = new TableInfoDao();
+    private final TableNameIdDao tableNameIdDao = new TableNameIdDao();
+    private final TablePathIdDao tablePathIdDao = new TablePathIdDao();
+    private final DataCommitInfoDao dataCommitInfoDao = new DataCommitInfoDao();
+    private final PartitionInfoDao partitionInfoDao = new PartitionInfoDao();
+
+    @Override
+    public TableInfoDao getTableInfoDao() {
+        return tableInfoDao;
+    }
+
+    @Override
+    public TableNameIdDao getTableNameIdDao() {
+        return tableNameIdDao;
+    }
+
+    @Override
+    public TablePathIdDao getTablePathIdDao() {
+        return tablePathIdDao;
+    }
+
+    @Override
+    public DataCommitInfoDao getDataCommitInfoDao() {
+        return dataCommitInfoDao;
+    }
+
+    @Override
+    public PartitionInfoDao getPartitionInfoDao() {
+        return partitionInfoDao;
+    }
+
+    @Override
+    public void close() {
+        DBConnector.closeConn();
+    }
+}
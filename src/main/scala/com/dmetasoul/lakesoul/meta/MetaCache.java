@@ -0,0 +1,196 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+import com.alibaba.fastjson.JSONObject;
+import com.dmetasoul.lakesoul.meta.entity.DataCommitInfo;
+import com.dmetasoul.lakesoul.meta.entity.PartitionInfo;
+import com.dmetasoul.lakesoul.meta.entity.TableInfo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-JVM cache of meta rows in front of the DAO layer.
+ * A partition_info row never changes once written, and the versions of a dropped partition are not reused when it is
+ * written again, so partitions are cached by (table_id, partition_desc, version) and only the latest version numbers
+ * have to be read from the meta database to know which rows are still valid.
+ * table_info has no version, so it is only cached when enabled separately; its entries then expire after a short
+ * time and are invalidated by local updates.
+ * data_commit_info rows are write-once as well and cached by commit id, so refreshing a snapshot only fetches
+ * the commits appended since the last refresh. Cached commits are shared and must not be modified.
+ */
+public class MetaCache {
+    private final boolean enabled;
+    private final boolean tableInfoEnabled;
+    private final Cache<String, TableInfo> tableInfoCache;
+    private final Cache<String, PartitionInfo> partitionInfoCache;
+    private final Cache<String, DataCommitInfo> dataCommitInfoCache;
+
+    public MetaCache() {
+        enabled = DBConfig.META_CACHE_ENABLED;
+        tableInfoEnabled = enabled && DBConfig.META_CACHE_TABLE_INFO_ENABLED;
+        tableInfoCache = CacheBuilder.newBuilder()
+                .maximumSize(DBConfig.META_CACHE_TABLE_INFO_SIZE)
+                .expireAfterWrite(DBConfig.META_CACHE_TABLE_INFO_EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        partitionInfoCache = CacheBuilder.newBuilder()
+                .maximumWeight(DBConfig.META_CACHE_PARTITION_INFO_WEIGHT)
+                .weigher(new Weigher<String, PartitionInfo>() {
+                    @Override
+                    public int weigh(String key, PartitionInfo value) {
+                        return 1 + value.getSnapshot().size();
+                    }
+                })
+                .recordStats()
+                .build();
+        dataCommitInfoCache = CacheBuilder.newBuilder()
+                .maximumWeight(DBConfig.META_CACHE_DATA_COMMIT_INFO_WEIGHT)
+                .weigher(new Weigher<String, DataCommitInfo>() {
+                    @Override
+                    public int weigh(String key, DataCommitInfo value) {
+                        return 1 + value.getFileOps().size();
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // returns a copy, callers are free to modify the properties of the returned table
+    public TableInfo getTableInfo(String tablePath) {
+        if (!tableInfoEnabled) {
+            return null;
+        }
+        TableInfo tableInfo = tableInfoCache.getIfPresent(tablePath);
+        return tableInfo == null ? null : copyOf(tableInfo);
+    }
+
+    public void putTableInfo(String tablePath, TableInfo tableInfo) {
+        if (tableInfoEnabled && tableInfo != null) {
+            tableInfoCache.put(tablePath, copyOf(tableInfo));
+        }
+    }
+
+    public void invalidateTableInfo(String tableId) {
+        Iterator<TableInfo> iterator = tableInfoCache.asMap().values().iterator();
+        while (iterator.hasNext()) {
+            if (Objects.equals(iterator.next().getTableId(), tableId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // returns a copy, callers are free to modify the snapshot of the returned partition
+    public PartitionInfo getPartitionInfo(String tableId, String partitionDesc, int version) {
+        if (!enabled) {
+            return null;
+        }
+        PartitionInfo partitionInfo = partitionInfoCache.getIfPresent(partitionKey(tableId, partitionDesc, version));
+        return partitionInfo == null ? null : copyOf(partitionInfo);
+    }
+
+    public void putPartitionInfo(PartitionInfo partitionInfo) {
+        if (enabled && partitionInfo != null && partitionInfo.getTableId() != null) {
+            partitionInfoCache.put(partitionKey(partitionInfo.getTableId(), partitionInfo.getPartitionDesc(),
+                    partitionInfo.getVersion()), copyOf(partitionInfo));
+        }
+    }
+
+    public void invalidatePartitionInfo(String tableId) {
+        String prefix = tableId + "\u0001";
+        Iterator<String> iterator = partitionInfoCache.asMap().keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public DataCommitInfo getDataCommitInfo(String tableId, String partitionDesc, UUID commitId) {
+        return enabled ? dataCommitInfoCache.getIfPresent(partitionKey(tableId, partitionDesc, commitId)) : null;
+    }
+
+    public void putDataCommitInfo(DataCommitInfo dataCommitInfo) {
+        if (enabled && dataCommitInfo != null && dataCommitInfo.getCommitId() != null) {
+            dataCommitInfoCache.put(partitionKey(dataCommitInfo.getTableId(), dataCommitInfo.getPartitionDesc(),
+                    dataCommitInfo.getCommitId()), dataCommitInfo);
+        }
+    }
+
+    public void invalidateDataCommitInfo(String tableId) {
+        String prefix = tableId + "\u0001";
+        Iterator<String> iterator = dataCommitInfoCache.asMap().keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        tableInfoCache.invalidateAll();
+        partitionInfoCache.invalidateAll();
+        dataCommitInfoCache.invalidateAll();
+    }
+
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("tableInfo", tableInfoCache.stats());
+        stats.put("partitionInfo", partitionInfoCache.stats());
+        stats.put("dataCommitInfo", dataCommitInfoCache.stats());
+        return stats;
+    }
+
+    private static String partitionKey(String tableId, String partitionDesc, Object versionOrCommitId) {
+        return tableId + "\u0001" + partitionDesc + "\u0001" + versionOrCommitId;
+    }
+
+    private static TableInfo copyOf(TableInfo tableInfo) {
+        TableInfo copy = new TableInfo();
+        copy.setTableId(tableInfo.getTableId());
+        copy.setTableName(tableInfo.getTableName());
+        copy.setTablePath(tableInfo.getTablePath());
+        copy.setTableSchema(tableInfo.getTableSchema());
+        copy.setProperties(tableInfo.getProperties() == null ? null : (JSONObject) tableInfo.getProperties().clone());
+        copy.setPartitions(tableInfo.getPartitions());
+        return copy;
+    }
+
+    private static PartitionInfo copyOf(PartitionInfo partitionInfo) {
+        PartitionInfo copy = new PartitionInfo();
+        copy.setTableId(partitionInfo.getTableId());
+        copy.setPartitionDesc(partitionInfo.getPartitionDesc());
+        copy.setVersion(partitionInfo.getVersion());
+        copy.setCommitOp(partitionInfo.getCommitOp());
+        copy.setSnapshot(new ArrayList<>(partitionInfo.getSnapshot()));
+        copy.setExpression(partitionInfo.getExpression());
+        copy.setCheckpointVersion(partitionInfo.getCheckpointVersion());
+        copy.setBaseVersion(partitionInfo.getBaseVersion());
+        copy.setBaseSnapshotSize(partitionInfo.getBaseSnapshotSize());
+        return copy;
+    }
+}
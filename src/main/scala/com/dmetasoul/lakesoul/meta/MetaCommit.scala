@@ -18,6 +18,7 @@ package com.dmetasoul.lakesoul.meta
 
 import com.alibaba.fastjson.JSONObject
 
+import java.sql.SQLException
 import java.util
 import org.apache.spark.internal.Logging
 import org.apache.spark.sql.lakesoul.exception.LakeSoulErrors
@@ -65,7 +66,12 @@ object MetaCommit extends Logging {
 
     var result = addDataInfo(meta_info)
     if (result) {
-      result = MetaVersion.dbManager.commitData(info, changeSchema, commit_type.name)
+      result = try {
+        MetaVersion.dbManager.commitData(info, changeSchema, commit_type.name)
+      } catch {
+        case e: IllegalStateException if e.getCause.isInstanceOf[SQLException] =>
+          throw LakeSoulErrors.commitFailedByMetaStore(meta_info.table_info.table_path.toString, e)
+      }
     } else {
       throw LakeSoulErrors.failCommitDataFile()
     }
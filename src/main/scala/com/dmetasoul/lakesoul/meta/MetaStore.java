@@ -0,0 +1,42 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta;
+
+import com.dmetasoul.lakesoul.meta.dao.*;
+
+/**
+ * Storage backend of the LakeSoul metadata. {@link DBManager} only talks to the DAOs handed out by a MetaStore,
+ * so an implementation has to provide every DAO with the semantics of the JDBC one: inserts fail on duplicate
+ * primary keys, {@link PartitionInfoDao#transactionInsert} is all or nothing, and lookups return copies.
+ * <p>
+ * The store used by default is chosen with lakesoul.meta.store: "jdbc" (the default), "embedded", or the
+ * name of a class implementing this interface with a public no-arg constructor.
+ */
+public interface MetaStore {
+    TableInfoDao getTableInfoDao();
+
+    TableNameIdDao getTableNameIdDao();
+
+    TablePathIdDao getTablePathIdDao();
+
+    DataCommitInfoDao getDataCommitInfoDao();
+
+    PartitionInfoDao getPartitionInfoDao();
+
+    void close();
+}
@@ -17,8 +17,12 @@
 package com.dmetasoul.lakesoul.meta
 
 import com.alibaba.fastjson.JSONObject
+import com.dmetasoul.lakesoul.meta.entity.MetaCleanupResult
 import com.google.common.base.Splitter
-import org.apache.spark.sql.lakesoul.utils.{PartitionInfo, TableInfo}
+import org.apache.spark.SparkEnv
+import org.apache.spark.sql.SparkSession
+import org.apache.spark.sql.lakesoul.sources.LakeSoulSQLConf
+import org.apache.spark.sql.lakesoul.utils.{LakeSoulMetaSource, PartitionInfo, TableInfo}
 
 import java.util
 import scala.collection.JavaConverters.asScalaBufferConverter
@@ -27,8 +31,28 @@ import scala.collection.JavaConverters._
 
 object MetaVersion {
 
+  configureMetaConnection()
+
   val dbManager = new DBManager()
 
+  LakeSoulMetaSource.register()
+
+  // pool settings set explicitly in the spark conf take precedence over lakesoul_home
+  private def configureMetaConnection(): Unit = {
+    val lookup: String => Option[String] = SparkSession.getActiveSession match {
+      case Some(spark) =>
+        key => if (spark.sessionState.conf.contains(key)) Some(spark.sessionState.conf.getConfString(key)) else None
+      case None =>
+        key => Option(SparkEnv.get).flatMap(_.conf.getOption(key))
+    }
+    val settings = new util.HashMap[String, String]()
+    lookup(LakeSoulSQLConf.META_CONNECT_TIMEOUT.key).foreach(settings.put("lakesoul.pg.connectionTimeout", _))
+    lookup(LakeSoulSQLConf.META_MAX_CONNECT_PER_EXECUTOR.key).foreach(settings.put("lakesoul.pg.maximumPoolSize", _))
+    if (!settings.isEmpty) {
+      DBConnector.configure(settings)
+    }
+  }
+
   def isTableExists(table_name: String): Boolean = {
     dbManager.isTableExists(table_name)
   }
@@ -148,8 +172,23 @@ object MetaVersion {
   }
 
   def getAllPartitionInfo(table_id: String): Array[PartitionInfo] = {
+    toPartitionInfoArray(dbManager.getAllPartitionInfo(table_id))
+  }
+
+  //latest version of every partition, keyed by range value
+  def getLatestPartitionVersions(table_id: String): Map[String, Int] = {
+    dbManager.getLatestPartitionVersions(table_id).asScala.map(x => (x._1, x._2.intValue())).toMap
+  }
+
+  def getPartitionInfoForVersions(table_id: String, versions: Map[String, Int]): Array[PartitionInfo] = {
+    val versionMap = new util.HashMap[String, Integer]()
+    versions.foreach(x => versionMap.put(x._1, x._2))
+    toPartitionInfoArray(dbManager.getPartitionInfoByVersions(table_id, versionMap))
+  }
+
+  private def toPartitionInfoArray(infoList: util.List[entity.PartitionInfo]): Array[PartitionInfo] = {
     val partitionVersionBuffer = new ArrayBuffer[PartitionInfo]()
-    val res_itr = dbManager.getAllPartitionInfo(table_id).iterator()
+    val res_itr = infoList.iterator()
     while (res_itr.hasNext) {
       val res = res_itr.next()
       partitionVersionBuffer += PartitionInfo(
@@ -172,6 +211,10 @@ object MetaVersion {
 
   }
 
+  def cleanupMetaVersions(table_id: String, retainVersions: Int, retentionMillis: Long): MetaCleanupResult = {
+    dbManager.cleanupMetaVersions(table_id, retainVersions, retentionMillis)
+  }
+
   def updateTableSchema(table_name: String,
                         table_id: String,
                         table_schema: String,
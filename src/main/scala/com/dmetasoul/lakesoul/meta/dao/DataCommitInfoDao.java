@@ -17,9 +17,12 @@
 
 package com.dmetasoul.lakesoul.meta.dao;
 
+import com.dmetasoul.lakesoul.meta.DBConfig;
 import com.dmetasoul.lakesoul.meta.DBConnector;
 import com.dmetasoul.lakesoul.meta.DBUtil;
+import com.dmetasoul.lakesoul.meta.DataFileOpCodec;
 import com.dmetasoul.lakesoul.meta.entity.DataCommitInfo;
+import com.dmetasoul.lakesoul.meta.entity.DataFileOp;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -32,12 +35,12 @@ public class DataCommitInfoDao {
         Connection conn = null;
         PreparedStatement pstmt = null;
         try {
-            conn = DBConnector.getConn();
-            pstmt = conn.prepareStatement("insert into data_commit_info (table_id, partition_desc, commit_id, file_ops, commit_op, timestamp)" +
-                    " values (?, ?, ?, ?, ?, ?)");
+            conn = DBConnector.getConn("DataCommitInfoDao.insert");
+            pstmt = conn.prepareStatement(insertSql());
             dataCommitInsert(pstmt, dataCommitInfo);
+            pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -48,14 +51,14 @@ public class DataCommitInfoDao {
         PreparedStatement pstmt = null;
         String sql = "delete from data_commit_info where table_id = ? and partition_desc = ? and commit_id = ? ";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("DataCommitInfoDao.deleteByPrimaryKey");
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, tableId);
             pstmt.setString(2, partitionDesc);
             pstmt.setString(3, commitId.toString());
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -66,13 +69,13 @@ public class DataCommitInfoDao {
         PreparedStatement pstmt = null;
         String sql = "delete from data_commit_info where table_id = ? and partition_desc = ?";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("DataCommitInfoDao.deleteByTableIdAndPartitionDesc");
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, tableId);
             pstmt.setString(2, partitionDesc);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -83,12 +86,12 @@ public class DataCommitInfoDao {
         PreparedStatement pstmt = null;
         String sql = "delete from data_commit_info where table_id = ?";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("DataCommitInfoDao.deleteByTableId");
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, tableId);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -98,24 +101,27 @@ public class DataCommitInfoDao {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
-        String sql = String.format("select * from data_commit_info where table_id = '%s' and partition_desc = '%s' and " +
-                "commit_id = '%s'", tableId, partitionDesc, commitId);
+        String sql = "select * from data_commit_info where table_id = ? and partition_desc = ? and commit_id = ?";
         DataCommitInfo dataCommitInfo = null;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("DataCommitInfoDao.selectByPrimaryKey");
             pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setString(2, partitionDesc);
+            pstmt.setObject(3, commitId);
             rs = pstmt.executeQuery();
+            boolean hasFileOpsBin = hasFileOpsBin(rs);
             dataCommitInfo = new DataCommitInfo();
             while (rs.next()) {
                 dataCommitInfo.setTableId(rs.getString("table_id"));
                 dataCommitInfo.setPartitionDesc(rs.getString("partition_desc"));
                 dataCommitInfo.setCommitId(UUID.fromString(rs.getString("commit_id")));
-                dataCommitInfo.setFileOps(DBUtil.changeStringToDataFileOpList(rs.getString("file_ops")));
+                dataCommitInfo.setFileOps(readFileOps(rs, hasFileOpsBin));
                 dataCommitInfo.setCommitOp(rs.getString("commit_op"));
                 dataCommitInfo.setTimestamp(rs.getLong("timestamp"));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -130,56 +136,149 @@ public class DataCommitInfoDao {
         if (commitIdList.size() < 1) {
             return commitInfoList;
         }
-        String uuidListString = DBUtil.changeUUIDListToString(commitIdList);
-        String uuidListOrderString = DBUtil.changeUUIDListToOrderString(commitIdList);
-        String sql = String.format("select * from data_commit_info where table_id = '%s' and partition_desc = '%s' and " +
-                "commit_id in (%s) order by position(commit_id::text in '%s') ", tableId, partitionDesc, uuidListString, uuidListOrderString);
-//        String sql = String.format("select * from data_commit_info where table_id = '%s' and partition_desc = '%s' and " +
-//                "commit_id in (%s) order by array_positions(array['%s'],commit_id::text) ", tableId, partitionDesc, uuidListString, uuidListOrderString);
+        // bind the commit ids as one array so the statement text stays the same for any snapshot size,
+        // and keep the snapshot order through the ordinality of the unnested array
+        String sql = "select m.* from unnest(?::uuid[]) with ordinality as t(commit_id, ord) " +
+                "join data_commit_info m on m.table_id = ? and m.partition_desc = ? and m.commit_id = t.commit_id " +
+                "order by t.ord";
+
+        try {
+            conn = DBConnector.getConn("DataCommitInfoDao.selectByTableIdPartitionDescCommitList");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setArray(1, conn.createArrayOf("uuid", commitIdList.toArray()));
+            pstmt.setString(2, tableId);
+            pstmt.setString(3, partitionDesc);
+            rs = pstmt.executeQuery();
+            boolean hasFileOpsBin = hasFileOpsBin(rs);
+            while (rs.next()) {
+                DataCommitInfo dataCommitInfo = new DataCommitInfo();
+                dataCommitInfo.setTableId(rs.getString("table_id"));
+                dataCommitInfo.setPartitionDesc(rs.getString("partition_desc"));
+                dataCommitInfo.setCommitId(UUID.fromString(rs.getString("commit_id")));
+                dataCommitInfo.setFileOps(readFileOps(rs, hasFileOpsBin));
+                dataCommitInfo.setCommitOp(rs.getString("commit_op"));
+                dataCommitInfo.setTimestamp(rs.getLong("timestamp"));
+                commitInfoList.add(dataCommitInfo);
+            }
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return commitInfoList;
+    }
+
+    /**
+     * Select the data commits of many partitions of a table in one round trip.
+     * The i-th commit id belongs to the i-th partition desc, rows are returned in the order of the given pairs.
+     */
+    public List<DataCommitInfo> selectByTableIdCommitPairs(String tableId, List<String> partitionDescList,
+                                                           List<UUID> commitIdList) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        List<DataCommitInfo> commitInfoList = new ArrayList<>();
+        if (commitIdList.size() < 1) {
+            return commitInfoList;
+        }
+        String sql = "select m.* from unnest(?::text[], ?::uuid[]) with ordinality as t(partition_desc, commit_id, ord) " +
+                "join data_commit_info m on m.table_id = ? and m.partition_desc = t.partition_desc " +
+                "and m.commit_id = t.commit_id " +
+                "order by t.ord";
 
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("DataCommitInfoDao.selectByTableIdCommitPairs");
             pstmt = conn.prepareStatement(sql);
+            pstmt.setArray(1, conn.createArrayOf("text", partitionDescList.toArray()));
+            pstmt.setArray(2, conn.createArrayOf("uuid", commitIdList.toArray()));
+            pstmt.setString(3, tableId);
             rs = pstmt.executeQuery();
+            boolean hasFileOpsBin = hasFileOpsBin(rs);
             while (rs.next()) {
                 DataCommitInfo dataCommitInfo = new DataCommitInfo();
                 dataCommitInfo.setTableId(rs.getString("table_id"));
                 dataCommitInfo.setPartitionDesc(rs.getString("partition_desc"));
                 dataCommitInfo.setCommitId(UUID.fromString(rs.getString("commit_id")));
-                dataCommitInfo.setFileOps(DBUtil.changeStringToDataFileOpList(rs.getString("file_ops")));
+                dataCommitInfo.setFileOps(readFileOps(rs, hasFileOpsBin));
                 dataCommitInfo.setCommitOp(rs.getString("commit_op"));
                 dataCommitInfo.setTimestamp(rs.getLong("timestamp"));
                 commitInfoList.add(dataCommitInfo);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
         return commitInfoList;
     }
 
+    /**
+     * Delete data commits of a table that no remaining partition version references and that are older than
+     * expireTimestamp, so commits still in flight are kept. Returns the number of deleted rows and their size in bytes.
+     */
+    public long[] deleteUnreferenced(String tableId, long expireTimestamp) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long[] result = new long[]{0, 0};
+        String sql = "with referenced as (" +
+                "select distinct p.partition_desc, u.commit_id from partition_info p, unnest(p.snapshot) as u(commit_id) " +
+                "where p.table_id = ?), " +
+                "deleted as (" +
+                "delete from data_commit_info d where d.table_id = ? and d.timestamp < ? and not exists (" +
+                "select 1 from referenced r where r.partition_desc = d.partition_desc and r.commit_id = d.commit_id) " +
+                "returning pg_column_size(d.*) as size) " +
+                "select count(*), coalesce(sum(size), 0) from deleted";
+        try {
+            conn = DBConnector.getConn("DataCommitInfoDao.deleteUnreferenced");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setString(2, tableId);
+            pstmt.setLong(3, expireTimestamp);
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                result[0] = rs.getLong(1);
+                result[1] = rs.getLong(2);
+            }
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return result;
+    }
+
     public boolean batchInsert(List<DataCommitInfo> listData) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         boolean result = true;
         try {
-            conn = DBConnector.getConn();
-            pstmt = conn.prepareStatement("insert into data_commit_info (table_id, partition_desc, commit_id, file_ops, commit_op, timestamp)" +
-                    " values (?, ?, ?, ?, ?, ?)");
+            conn = DBConnector.getConn("DataCommitInfoDao.batchInsert");
+            pstmt = conn.prepareStatement(insertSql());
             conn.setAutoCommit(false);
+            int batchCount = 0;
             for (DataCommitInfo dataCommitInfo : listData) {
                 dataCommitInsert(pstmt, dataCommitInfo);
+                pstmt.addBatch();
+                if (++batchCount % DBConfig.INSERT_BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            if (batchCount % DBConfig.INSERT_BATCH_SIZE != 0) {
+                pstmt.executeBatch();
             }
             conn.commit();
         } catch (SQLException e) {
             result = false;
             try {
-                conn.rollback();
+                if (conn != null) {
+                    conn.rollback();
+                }
             } catch (SQLException ex) {
-                ex.printStackTrace();
+                // logged together with the failure of the transaction
+                e.addSuppressed(ex);
             }
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -190,9 +289,47 @@ public class DataCommitInfoDao {
         pstmt.setString(1, dataCommitInfo.getTableId());
         pstmt.setString(2, dataCommitInfo.getPartitionDesc());
         pstmt.setString(3, dataCommitInfo.getCommitId().toString());
-        pstmt.setString(4, DBUtil.changeDataFileOpListToString(dataCommitInfo.getFileOps()));
+        if (DBConfig.FILE_OPS_ENCODING.equals("binary")) {
+            pstmt.setString(4, "{}");
+        } else {
+            pstmt.setString(4, DBUtil.changeDataFileOpListToString(dataCommitInfo.getFileOps()));
+        }
         pstmt.setString(5, dataCommitInfo.getCommitOp());
         pstmt.setLong(6, dataCommitInfo.getTimestamp());
-        pstmt.execute();
+        if (!DBConfig.FILE_OPS_ENCODING.equals("text")) {
+            pstmt.setBytes(7, DataFileOpCodec.encode(dataCommitInfo.getFileOps()));
+        }
+    }
+
+    private String insertSql() {
+        if (DBConfig.FILE_OPS_ENCODING.equals("text")) {
+            return "insert into data_commit_info (table_id, partition_desc, commit_id, file_ops, commit_op, timestamp)" +
+                    " values (?, ?, ?, ?, ?, ?)";
+        }
+        return "insert into data_commit_info (table_id, partition_desc, commit_id, file_ops, commit_op, timestamp, " +
+                "file_ops_bin) values (?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    // file_ops_bin is read whenever the meta database has the column, whatever this client writes, so rows
+    // written by a "binary" client are never read as the "{}" placeholder of their text column
+    private boolean hasFileOpsBin(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnName(i).equals("file_ops_bin")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // rows written before file_ops_bin was enabled only have the text form
+    private List<DataFileOp> readFileOps(ResultSet rs, boolean hasFileOpsBin) throws SQLException {
+        if (hasFileOpsBin) {
+            byte[] bytes = rs.getBytes("file_ops_bin");
+            if (bytes != null) {
+                return DataFileOpCodec.decode(bytes);
+            }
+        }
+        return DBUtil.changeStringToDataFileOpList(rs.getString("file_ops"));
     }
 }
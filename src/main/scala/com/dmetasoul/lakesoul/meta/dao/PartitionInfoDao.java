@@ -17,81 +17,360 @@
 
 package com.dmetasoul.lakesoul.meta.dao;
 
+import com.dmetasoul.lakesoul.meta.DBConfig;
 import com.dmetasoul.lakesoul.meta.DBConnector;
-import com.dmetasoul.lakesoul.meta.DBUtil;
 import com.dmetasoul.lakesoul.meta.entity.PartitionInfo;
 
 import java.sql.*;
 import java.util.*;
 
+/**
+ * partition_latest_version holds the latest version of every partition. It is updated in the same transaction as
+ * every insert into partition_info, so the current state of a table is read with one indexed scan of its
+ * partitions instead of grouping over all versions.
+ * Dropping a partition keeps its row in partition_latest_version as a tombstone, so the versions of a partition
+ * written again continue after the dropped ones and a (partition_desc, version) pair never names two snapshots.
+ * A tombstone has no partition_info row of its version, reads of the latest versions skip it.
+ */
 public class PartitionInfoDao {
 
+    // SQLState of a primary key conflict, i.e. a concurrent commit of the same partition version
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private static final String LATEST_PARTITION_INFO_SQL = "select m.* from partition_latest_version l " +
+            "join partition_info m on m.table_id = l.table_id and m.partition_desc = l.partition_desc " +
+            "and m.version = l.version ";
+
+    // duplicate partitions are merged and rows are locked in key order, so concurrent commits cannot deadlock
+    private static final String UPDATE_LATEST_VERSION_SQL = "insert into partition_latest_version " +
+            "(table_id, partition_desc, version) " +
+            "select table_id, partition_desc, max(version) from unnest(?::text[], ?::text[], ?::int[]) " +
+            "as t(table_id, partition_desc, version) " +
+            "group by table_id, partition_desc order by table_id, partition_desc " +
+            "on conflict (table_id, partition_desc) do update set version = excluded.version " +
+            "where partition_latest_version.version < excluded.version";
+
     public boolean insert(PartitionInfo partitionInfo) {
+        return transactionInsert(Collections.singletonList(partitionInfo));
+    }
+
+    public boolean transactionInsert(List<PartitionInfo> partitionInfoList) {
         boolean flag = true;
         Connection conn = null;
         PreparedStatement pstmt = null;
         try {
-            conn = DBConnector.getConn();
-            pstmt = conn.prepareStatement("insert into partition_info (table_id, partition_desc, version, " +
-                    "commit_op, snapshot, expression) values (?, ?, ?, ? ,?, ?)");
-            insertSinglePartitionInfo(conn, pstmt, partitionInfo);
+            conn = DBConnector.getConn("PartitionInfoDao.transactionInsert");
+            pstmt = conn.prepareStatement(insertSql());
+            conn.setAutoCommit(false);
+            int batchCount = 0;
+            for (PartitionInfo partitionInfo : partitionInfoList) {
+                insertSinglePartitionInfo(conn, pstmt, partitionInfo);
+                pstmt.addBatch();
+                if (++batchCount % DBConfig.INSERT_BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            if (batchCount % DBConfig.INSERT_BATCH_SIZE != 0) {
+                pstmt.executeBatch();
+            }
+            updateLatestVersions(conn, partitionInfoList);
+            conn.commit();
         } catch (SQLException e) {
             flag = false;
-            e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                // logged together with the failure of the transaction
+                e.addSuppressed(ex);
+            }
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
         return flag;
     }
 
-    public boolean transactionInsert(List<PartitionInfo> partitionInfoList) {
+    /**
+     * Commit new versions of all partitions in a single statement. The latest version of every partition is
+     * read, bumped and inserted on the server side together with the table properties update, so the
+     * commit costs one round trip regardless of partition count.
+     * Returns false if a concurrent commit inserted the same version first, on success the version of every
+     * given partition info is set to its committed version. Any other database error is thrown as
+     * IllegalStateException, the client side commit would run into it as well.
+     */
+    public boolean serverSideCommit(String tableId, List<PartitionInfo> partitionInfoList, String commitOp,
+                                    boolean appendSnapshot, String properties) {
         boolean flag = true;
         Connection conn = null;
         PreparedStatement pstmt = null;
+        boolean delta = DBConfig.SNAPSHOT_DELTA_ENABLED;
+        // the latest row may be a delta written by another client, so the snapshot it is appended to is always
+        // expanded from its checkpoint on, whether or not this client writes deltas
+        String appendToChain = "when ? then coalesce((select array_agg(y.commit_id order by x.version, y.ord) " +
+                "from partition_info x, unnest(x.snapshot) with ordinality as y(commit_id, ord) " +
+                "where x.table_id = ? and x.partition_desc = c.partition_desc " +
+                "and x.version between c.checkpoint_version and c.version), '{}'::uuid[]) " +
+                "|| coalesce(n.snapshot, '{}'::uuid[]) " +
+                "else coalesce(n.snapshot, '{}'::uuid[]) end";
+        String newSnapshot;
+        String checkpointVersion;
+        if (delta) {
+            // append only the new commit ids while the delta chain is shorter than the checkpoint interval,
+            // otherwise write the expanded snapshot of the chain as a new checkpoint
+            String inChain = "? and c.version is not null and c.version + 1 - c.checkpoint_version < ? ";
+            newSnapshot = "case when " + inChain + "then coalesce(n.snapshot, '{}'::uuid[]) " + appendToChain;
+            checkpointVersion = ", case when " + inChain + "then c.checkpoint_version else coalesce(c.version, -1) + 1 end";
+        } else {
+            newSnapshot = "case " + appendToChain;
+            checkpointVersion = "";
+        }
+        String sql = "with new_partition as (" +
+                "select partition_desc, expression from unnest(?::text[], ?::text[]) as t(partition_desc, expression)), " +
+                "new_commit as (" +
+                "select partition_desc, array_agg(commit_id order by ord) as snapshot " +
+                "from unnest(?::text[], ?::uuid[]) with ordinality as t(partition_desc, commit_id, ord) " +
+                "group by partition_desc), " +
+                "cur as (" +
+                "select l.partition_desc, l.version, m.snapshot, " +
+                "coalesce(m.checkpoint_version, m.version) as checkpoint_version " +
+                "from partition_latest_version l left join partition_info m on m.table_id = l.table_id " +
+                "and m.partition_desc = l.partition_desc and m.version = l.version " +
+                "where l.table_id = ? and l.partition_desc = any(?::text[])), " +
+                "props as (" +
+                "update table_info set properties = ?::json where table_id = ?), " +
+                "inserted as (" +
+                "insert into partition_info (table_id, partition_desc, version, commit_op, snapshot, expression" +
+                (delta ? ", checkpoint_version" : "") + ") " +
+                "select ?, p.partition_desc, coalesce(c.version, -1) + 1, ?, " + newSnapshot + ", p.expression" +
+                checkpointVersion + " " +
+                "from new_partition p left join new_commit n on p.partition_desc = n.partition_desc " +
+                "left join cur c on p.partition_desc = c.partition_desc " +
+                "returning table_id, partition_desc, version), " +
+                "latest as (" +
+                "insert into partition_latest_version (table_id, partition_desc, version) " +
+                "select table_id, partition_desc, version from inserted order by partition_desc " +
+                "on conflict (table_id, partition_desc) do update set version = excluded.version " +
+                "where partition_latest_version.version < excluded.version) " +
+                "select partition_desc, version from inserted";
+        ResultSet rs = null;
+        List<String> partitionDescList = new ArrayList<>();
+        List<String> expressionList = new ArrayList<>();
+        List<String> commitPartitionDescList = new ArrayList<>();
+        List<UUID> commitIdList = new ArrayList<>();
+        for (PartitionInfo partitionInfo : partitionInfoList) {
+            partitionDescList.add(partitionInfo.getPartitionDesc());
+            expressionList.add(partitionInfo.getExpression());
+            for (UUID commitId : partitionInfo.getSnapshot()) {
+                commitPartitionDescList.add(partitionInfo.getPartitionDesc());
+                commitIdList.add(commitId);
+            }
+        }
         try {
-            conn = DBConnector.getConn();
-            pstmt = conn.prepareStatement("insert into partition_info (table_id, partition_desc, version, " +
-                    "commit_op, snapshot, expression) values (?, ?, ?, ? ,?, ?)");
-            conn.setAutoCommit(false);
-            for (PartitionInfo partitionInfo : partitionInfoList) {
-                insertSinglePartitionInfo(conn, pstmt, partitionInfo);
+            conn = DBConnector.getConn("PartitionInfoDao.serverSideCommit");
+            pstmt = conn.prepareStatement(sql);
+            Array partitionDescArray = conn.createArrayOf("text", partitionDescList.toArray());
+            int index = 1;
+            pstmt.setArray(index++, partitionDescArray);
+            pstmt.setArray(index++, conn.createArrayOf("text", expressionList.toArray()));
+            pstmt.setArray(index++, conn.createArrayOf("text", commitPartitionDescList.toArray()));
+            pstmt.setArray(index++, conn.createArrayOf("uuid", commitIdList.toArray()));
+            pstmt.setString(index++, tableId);
+            pstmt.setArray(index++, partitionDescArray);
+            pstmt.setString(index++, properties);
+            pstmt.setString(index++, tableId);
+            pstmt.setString(index++, tableId);
+            pstmt.setString(index++, commitOp);
+            if (delta) {
+                pstmt.setBoolean(index++, appendSnapshot);
+                pstmt.setInt(index++, DBConfig.SNAPSHOT_CHECKPOINT_INTERVAL);
+            }
+            pstmt.setBoolean(index++, appendSnapshot);
+            pstmt.setString(index++, tableId);
+            if (delta) {
+                pstmt.setBoolean(index++, appendSnapshot);
+                pstmt.setInt(index++, DBConfig.SNAPSHOT_CHECKPOINT_INTERVAL);
+            }
+            rs = pstmt.executeQuery();
+            Map<String, Integer> versionMap = new HashMap<>();
+            while (rs.next()) {
+                versionMap.put(rs.getString("partition_desc"), rs.getInt("version"));
+            }
+            flag = versionMap.size() == partitionInfoList.size();
+            if (flag) {
+                for (PartitionInfo partitionInfo : partitionInfoList) {
+                    partitionInfo.setVersion(versionMap.get(partitionInfo.getPartitionDesc()));
+                }
             }
-            conn.commit();
         } catch (SQLException e) {
             flag = false;
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            DBConnector.recordError(e);
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                throw new IllegalStateException("server side commit of table " + tableId + " failed", e);
             }
-            e.printStackTrace();
         } finally {
-            DBConnector.closeConn(pstmt, conn);
+            DBConnector.closeConn(rs, pstmt, conn);
         }
         return flag;
     }
 
+    private void updateLatestVersions(Connection conn, List<PartitionInfo> partitionInfoList) throws SQLException {
+        List<String> tableIdList = new ArrayList<>(partitionInfoList.size());
+        List<String> partitionDescList = new ArrayList<>(partitionInfoList.size());
+        List<Integer> versionList = new ArrayList<>(partitionInfoList.size());
+        for (PartitionInfo partitionInfo : partitionInfoList) {
+            tableIdList.add(partitionInfo.getTableId());
+            partitionDescList.add(partitionInfo.getPartitionDesc());
+            versionList.add(partitionInfo.getVersion());
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_LATEST_VERSION_SQL)) {
+            pstmt.setArray(1, conn.createArrayOf("text", tableIdList.toArray()));
+            pstmt.setArray(2, conn.createArrayOf("text", partitionDescList.toArray()));
+            pstmt.setArray(3, conn.createArrayOf("integer", versionList.toArray()));
+            pstmt.execute();
+        }
+    }
+
     private void insertSinglePartitionInfo(Connection conn, PreparedStatement pstmt, PartitionInfo partitionInfo) throws SQLException {
-        Array array = conn.createArrayOf("UUID", partitionInfo.getSnapshot().toArray());
+        List<UUID> snapshot = partitionInfo.getSnapshot();
+        int checkpointVersion = partitionInfo.getVersion();
+        if (isDeltaCommit(partitionInfo)) {
+            snapshot = snapshot.subList(partitionInfo.getBaseSnapshotSize(), snapshot.size());
+            checkpointVersion = partitionInfo.getCheckpointVersion();
+        }
+        Array array = conn.createArrayOf("UUID", snapshot.toArray());
         pstmt.setString(1, partitionInfo.getTableId());
         pstmt.setString(2, partitionInfo.getPartitionDesc());
         pstmt.setInt(3, partitionInfo.getVersion());
         pstmt.setString(4, partitionInfo.getCommitOp());
         pstmt.setArray(5, array);
         pstmt.setString(6, partitionInfo.getExpression());
-        pstmt.execute();
+        // without delta writes checkpoint_version stays null, which marks a full snapshot
+        if (DBConfig.SNAPSHOT_DELTA_ENABLED) {
+            pstmt.setInt(7, checkpointVersion);
+        }
     }
 
+    private String insertSql() {
+        if (DBConfig.SNAPSHOT_DELTA_ENABLED) {
+            return "insert into partition_info (table_id, partition_desc, version, " +
+                    "commit_op, snapshot, expression, checkpoint_version) values (?, ?, ?, ? ,?, ?, ?)";
+        }
+        return "insert into partition_info (table_id, partition_desc, version, " +
+                "commit_op, snapshot, expression) values (?, ?, ?, ? ,?, ?)";
+    }
+
+    /**
+     * An append or merge commit made directly on top of the version it was read from only stores the commit ids
+     * it adds, as long as the chain since the last full snapshot is shorter than the checkpoint interval.
+     */
+    private boolean isDeltaCommit(PartitionInfo partitionInfo) {
+        if (!DBConfig.SNAPSHOT_DELTA_ENABLED) {
+            return false;
+        }
+        String commitOp = partitionInfo.getCommitOp();
+        if (!"AppendCommit".equals(commitOp) && !"MergeCommit".equals(commitOp)) {
+            return false;
+        }
+        return partitionInfo.getBaseVersion() >= 0
+                && partitionInfo.getVersion() == partitionInfo.getBaseVersion() + 1
+                && partitionInfo.getCheckpointVersion() >= 0
+                && partitionInfo.getVersion() - partitionInfo.getCheckpointVersion() < DBConfig.SNAPSHOT_CHECKPOINT_INTERVAL
+                && partitionInfo.getSnapshot().size() >= partitionInfo.getBaseSnapshotSize();
+    }
+
+    private PartitionInfo readPartitionInfo(ResultSet rs, PartitionInfo partitionInfo) throws SQLException {
+        partitionInfo.setTableId(rs.getString("table_id"));
+        partitionInfo.setPartitionDesc(rs.getString("partition_desc"));
+        partitionInfo.setVersion(rs.getInt("version"));
+        partitionInfo.setCommitOp(rs.getString("commit_op"));
+        Array snapshotArray = rs.getArray("snapshot");
+        List<UUID> uuidList = new ArrayList<>();
+        Collections.addAll(uuidList, (UUID[]) snapshotArray.getArray());
+        partitionInfo.setSnapshot(uuidList);
+        partitionInfo.setExpression(rs.getString("expression"));
+        // delta rows are recognized whatever this client writes, SNAPSHOT_DELTA_ENABLED only decides the writes
+        int checkpointVersion = rs.getInt("checkpoint_version");
+        partitionInfo.setCheckpointVersion(rs.wasNull() ? partitionInfo.getVersion() : checkpointVersion);
+        partitionInfo.setBaseVersion(partitionInfo.getVersion());
+        partitionInfo.setBaseSnapshotSize(uuidList.size());
+        return partitionInfo;
+    }
+
+    /**
+     * Expand the snapshots of delta rows by prepending the commit ids of every version from their checkpoint on,
+     * fetched with one query for all partitions.
+     */
+    private void resolveDeltaSnapshots(Connection conn, List<PartitionInfo> partitionInfoList) throws SQLException {
+        Map<String, PartitionInfo> deltaMap = new HashMap<>();
+        String tableId = null;
+        for (PartitionInfo partitionInfo : partitionInfoList) {
+            if (partitionInfo.getCheckpointVersion() < partitionInfo.getVersion()) {
+                deltaMap.put(partitionInfo.getPartitionDesc(), partitionInfo);
+                tableId = partitionInfo.getTableId();
+            }
+        }
+        if (deltaMap.isEmpty()) {
+            return;
+        }
+        List<String> partitionDescList = new ArrayList<>(deltaMap.size());
+        List<Integer> checkpointVersionList = new ArrayList<>(deltaMap.size());
+        List<Integer> versionList = new ArrayList<>(deltaMap.size());
+        for (PartitionInfo partitionInfo : deltaMap.values()) {
+            partitionDescList.add(partitionInfo.getPartitionDesc());
+            checkpointVersionList.add(partitionInfo.getCheckpointVersion());
+            versionList.add(partitionInfo.getVersion());
+        }
+        String sql = "select m.partition_desc, m.snapshot from unnest(?::text[], ?::int[], ?::int[]) " +
+                "as t(partition_desc, checkpoint_version, version) " +
+                "join partition_info m on m.table_id = ? and m.partition_desc = t.partition_desc " +
+                "and m.version >= t.checkpoint_version and m.version < t.version " +
+                "order by m.partition_desc, m.version";
+        Map<String, List<UUID>> chainMap = new HashMap<>();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setArray(1, conn.createArrayOf("text", partitionDescList.toArray()));
+            pstmt.setArray(2, conn.createArrayOf("integer", checkpointVersionList.toArray()));
+            pstmt.setArray(3, conn.createArrayOf("integer", versionList.toArray()));
+            pstmt.setString(4, tableId);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                List<UUID> chain = chainMap.computeIfAbsent(rs.getString("partition_desc"), k -> new ArrayList<>());
+                Collections.addAll(chain, (UUID[]) rs.getArray("snapshot").getArray());
+            }
+        } finally {
+            if (rs != null) {
+                rs.close();
+            }
+            if (pstmt != null) {
+                pstmt.close();
+            }
+        }
+        for (Map.Entry<String, List<UUID>> entry : chainMap.entrySet()) {
+            PartitionInfo partitionInfo = deltaMap.get(entry.getKey());
+            List<UUID> snapshot = entry.getValue();
+            snapshot.addAll(partitionInfo.getSnapshot());
+            partitionInfo.setSnapshot(snapshot);
+            partitionInfo.setBaseSnapshotSize(snapshot.size());
+        }
+    }
+
+    // the partition_latest_version row stays as the tombstone of the dropped versions
     public void deleteByTableIdAndPartitionDesc(String tableId, String partitionDesc) {
         Connection conn = null;
         PreparedStatement pstmt = null;
-        String sql = String.format("delete from partition_info where table_id = '%s' and partition_desc = '%s'", tableId, partitionDesc);
+        String sql = "delete from partition_info where table_id = ? and partition_desc = ?";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("PartitionInfoDao.deleteByTableIdAndPartitionDesc");
             pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setString(2, partitionDesc);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -100,14 +379,16 @@ public class PartitionInfoDao {
     public void deleteByTableId(String tableId) {
         Connection conn = null;
         PreparedStatement pstmt = null;
-        String sql = "delete from partition_info where table_id = ? ";
+        String sql = "with latest as (delete from partition_latest_version where table_id = ?) " +
+                "delete from partition_info where table_id = ? ";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("PartitionInfoDao.deleteByTableId");
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, tableId);
+            pstmt.setString(2, tableId);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -117,33 +398,20 @@ public class PartitionInfoDao {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
-        String partitionString = DBUtil.changePartitionDescListToString(partitionDescList);
-        String sql = String.format(
-                "select m.table_id, t.partition_desc, m.version, m.commit_op, m.snapshot, m.expression from (" +
-                "select table_id,partition_desc,max(version) from partition_info " +
-                "where table_id = '%s' and partition_desc in (%s) " +
-                "group by table_id,partition_desc) t " +
-                "left join partition_info m on t.table_id = m.table_id and t.partition_desc = m.partition_desc and t.max = m.version", tableId, partitionString);
+        String sql = LATEST_PARTITION_INFO_SQL + "where l.table_id = ? and l.partition_desc = any(?::text[])";
         List<PartitionInfo> rsList = new ArrayList<>();
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("PartitionInfoDao.findByTableIdAndParList");
             pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setArray(2, conn.createArrayOf("text", partitionDescList.toArray()));
             rs = pstmt.executeQuery();
             while (rs.next()) {
-                PartitionInfo partitionInfo = new PartitionInfo();
-                partitionInfo.setTableId(rs.getString("table_id"));
-                partitionInfo.setPartitionDesc(rs.getString("partition_desc"));
-                partitionInfo.setVersion(rs.getInt("version"));
-                partitionInfo.setCommitOp(rs.getString("commit_op"));
-                Array snapshotArray = rs.getArray("snapshot");
-                List<UUID> uuidList = new ArrayList<>();
-                Collections.addAll(uuidList, (UUID[]) snapshotArray.getArray());
-                partitionInfo.setSnapshot(uuidList);
-                partitionInfo.setExpression(rs.getString("expression"));
-                rsList.add(partitionInfo);
+                rsList.add(readPartitionInfo(rs, new PartitionInfo()));
             }
+            resolveDeltaSnapshots(conn, rsList);
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -151,13 +419,8 @@ public class PartitionInfoDao {
     }
 
     public PartitionInfo selectLatestPartitionInfo(String tableId, String partitionDesc) {
-        String sql = String.format(
-                "select m.table_id, t.partition_desc, m.version, m.commit_op, m.snapshot, m.expression from (" +
-                        "select table_id,partition_desc,max(version) from partition_info " +
-                        "where table_id = '%s' and partition_desc = '%s' " +
-                        "group by table_id,partition_desc) t " +
-                        "left join partition_info m on t.table_id = m.table_id and t.partition_desc = m.partition_desc and t.max = m.version", tableId, partitionDesc);
-        return getPartitionInfo(sql);
+        String sql = LATEST_PARTITION_INFO_SQL + "where l.table_id = ? and l.partition_desc = ?";
+        return getPartitionInfo("PartitionInfoDao.selectLatestPartitionInfo", sql, tableId, partitionDesc);
     }
 
     public List<PartitionInfo> getPartitionVersions(String tableId,String partitionDesc) {
@@ -165,11 +428,12 @@ public class PartitionInfoDao {
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         List<PartitionInfo> rsList = new ArrayList<>();
-        String sql = String.format("select * from partition_info where table_id = '%s' and partition_desc = '%s'",
-                tableId, partitionDesc);
+        String sql = "select * from partition_info where table_id = ? and partition_desc = ?";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("PartitionInfoDao.getPartitionVersions");
             pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setString(2, partitionDesc);
             rs = pstmt.executeQuery();
             while (rs.next()) {
                 PartitionInfo partitionInfo = new PartitionInfo();
@@ -179,7 +443,7 @@ public class PartitionInfoDao {
                 rsList.add(partitionInfo);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -191,31 +455,169 @@ public class PartitionInfoDao {
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         List<PartitionInfo> rsList = new ArrayList<>();
-        String sql = String.format(
-                "select m.table_id, t.partition_desc, m.version, m.commit_op, m.snapshot, m.expression from (" +
-                        "select table_id,partition_desc,max(version) from partition_info " +
-                        "where table_id = '%s' " +
-                        "group by table_id,partition_desc) t " +
-                        "left join partition_info m on t.table_id = m.table_id and t.partition_desc = m.partition_desc and t.max = m.version", tableId);
+        String sql = LATEST_PARTITION_INFO_SQL + "where l.table_id = ?";
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("PartitionInfoDao.getPartitionDescByTableId");
             pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
             rs = pstmt.executeQuery();
             while (rs.next()) {
-                PartitionInfo partitionInfo = new PartitionInfo();
-                partitionInfo.setTableId(rs.getString("table_id"));
-                partitionInfo.setPartitionDesc(rs.getString("partition_desc"));
-                partitionInfo.setVersion(rs.getInt("version"));
-                partitionInfo.setCommitOp(rs.getString("commit_op"));
-                Array snapshotArray = rs.getArray("snapshot");
-                List<UUID> uuidList = new ArrayList<>();
-                Collections.addAll(uuidList, (UUID[]) snapshotArray.getArray());
-                partitionInfo.setSnapshot(uuidList);
-                partitionInfo.setExpression(rs.getString("expression"));
-                rsList.add(partitionInfo);
+                rsList.add(readPartitionInfo(rs, new PartitionInfo()));
+            }
+            resolveDeltaSnapshots(conn, rsList);
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return rsList;
+    }
+
+    /**
+     * Delete all versions of every partition older than the latest retainVersions ones, keeping the rows a
+     * retained delta snapshot is chained to, whichever client wrote it. Returns the number of deleted rows and their
+     * size in bytes.
+     */
+    public long[] deleteExpiredVersions(String tableId, int retainVersions) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long[] result = new long[]{0, 0};
+        String sql = "with latest as (" +
+                "select partition_desc, version as max_version from partition_latest_version " +
+                "where table_id = ?), " +
+                "keep as (" +
+                "select p.partition_desc, min(coalesce(p.checkpoint_version, p.version)) as keep_from from partition_info p " +
+                "join latest l on p.partition_desc = l.partition_desc " +
+                "where p.table_id = ? and p.version > l.max_version - ? group by p.partition_desc), " +
+                "deleted as (" +
+                "delete from partition_info d using keep k " +
+                "where d.table_id = ? and d.partition_desc = k.partition_desc and d.version < k.keep_from " +
+                "returning pg_column_size(d.*) as size) " +
+                "select count(*), coalesce(sum(size), 0) from deleted";
+        try {
+            conn = DBConnector.getConn("PartitionInfoDao.deleteExpiredVersions");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setString(2, tableId);
+            pstmt.setInt(3, retainVersions);
+            pstmt.setString(4, tableId);
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                result[0] = rs.getLong(1);
+                result[1] = rs.getLong(2);
+            }
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return result;
+    }
+
+    public Map<String, Integer> getLatestVersions(String tableId) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        Map<String, Integer> versionMap = new HashMap<>();
+        String sql = "select l.partition_desc, l.version from partition_latest_version l " +
+                "join partition_info m on m.table_id = l.table_id and m.partition_desc = l.partition_desc " +
+                "and m.version = l.version where l.table_id = ?";
+        try {
+            conn = DBConnector.getConn("PartitionInfoDao.getLatestVersions");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                versionMap.put(rs.getString("partition_desc"), rs.getInt("version"));
+            }
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return versionMap;
+    }
+
+    // latest versions including tombstones of dropped partitions, which new versions are numbered after
+    public Map<String, Integer> getLatestVersions(String tableId, List<String> partitionDescList) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        Map<String, Integer> versionMap = new HashMap<>();
+        String sql = "select partition_desc, version from partition_latest_version " +
+                "where table_id = ? and partition_desc = any(?::text[])";
+        try {
+            conn = DBConnector.getConn("PartitionInfoDao.getLatestVersions");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setArray(2, conn.createArrayOf("text", partitionDescList.toArray()));
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                versionMap.put(rs.getString("partition_desc"), rs.getInt("version"));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return versionMap;
+    }
+
+    public int selectLatestVersion(String tableId, String partitionDesc) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        int version = -1;
+        String sql = "select l.version from partition_latest_version l " +
+                "join partition_info m on m.table_id = l.table_id and m.partition_desc = l.partition_desc " +
+                "and m.version = l.version where l.table_id = ? and l.partition_desc = ?";
+        try {
+            conn = DBConnector.getConn("PartitionInfoDao.selectLatestVersion");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, tableId);
+            pstmt.setString(2, partitionDesc);
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                version = rs.getInt("version");
+            }
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
+        } finally {
+            DBConnector.closeConn(rs, pstmt, conn);
+        }
+        return version;
+    }
+
+    public List<PartitionInfo> findByTableIdAndVersions(String tableId, Map<String, Integer> versionMap) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        List<PartitionInfo> rsList = new ArrayList<>();
+        if (versionMap.isEmpty()) {
+            return rsList;
+        }
+        String sql = "select m.* from unnest(?::text[], ?::int[]) as t(partition_desc, version) " +
+                "join partition_info m on m.table_id = ? and m.partition_desc = t.partition_desc and m.version = t.version";
+        List<String> partitionDescList = new ArrayList<>(versionMap.size());
+        List<Integer> versionList = new ArrayList<>(versionMap.size());
+        for (Map.Entry<String, Integer> entry : versionMap.entrySet()) {
+            partitionDescList.add(entry.getKey());
+            versionList.add(entry.getValue());
+        }
+        try {
+            conn = DBConnector.getConn("PartitionInfoDao.findByTableIdAndVersions");
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setArray(1, conn.createArrayOf("text", partitionDescList.toArray()));
+            pstmt.setArray(2, conn.createArrayOf("integer", versionList.toArray()));
+            pstmt.setString(3, tableId);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rsList.add(readPartitionInfo(rs, new PartitionInfo()));
+            }
+            resolveDeltaSnapshots(conn, rsList);
+        } catch (SQLException e) {
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -224,34 +626,31 @@ public class PartitionInfoDao {
 
     public PartitionInfo findByKey(String tableId, String partitionDesc, int version) {
 
-        String sql = String.format("select * from partition_info where table_id = '%s' and partition_desc = '%s' and version = %d",
-                tableId, partitionDesc, version);
-        return getPartitionInfo(sql);
+        String sql = "select * from partition_info where table_id = ? and partition_desc = ? and version = ?";
+        return getPartitionInfo("PartitionInfoDao.findByKey", sql, tableId, partitionDesc, version);
     }
 
-    private PartitionInfo getPartitionInfo(String sql) {
+    private PartitionInfo getPartitionInfo(String op, String sql, Object... params) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         PartitionInfo partitionInfo = new PartitionInfo();
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn(op);
             pstmt = conn.prepareStatement(sql);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
             rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                partitionInfo.setTableId(rs.getString("table_id"));
-                partitionInfo.setPartitionDesc(rs.getString("partition_desc"));
-                partitionInfo.setVersion(rs.getInt("version"));
-                partitionInfo.setCommitOp(rs.getString("commit_op"));
-                Array snapshotArray = rs.getArray("snapshot");
-                List<UUID> uuidList = new ArrayList<>();
-                Collections.addAll(uuidList, (UUID[]) snapshotArray.getArray());
-                partitionInfo.setSnapshot(uuidList);
-                partitionInfo.setExpression(rs.getString("expression"));
+                readPartitionInfo(rs, partitionInfo);
+            }
+            if (partitionInfo.getTableId() != null) {
+                resolveDeltaSnapshots(conn, Collections.singletonList(partitionInfo));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -30,36 +30,36 @@ public class TableInfoDao {
     public TableInfo selectByTableId(String tableId) {
 
         String sql = String.format("select * from table_info where table_id = '%s'", tableId);
-        return getTableInfo(sql);
+        return getTableInfo("TableInfoDao.selectByTableId", sql);
     }
 
     public TableInfo selectByTableName(String tableName) {
         String sql = String.format("select * from table_info where table_name = '%s'", tableName);
-        return getTableInfo(sql);
+        return getTableInfo("TableInfoDao.selectByTableName", sql);
     }
 
     public TableInfo selectByTablePath(String tablePath) {
         String sql = String.format("select * from table_info where table_path = '%s'", tablePath);
-        return getTableInfo(sql);
+        return getTableInfo("TableInfoDao.selectByTablePath", sql);
     }
 
     public TableInfo selectByIdAndTablePath(String tableId, String tablePath) {
         String sql = String.format("select * from table_info where table_id = '%s' and table_path = '%s' ", tableId, tablePath);
-        return getTableInfo(sql);
+        return getTableInfo("TableInfoDao.selectByIdAndTablePath", sql);
     }
 
     public TableInfo selectByIdAndTableName(String tableId, String tableName) {
         String sql = String.format("select * from table_info where table_id = '%s' and table_name = '%s' ", tableId, tableName);
-        return getTableInfo(sql);
+        return getTableInfo("TableInfoDao.selectByIdAndTableName", sql);
     }
 
-    private TableInfo getTableInfo(String sql) {
+    private TableInfo getTableInfo(String op, String sql) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         TableInfo tableInfo = null;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn(op);
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -72,7 +72,7 @@ public class TableInfoDao {
                 tableInfo.setPartitions(rs.getString("partitions"));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -84,7 +84,7 @@ public class TableInfoDao {
         PreparedStatement pstmt = null;
         boolean result = true;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableInfoDao.insert");
             pstmt = conn.prepareStatement("insert into table_info(table_id, table_name, table_path, table_schema, properties, partitions) " +
                     "values (?, ?, ?, ?, ?, ?)");
             pstmt.setString(1, tableInfo.getTableId());
@@ -96,7 +96,7 @@ public class TableInfoDao {
             pstmt.execute();
         } catch (SQLException e) {
             result = false;
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -108,11 +108,11 @@ public class TableInfoDao {
         PreparedStatement pstmt = null;
         String sql = String.format("delete from table_info where table_id = '%s' ", tableId);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableInfoDao.deleteByTableId");
             pstmt = conn.prepareStatement(sql);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -123,11 +123,11 @@ public class TableInfoDao {
         PreparedStatement pstmt = null;
         String sql = String.format("delete from table_info where table_id = '%s' and table_path = '%s'", tableId, tablePath);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableInfoDao.deleteByIdAndPath");
             pstmt = conn.prepareStatement(sql);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -142,11 +142,11 @@ public class TableInfoDao {
         sb.append(String.format("properties = '%s'", properties.toJSONString()));
         sb.append(String.format(" where table_id = '%s'", tableId));
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableInfoDao.updatePropertiesById");
             pstmt = conn.prepareStatement(sb.toString());
             result = pstmt.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -174,11 +174,11 @@ public class TableInfoDao {
         sb = new StringBuilder(sb.substring(0, sb.length()-2));
         sb.append(String.format(" where table_id = '%s'", tableId));
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableInfoDao.updateByTableId");
             pstmt = conn.prepareStatement(sb.toString());
             result = pstmt.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
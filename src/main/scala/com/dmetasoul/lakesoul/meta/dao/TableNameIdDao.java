@@ -32,7 +32,7 @@ public class TableNameIdDao {
         String sql = String.format("select * from table_name_id where table_name = '%s'", tableName);
         TableNameId tableNameId = null;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableNameIdDao.findByTableName");
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             tableNameId = new TableNameId();
@@ -41,7 +41,7 @@ public class TableNameIdDao {
                 tableNameId.setTableId(rs.getString("table_id"));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -53,14 +53,14 @@ public class TableNameIdDao {
         PreparedStatement pstmt = null;
         boolean result = true;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableNameIdDao.insert");
             pstmt = conn.prepareStatement("insert into table_name_id (table_name, table_id) values (?, ?)");
             pstmt.setString(1, tableNameId.getTableName());
             pstmt.setString(2, tableNameId.getTableId());
             pstmt.execute();
         } catch (SQLException e) {
             result = false;
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -72,11 +72,11 @@ public class TableNameIdDao {
         PreparedStatement pstmt = null;
         String sql = String.format("delete from table_name_id where table_name = '%s' ", tableName);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableNameIdDao.delete");
             pstmt = conn.prepareStatement(sql);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -87,11 +87,11 @@ public class TableNameIdDao {
         PreparedStatement pstmt = null;
         String sql = String.format("delete from table_name_id where table_id = '%s' ", tableId);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableNameIdDao.deleteByTableId");
             pstmt = conn.prepareStatement(sql);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -106,11 +106,11 @@ public class TableNameIdDao {
         PreparedStatement pstmt = null;
         String sql = String.format("update table_name_id set table_id = '%s' where table_name = '%s' ", table_id, tableName);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TableNameIdDao.updateTableId");
             pstmt = conn.prepareStatement(sql);
             result = pstmt.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
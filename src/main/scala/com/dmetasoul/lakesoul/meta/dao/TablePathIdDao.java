@@ -34,7 +34,7 @@ public class TablePathIdDao {
         String sql = String.format("select * from table_path_id where table_path = '%s'", tablePath);
         TablePathId tablePathId = null;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.findByTablePath");
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             tablePathId = new TablePathId();
@@ -43,7 +43,7 @@ public class TablePathIdDao {
                 tablePathId.setTableId(rs.getString("table_id"));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -57,7 +57,7 @@ public class TablePathIdDao {
         String sql = "select * from table_path_id";
         List<TablePathId> list = new ArrayList<>();
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.listAll");
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -67,7 +67,7 @@ public class TablePathIdDao {
                 list.add(tablePathId);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -81,7 +81,7 @@ public class TablePathIdDao {
         String sql = "select table_path from table_path_id";
         List<String> list = new ArrayList<>();
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.listAllPath");
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -89,7 +89,7 @@ public class TablePathIdDao {
                 list.add(tablePath);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(rs, pstmt, conn);
         }
@@ -101,14 +101,14 @@ public class TablePathIdDao {
         PreparedStatement pstmt = null;
         boolean result = true;
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.insert");
             pstmt = conn.prepareStatement("insert into table_path_id (table_path, table_id) values (?, ?)");
             pstmt.setString(1, tablePathId.getTablePath());
             pstmt.setString(2, tablePathId.getTableId());
             pstmt.execute();
         } catch (SQLException e) {
             result = false;
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -120,11 +120,11 @@ public class TablePathIdDao {
         PreparedStatement pstmt = null;
         String sql = String.format("delete from table_path_id where table_path = '%s' ", tablePath);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.delete");
             pstmt = conn.prepareStatement(sql);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -135,11 +135,11 @@ public class TablePathIdDao {
         PreparedStatement pstmt = null;
         String sql = String.format("delete from table_path_id where table_id = '%s' ", tableId);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.deleteByTableId");
             pstmt = conn.prepareStatement(sql);
             pstmt.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
@@ -154,11 +154,11 @@ public class TablePathIdDao {
         PreparedStatement pstmt = null;
         String sql = String.format("update table_path_id set table_id = '%s' where table_path = '%s' ", table_id, tablePath);
         try {
-            conn = DBConnector.getConn();
+            conn = DBConnector.getConn("TablePathIdDao.updateTableId");
             pstmt = conn.prepareStatement(sql);
             result = pstmt.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DBConnector.recordError(e);
         } finally {
             DBConnector.closeConn(pstmt, conn);
         }
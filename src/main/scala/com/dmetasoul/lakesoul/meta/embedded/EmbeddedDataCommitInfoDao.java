@@ -0,0 +1,203 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.embedded;
+
+import com.dmetasoul.lakesoul.meta.dao.DataCommitInfoDao;
+import com.dmetasoul.lakesoul.meta.entity.DataCommitInfo;
+import com.dmetasoul.lakesoul.meta.entity.PartitionInfo;
+
+import java.util.*;
+
+import static com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore.*;
+
+class EmbeddedDataCommitInfoDao extends DataCommitInfoDao {
+    private final EmbeddedMetaStore store;
+
+    EmbeddedDataCommitInfoDao(EmbeddedMetaStore store) {
+        this.store = store;
+    }
+
+    private DataCommitInfo get(String tableId, String partitionDesc, UUID commitId) {
+        Map<String, Map<UUID, DataCommitInfo>> table = store.dataCommitInfoMap.get(tableId);
+        if (table == null) {
+            return null;
+        }
+        Map<UUID, DataCommitInfo> commits = table.get(partitionDesc);
+        return commits == null ? null : commits.get(commitId);
+    }
+
+    @Override
+    public void insert(DataCommitInfo dataCommitInfo) {
+        batchInsert(Collections.singletonList(dataCommitInfo));
+    }
+
+    @Override
+    public boolean batchInsert(List<DataCommitInfo> listData) {
+        store.lock.writeLock().lock();
+        try {
+            Set<List<Object>> keys = new HashSet<>();
+            List<Change> changes = new ArrayList<>(listData.size());
+            for (DataCommitInfo dataCommitInfo : listData) {
+                String tableId = dataCommitInfo.getTableId();
+                String partitionDesc = dataCommitInfo.getPartitionDesc();
+                UUID commitId = dataCommitInfo.getCommitId();
+                if (!keys.add(Arrays.asList(tableId, partitionDesc, commitId))
+                        || get(tableId, partitionDesc, commitId) != null) {
+                    return false;
+                }
+                changes.add(put(DATA_COMMIT_INFO, copyOf(dataCommitInfo)));
+            }
+            store.write(changes);
+            return true;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByPrimaryKey(String tableId, String partitionDesc, UUID commitId) {
+        store.lock.writeLock().lock();
+        try {
+            DataCommitInfo dataCommitInfo = get(tableId, partitionDesc, commitId);
+            if (dataCommitInfo != null) {
+                store.write(Collections.singletonList(remove(DATA_COMMIT_INFO, dataCommitInfo)));
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTableIdAndPartitionDesc(String tableId, String partitionDesc) {
+        store.lock.writeLock().lock();
+        try {
+            Map<String, Map<UUID, DataCommitInfo>> table = store.dataCommitInfoMap.get(tableId);
+            if (table != null && table.containsKey(partitionDesc)) {
+                List<Change> changes = new ArrayList<>();
+                for (DataCommitInfo dataCommitInfo : table.get(partitionDesc).values()) {
+                    changes.add(remove(DATA_COMMIT_INFO, dataCommitInfo));
+                }
+                store.write(changes);
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTableId(String tableId) {
+        store.lock.writeLock().lock();
+        try {
+            Map<String, Map<UUID, DataCommitInfo>> table = store.dataCommitInfoMap.get(tableId);
+            if (table != null) {
+                List<Change> changes = new ArrayList<>();
+                for (Map<UUID, DataCommitInfo> commits : table.values()) {
+                    for (DataCommitInfo dataCommitInfo : commits.values()) {
+                        changes.add(remove(DATA_COMMIT_INFO, dataCommitInfo));
+                    }
+                }
+                store.write(changes);
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public DataCommitInfo selectByPrimaryKey(String tableId, String partitionDesc, UUID commitId) {
+        store.lock.readLock().lock();
+        try {
+            DataCommitInfo dataCommitInfo = get(tableId, partitionDesc, commitId);
+            return dataCommitInfo == null ? new DataCommitInfo() : copyOf(dataCommitInfo);
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<DataCommitInfo> selectByTableIdPartitionDescCommitList(String tableId, String partitionDesc,
+                                                                       List<UUID> commitIdList) {
+        store.lock.readLock().lock();
+        try {
+            List<DataCommitInfo> commitInfoList = new ArrayList<>(commitIdList.size());
+            for (UUID commitId : commitIdList) {
+                DataCommitInfo dataCommitInfo = get(tableId, partitionDesc, commitId);
+                if (dataCommitInfo != null) {
+                    commitInfoList.add(copyOf(dataCommitInfo));
+                }
+            }
+            return commitInfoList;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<DataCommitInfo> selectByTableIdCommitPairs(String tableId, List<String> partitionDescList,
+                                                           List<UUID> commitIdList) {
+        store.lock.readLock().lock();
+        try {
+            List<DataCommitInfo> commitInfoList = new ArrayList<>(commitIdList.size());
+            for (int i = 0; i < commitIdList.size(); i++) {
+                DataCommitInfo dataCommitInfo = get(tableId, partitionDescList.get(i), commitIdList.get(i));
+                if (dataCommitInfo != null) {
+                    commitInfoList.add(copyOf(dataCommitInfo));
+                }
+            }
+            return commitInfoList;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] deleteUnreferenced(String tableId, long expireTimestamp) {
+        store.lock.writeLock().lock();
+        try {
+            long[] result = new long[]{0, 0};
+            Map<String, Map<UUID, DataCommitInfo>> table = store.dataCommitInfoMap.get(tableId);
+            if (table == null) {
+                return result;
+            }
+            Map<String, Set<UUID>> referenced = new HashMap<>();
+            Map<String, TreeMap<Integer, PartitionInfo>> partitions =
+                    store.partitionInfoMap.getOrDefault(tableId, Collections.emptyMap());
+            for (Map.Entry<String, TreeMap<Integer, PartitionInfo>> entry : partitions.entrySet()) {
+                Set<UUID> commitIds = referenced.computeIfAbsent(entry.getKey(), k -> new HashSet<>());
+                for (PartitionInfo partitionInfo : entry.getValue().values()) {
+                    commitIds.addAll(partitionInfo.getSnapshot());
+                }
+            }
+            List<Change> changes = new ArrayList<>();
+            for (Map.Entry<String, Map<UUID, DataCommitInfo>> entry : table.entrySet()) {
+                Set<UUID> commitIds = referenced.getOrDefault(entry.getKey(), Collections.emptySet());
+                for (DataCommitInfo dataCommitInfo : entry.getValue().values()) {
+                    if (dataCommitInfo.getTimestamp() < expireTimestamp && !commitIds.contains(dataCommitInfo.getCommitId())) {
+                        changes.add(remove(DATA_COMMIT_INFO, dataCommitInfo));
+                        result[0]++;
+                        result[1] += sizeOf(dataCommitInfo);
+                    }
+                }
+            }
+            store.write(changes);
+            return result;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.embedded;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.dmetasoul.lakesoul.meta.MetaStore;
+import com.dmetasoul.lakesoul.meta.dao.*;
+import com.dmetasoul.lakesoul.meta.entity.*;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Meta store kept in the memory of the current JVM, for tests, local development and single node deployments
+ * without a database server. All tables are guarded by one read write lock, which gives every DAO call the
+ * isolation of a serializable transaction.
+ * <p>
+ * When a journal path is given, every write is appended to it as one JSON line before it is applied, and the
+ * journal is replayed on start. A line cut short by a crash is dropped, so a write is either fully durable or lost.
+ */
+public class EmbeddedMetaStore implements MetaStore {
+    static final String TABLE_INFO = "table_info";
+    static final String TABLE_NAME_ID = "table_name_id";
+    static final String TABLE_PATH_ID = "table_path_id";
+    static final String PARTITION_INFO = "partition_info";
+    static final String DATA_COMMIT_INFO = "data_commit_info";
+    // tombstones of dropped partitions, rows are partitions holding only table id, partition desc and last version
+    static final String PARTITION_TOMBSTONE = "partition_tombstone";
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final Map<String, TableInfo> tableInfoMap = new HashMap<>();
+    final Map<String, TableNameId> tableNameIdMap = new HashMap<>();
+    final Map<String, TablePathId> tablePathIdMap = new LinkedHashMap<>();
+    // table id -> partition desc -> version -> partition
+    final Map<String, Map<String, TreeMap<Integer, PartitionInfo>>> partitionInfoMap = new HashMap<>();
+    // table id -> partition desc -> last version of the dropped partition
+    final Map<String, Map<String, Integer>> partitionTombstoneMap = new HashMap<>();
+    // table id -> partition desc -> commit id -> data commit
+    final Map<String, Map<String, Map<UUID, DataCommitInfo>>> dataCommitInfoMap = new HashMap<>();
+
+    private final Writer journal;
+
+    private final TableInfoDao tableInfoDao = new EmbeddedTableInfoDao(this);
+    private final TableNameIdDao tableNameIdDao = new EmbeddedTableNameIdDao(this);
+    private final TablePathIdDao tablePathIdDao = new EmbeddedTablePathIdDao(this);
+    private final DataCommitInfoDao dataCommitInfoDao = new EmbeddedDataCommitInfoDao(this);
+    private final PartitionInfoDao partitionInfoDao = new EmbeddedPartitionInfoDao(this);
+
+    public EmbeddedMetaStore() {
+        this("");
+    }
+
+    public EmbeddedMetaStore(String journalPath) {
+        if (journalPath == null || journalPath.isEmpty()) {
+            journal = null;
+            return;
+        }
+        File file = new File(journalPath);
+        try {
+            if (file.exists()) {
+                replay(file);
+            } else if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open meta journal " + journalPath, e);
+        }
+    }
+
+    @Override
+    public TableInfoDao getTableInfoDao() {
+        return tableInfoDao;
+    }
+
+    @Override
+    public TableNameIdDao getTableNameIdDao() {
+        return tableNameIdDao;
+    }
+
+    @Override
+    public TablePathIdDao getTablePathIdDao() {
+        return tablePathIdDao;
+    }
+
+    @Override
+    public DataCommitInfoDao getDataCommitInfoDao() {
+        return dataCommitInfoDao;
+    }
+
+    @Override
+    public PartitionInfoDao getPartitionInfoDao() {
+        return partitionInfoDao;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static final class Change {
+        final String table;
+        final boolean put;
+        final Object row;
+
+        private Change(String table, boolean put, Object row) {
+            this.table = table;
+            this.put = put;
+            this.row = row;
+        }
+    }
+
+    static Change put(String table, Object row) {
+        return new Change(table, true, row);
+    }
+
+    static Change remove(String table, Object row) {
+        return new Change(table, false, row);
+    }
+
+    // caller must hold the write lock
+    void write(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            JSONArray records = new JSONArray(changes.size());
+            for (Change change : changes) {
+                JSONObject record = new JSONObject();
+                record.put("table", change.table);
+                record.put("op", change.put ? "put" : "remove");
+                record.put("row", toJson(change.table, change.row));
+                records.add(record);
+            }
+            try {
+                journal.write(records.toJSONString());
+                journal.write('\n');
+                journal.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to write meta journal", e);
+            }
+        }
+        for (Change change : changes) {
+            apply(change);
+        }
+    }
+
+    // applies every complete line and cuts off a line torn by a crash, so new writes start on a clean line
+    private void replay(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int validLength = 0;
+        int lineEnd;
+        while ((lineEnd = indexOf(bytes, (byte) '\n', validLength)) >= 0) {
+            JSONArray records;
+            try {
+                records = JSON.parseArray(new String(bytes, validLength, lineEnd - validLength, StandardCharsets.UTF_8));
+            } catch (JSONException e) {
+                break;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                JSONObject record = records.getJSONObject(i);
+                String table = record.getString("table");
+                Object row = fromJson(table, record.getJSONObject("row"));
+                apply(new Change(table, "put".equals(record.getString("op")), row));
+            }
+            validLength = lineEnd + 1;
+        }
+        if (validLength < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void apply(Change change) {
+        switch (change.table) {
+            case TABLE_INFO: {
+                TableInfo row = (TableInfo) change.row;
+                if (change.put) {
+                    tableInfoMap.put(row.getTableId(), row);
+                } else {
+                    tableInfoMap.remove(row.getTableId());
+                }
+                break;
+            }
+            case TABLE_NAME_ID: {
+                TableNameId row = (TableNameId) change.row;
+                if (change.put) {
+                    tableNameIdMap.put(row.getTableName(), row);
+                } else {
+                    tableNameIdMap.remove(row.getTableName());
+                }
+                break;
+            }
+            case TABLE_PATH_ID: {
+                TablePathId row = (TablePathId) change.row;
+                if (change.put) {
+                    tablePathIdMap.put(row.getTablePath(), row);
+                } else {
+                    tablePathIdMap.remove(row.getTablePath());
+                }
+                break;
+            }
+            case PARTITION_INFO: {
+                PartitionInfo row = (PartitionInfo) change.row;
+                if (change.put) {
+                    partitionInfoMap.computeIfAbsent(row.getTableId(), k -> new HashMap<>())
+                            .computeIfAbsent(row.getPartitionDesc(), k -> new TreeMap<>())
+                            .put(row.getVersion(), row);
+                } else {
+                    Map<String, TreeMap<Integer, PartitionInfo>> table = partitionInfoMap.get(row.getTableId());
+                    if (table != null) {
+                        TreeMap<Integer, PartitionInfo> versions = table.get(row.getPartitionDesc());
+                        if (versions != null) {
+                            versions.remove(row.getVersion());
+                            if (versions.isEmpty()) {
+                                table.remove(row.getPartitionDesc());
+                            }
+                        }
+                        if (table.isEmpty()) {
+                            partitionInfoMap.remove(row.getTableId());
+                        }
+                    }
+                }
+                break;
+            }
+            case PARTITION_TOMBSTONE: {
+                PartitionInfo row = (PartitionInfo) change.row;
+                if (change.put) {
+                    partitionTombstoneMap.computeIfAbsent(row.getTableId(), k -> new HashMap<>())
+                            .put(row.getPartitionDesc(), row.getVersion());
+                } else {
+                    Map<String, Integer> table = partitionTombstoneMap.get(row.getTableId());
+                    if (table != null) {
+                        table.remove(row.getPartitionDesc());
+                        if (table.isEmpty()) {
+                            partitionTombstoneMap.remove(row.getTableId());
+                        }
+                    }
+                }
+                break;
+            }
+            case DATA_COMMIT_INFO: {
+                DataCommitInfo row = (DataCommitInfo) change.row;
+                if (change.put) {
+                    dataCommitInfoMap.computeIfAbsent(row.getTableId(), k -> new HashMap<>())
+                            .computeIfAbsent(row.getPartitionDesc(), k -> new HashMap<>())
+                            .put(row.getCommitId(), row);
+                } else {
+                    Map<String, Map<UUID, DataCommitInfo>> table = dataCommitInfoMap.get(row.getTableId());
+                    if (table != null) {
+                        Map<UUID, DataCommitInfo> commits = table.get(row.getPartitionDesc());
+                        if (commits != null) {
+                            commits.remove(row.getCommitId());
+                            if (commits.isEmpty()) {
+                                table.remove(row.getPartitionDesc());
+                            }
+                        }
+                        if (table.isEmpty()) {
+                            dataCommitInfoMap.remove(row.getTableId());
+                        }
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("unknown meta table " + change.table);
+        }
+    }
+
+    private static JSONObject toJson(String table, Object row) {
+        JSONObject json = new JSONObject();
+        switch (table) {
+            case TABLE_INFO: {
+                TableInfo tableInfo = (TableInfo) row;
+                json.put("table_id", tableInfo.getTableId());
+                json.put("table_name", tableInfo.getTableName());
+                json.put("table_path", tableInfo.getTablePath());
+                json.put("table_schema", tableInfo.getTableSchema());
+                json.put("properties", tableInfo.getProperties());
+                json.put("partitions", tableInfo.getPartitions());
+                break;
+            }
+            case TABLE_NAME_ID: {
+                TableNameId tableNameId = (TableNameId) row;
+                json.put("table_name", tableNameId.getTableName());
+                json.put("table_id", tableNameId.getTableId());
+                break;
+            }
+            case TABLE_PATH_ID: {
+                TablePathId tablePathId = (TablePathId) row;
+                json.put("table_path", tablePathId.getTablePath());
+                json.put("table_id", tablePathId.getTableId());
+                break;
+            }
+            case PARTITION_INFO: {
+                PartitionInfo partitionInfo = (PartitionInfo) row;
+                json.put("table_id", partitionInfo.getTableId());
+                json.put("partition_desc", partitionInfo.getPartitionDesc());
+                json.put("version", partitionInfo.getVersion());
+                json.put("commit_op", partitionInfo.getCommitOp());
+                JSONArray snapshot = new JSONArray();
+                if (partitionInfo.getSnapshot() != null) {
+                    for (UUID commitId : partitionInfo.getSnapshot()) {
+                        snapshot.add(commitId.toString());
+                    }
+                }
+                json.put("snapshot", snapshot);
+                json.put("expression", partitionInfo.getExpression());
+                break;
+            }
+            case PARTITION_TOMBSTONE: {
+                PartitionInfo partitionInfo = (PartitionInfo) row;
+                json.put("table_id", partitionInfo.getTableId());
+                json.put("partition_desc", partitionInfo.getPartitionDesc());
+                json.put("version", partitionInfo.getVersion());
+                break;
+            }
+            case DATA_COMMIT_INFO: {
+                DataCommitInfo dataCommitInfo = (DataCommitInfo) row;
+                json.put("table_id", dataCommitInfo.getTableId());
+                json.put("partition_desc", dataCommitInfo.getPartitionDesc());
+                json.put("commit_id", dataCommitInfo.getCommitId().toString());
+                JSONArray fileOps = new JSONArray();
+                if (dataCommitInfo.getFileOps() != null) {
+                    for (DataFileOp dataFileOp : dataCommitInfo.getFileOps()) {
+                        JSONObject fileOp = new JSONObject();
+                        fileOp.put("path", dataFileOp.getPath());
+                        fileOp.put("file_op", dataFileOp.getFileOp());
+                        fileOp.put("size", dataFileOp.getSize());
+                        fileOp.put("file_exist_cols", dataFileOp.getFileExistCols());
+                        fileOps.add(fileOp);
+                    }
+                }
+                json.put("file_ops", fileOps);
+                json.put("commit_op", dataCommitInfo.getCommitOp());
+                json.put("timestamp", dataCommitInfo.getTimestamp());
+                break;
+            }
+            default:
+                throw new IllegalStateException("unknown meta table " + table);
+        }
+        return json;
+    }
+
+    private static Object fromJson(String table, JSONObject json) {
+        switch (table) {
+            case TABLE_INFO: {
+                TableInfo tableInfo = new TableInfo();
+                tableInfo.setTableId(json.getString("table_id"));
+                tableInfo.setTableName(json.getString("table_name"));
+                tableInfo.setTablePath(json.getString("table_path"));
+                tableInfo.setTableSchema(json.getString("table_schema"));
+                tableInfo.setProperties(json.getJSONObject("properties"));
+                tableInfo.setPartitions(json.getString("partitions"));
+                return tableInfo;
+            }
+            case TABLE_NAME_ID:
+                return new TableNameId(json.getString("table_name"), json.getString("table_id"));
+            case TABLE_PATH_ID:
+                return new TablePathId(json.getString("table_path"), json.getString("table_id"));
+            case PARTITION_INFO: {
+                PartitionInfo partitionInfo = new PartitionInfo();
+                partitionInfo.setTableId(json.getString("table_id"));
+                partitionInfo.setPartitionDesc(json.getString("partition_desc"));
+                partitionInfo.setVersion(json.getIntValue("version"));
+                partitionInfo.setCommitOp(json.getString("commit_op"));
+                JSONArray snapshotArray = json.getJSONArray("snapshot");
+                List<UUID> snapshot = new ArrayList<>(snapshotArray.size());
+                for (int i = 0; i < snapshotArray.size(); i++) {
+                    snapshot.add(UUID.fromString(snapshotArray.getString(i)));
+                }
+                partitionInfo.setSnapshot(snapshot);
+                partitionInfo.setExpression(json.getString("expression"));
+                return partitionInfo;
+            }
+            case PARTITION_TOMBSTONE: {
+                PartitionInfo partitionInfo = new PartitionInfo();
+                partitionInfo.setTableId(json.getString("table_id"));
+                partitionInfo.setPartitionDesc(json.getString("partition_desc"));
+                partitionInfo.setVersion(json.getIntValue("version"));
+                return partitionInfo;
+            }
+            case DATA_COMMIT_INFO: {
+                DataCommitInfo dataCommitInfo = new DataCommitInfo();
+                dataCommitInfo.setTableId(json.getString("table_id"));
+                dataCommitInfo.setPartitionDesc(json.getString("partition_desc"));
+                dataCommitInfo.setCommitId(UUID.fromString(json.getString("commit_id")));
+                JSONArray fileOpArray = json.getJSONArray("file_ops");
+                List<DataFileOp> fileOps = new ArrayList<>(fileOpArray.size());
+                for (int i = 0; i < fileOpArray.size(); i++) {
+                    JSONObject fileOp = fileOpArray.getJSONObject(i);
+                    DataFileOp dataFileOp = new DataFileOp();
+                    dataFileOp.setPath(fileOp.getString("path"));
+                    dataFileOp.setFileOp(fileOp.getString("file_op"));
+                    dataFileOp.setSize(fileOp.getLongValue("size"));
+                    dataFileOp.setFileExistCols(fileOp.getString("file_exist_cols"));
+                    fileOps.add(dataFileOp);
+                }
+                dataCommitInfo.setFileOps(fileOps);
+                dataCommitInfo.setCommitOp(json.getString("commit_op"));
+                dataCommitInfo.setTimestamp(json.getLongValue("timestamp"));
+                return dataCommitInfo;
+            }
+            default:
+                throw new IllegalStateException("unknown meta table " + table);
+        }
+    }
+
+    static TableInfo copyOf(TableInfo tableInfo) {
+        TableInfo copy = new TableInfo();
+        copy.setTableId(tableInfo.getTableId());
+        copy.setTableName(tableInfo.getTableName());
+        copy.setTablePath(tableInfo.getTablePath());
+        copy.setTableSchema(tableInfo.getTableSchema());
+        copy.setProperties(tableInfo.getProperties() == null ? null : new JSONObject(new HashMap<>(tableInfo.getProperties())));
+        copy.setPartitions(tableInfo.getPartitions());
+        return copy;
+    }
+
+    static PartitionInfo copyOf(PartitionInfo partitionInfo) {
+        PartitionInfo copy = new PartitionInfo();
+        copy.setTableId(partitionInfo.getTableId());
+        copy.setPartitionDesc(partitionInfo.getPartitionDesc());
+        copy.setVersion(partitionInfo.getVersion());
+        copy.setCommitOp(partitionInfo.getCommitOp());
+        List<UUID> snapshot = partitionInfo.getSnapshot() == null
+                ? new ArrayList<>() : new ArrayList<>(partitionInfo.getSnapshot());
+        copy.setSnapshot(snapshot);
+        copy.setExpression(partitionInfo.getExpression());
+        copy.setCheckpointVersion(partitionInfo.getVersion());
+        copy.setBaseVersion(partitionInfo.getVersion());
+        copy.setBaseSnapshotSize(snapshot.size());
+        return copy;
+    }
+
+    static DataCommitInfo copyOf(DataCommitInfo dataCommitInfo) {
+        DataCommitInfo copy = new DataCommitInfo();
+        copy.setTableId(dataCommitInfo.getTableId());
+        copy.setPartitionDesc(dataCommitInfo.getPartitionDesc());
+        copy.setCommitId(dataCommitInfo.getCommitId());
+        copy.setFileOps(dataCommitInfo.getFileOps() == null ? null : new ArrayList<>(dataCommitInfo.getFileOps()));
+        copy.setCommitOp(dataCommitInfo.getCommitOp());
+        copy.setTimestamp(dataCommitInfo.getTimestamp());
+        return copy;
+    }
+
+    // approximate row size, standing in for pg_column_size in the cleanup reports
+    static long sizeOf(PartitionInfo partitionInfo) {
+        return 64L + partitionInfo.getSnapshot().size() * 16L
+                + (partitionInfo.getExpression() == null ? 0 : partitionInfo.getExpression().length());
+    }
+
+    static long sizeOf(DataCommitInfo dataCommitInfo) {
+        long size = 64L;
+        if (dataCommitInfo.getFileOps() != null) {
+            for (DataFileOp dataFileOp : dataCommitInfo.getFileOps()) {
+                size += 16L + dataFileOp.getPath().length()
+                        + (dataFileOp.getFileExistCols() == null ? 0 : dataFileOp.getFileExistCols().length());
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.embedded;
+
+import com.dmetasoul.lakesoul.meta.DBUtil;
+import com.dmetasoul.lakesoul.meta.dao.PartitionInfoDao;
+import com.dmetasoul.lakesoul.meta.entity.PartitionInfo;
+import com.dmetasoul.lakesoul.meta.entity.TableInfo;
+
+import java.util.*;
+
+import static com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore.*;
+
+class EmbeddedPartitionInfoDao extends PartitionInfoDao {
+    private final EmbeddedMetaStore store;
+
+    EmbeddedPartitionInfoDao(EmbeddedMetaStore store) {
+        this.store = store;
+    }
+
+    private Map<String, TreeMap<Integer, PartitionInfo>> partitions(String tableId) {
+        return store.partitionInfoMap.getOrDefault(tableId, Collections.emptyMap());
+    }
+
+    private PartitionInfo latest(String tableId, String partitionDesc) {
+        TreeMap<Integer, PartitionInfo> versions = partitions(tableId).get(partitionDesc);
+        return versions == null ? null : versions.lastEntry().getValue();
+    }
+
+    // last version of the partition including a dropped one, -1 for a partition never written
+    private int lastVersion(String tableId, String partitionDesc) {
+        PartitionInfo partitionInfo = latest(tableId, partitionDesc);
+        if (partitionInfo != null) {
+            return partitionInfo.getVersion();
+        }
+        return store.partitionTombstoneMap.getOrDefault(tableId, Collections.emptyMap()).getOrDefault(partitionDesc, -1);
+    }
+
+    private static PartitionInfo tombstone(String tableId, String partitionDesc, int version) {
+        PartitionInfo partitionInfo = new PartitionInfo();
+        partitionInfo.setTableId(tableId);
+        partitionInfo.setPartitionDesc(partitionDesc);
+        partitionInfo.setVersion(version);
+        return partitionInfo;
+    }
+
+    private boolean exists(PartitionInfo partitionInfo) {
+        TreeMap<Integer, PartitionInfo> versions = partitions(partitionInfo.getTableId()).get(partitionInfo.getPartitionDesc());
+        return versions != null && versions.containsKey(partitionInfo.getVersion());
+    }
+
+    @Override
+    public boolean insert(PartitionInfo partitionInfo) {
+        return transactionInsert(Collections.singletonList(partitionInfo));
+    }
+
+    @Override
+    public boolean transactionInsert(List<PartitionInfo> partitionInfoList) {
+        store.lock.writeLock().lock();
+        try {
+            Set<List<Object>> keys = new HashSet<>();
+            List<Change> changes = new ArrayList<>(partitionInfoList.size());
+            for (PartitionInfo partitionInfo : partitionInfoList) {
+                if (!keys.add(Arrays.asList(partitionInfo.getTableId(), partitionInfo.getPartitionDesc(),
+                        partitionInfo.getVersion())) || exists(partitionInfo)) {
+                    return false;
+                }
+                changes.add(put(PARTITION_INFO, copyOf(partitionInfo)));
+            }
+            store.write(changes);
+            return true;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    // the commit runs under the write lock, so unlike the database version it never loses against another commit
+    @Override
+    public boolean serverSideCommit(String tableId, List<PartitionInfo> partitionInfoList, String commitOp,
+                                    boolean appendSnapshot, String properties) {
+        store.lock.writeLock().lock();
+        try {
+            Map<String, PartitionInfo> newMap = new LinkedHashMap<>();
+            for (PartitionInfo partitionInfo : partitionInfoList) {
+                String partitionDesc = partitionInfo.getPartitionDesc();
+                PartitionInfo newPartitionInfo = newMap.get(partitionDesc);
+                if (newPartitionInfo == null) {
+                    PartitionInfo curPartitionInfo = latest(tableId, partitionDesc);
+                    newPartitionInfo = new PartitionInfo();
+                    newPartitionInfo.setTableId(tableId);
+                    newPartitionInfo.setPartitionDesc(partitionDesc);
+                    newPartitionInfo.setVersion(lastVersion(tableId, partitionDesc) + 1);
+                    newPartitionInfo.setCommitOp(commitOp);
+                    newPartitionInfo.setExpression(partitionInfo.getExpression());
+                    List<UUID> snapshot = new ArrayList<>();
+                    if (appendSnapshot && curPartitionInfo != null) {
+                        snapshot.addAll(curPartitionInfo.getSnapshot());
+                    }
+                    newPartitionInfo.setSnapshot(snapshot);
+                    newMap.put(partitionDesc, newPartitionInfo);
+                }
+                newPartitionInfo.getSnapshot().addAll(partitionInfo.getSnapshot());
+            }
+            List<Change> changes = new ArrayList<>(newMap.size() + 1);
+            for (PartitionInfo newPartitionInfo : newMap.values()) {
+                changes.add(put(PARTITION_INFO, newPartitionInfo));
+            }
+            TableInfo tableInfo = store.tableInfoMap.get(tableId);
+            if (tableInfo != null) {
+                TableInfo updated = copyOf(tableInfo);
+                updated.setProperties(DBUtil.stringToJSON(properties));
+                changes.add(put(TABLE_INFO, updated));
+            }
+            store.write(changes);
+            for (PartitionInfo partitionInfo : partitionInfoList) {
+                partitionInfo.setVersion(newMap.get(partitionInfo.getPartitionDesc()).getVersion());
+            }
+            return true;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    // like the partition_latest_version row, the last version is kept as the tombstone of the dropped versions
+    @Override
+    public void deleteByTableIdAndPartitionDesc(String tableId, String partitionDesc) {
+        store.lock.writeLock().lock();
+        try {
+            TreeMap<Integer, PartitionInfo> versions = partitions(tableId).get(partitionDesc);
+            if (versions != null) {
+                List<Change> changes = new ArrayList<>(versions.size() + 1);
+                for (PartitionInfo partitionInfo : versions.values()) {
+                    changes.add(remove(PARTITION_INFO, partitionInfo));
+                }
+                changes.add(put(PARTITION_TOMBSTONE, tombstone(tableId, partitionDesc, versions.lastKey())));
+                store.write(changes);
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTableId(String tableId) {
+        store.lock.writeLock().lock();
+        try {
+            List<Change> changes = new ArrayList<>();
+            for (TreeMap<Integer, PartitionInfo> versions : partitions(tableId).values()) {
+                for (PartitionInfo partitionInfo : versions.values()) {
+                    changes.add(remove(PARTITION_INFO, partitionInfo));
+                }
+            }
+            for (String partitionDesc : store.partitionTombstoneMap.getOrDefault(tableId, Collections.emptyMap()).keySet()) {
+                changes.add(remove(PARTITION_TOMBSTONE, tombstone(tableId, partitionDesc, -1)));
+            }
+            store.write(changes);
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PartitionInfo> findByTableIdAndParList(String tableId, List<String> partitionDescList) {
+        store.lock.readLock().lock();
+        try {
+            List<PartitionInfo> rsList = new ArrayList<>();
+            for (String partitionDesc : new LinkedHashSet<>(partitionDescList)) {
+                PartitionInfo partitionInfo = latest(tableId, partitionDesc);
+                if (partitionInfo != null) {
+                    rsList.add(copyOf(partitionInfo));
+                }
+            }
+            return rsList;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PartitionInfo selectLatestPartitionInfo(String tableId, String partitionDesc) {
+        store.lock.readLock().lock();
+        try {
+            PartitionInfo partitionInfo = latest(tableId, partitionDesc);
+            return partitionInfo == null ? new PartitionInfo() : copyOf(partitionInfo);
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PartitionInfo> getPartitionVersions(String tableId, String partitionDesc) {
+        store.lock.readLock().lock();
+        try {
+            List<PartitionInfo> rsList = new ArrayList<>();
+            TreeMap<Integer, PartitionInfo> versions = partitions(tableId).get(partitionDesc);
+            if (versions != null) {
+                for (Integer version : versions.keySet()) {
+                    PartitionInfo partitionInfo = new PartitionInfo();
+                    partitionInfo.setTableId(tableId);
+                    partitionInfo.setPartitionDesc(partitionDesc);
+                    partitionInfo.setVersion(version);
+                    rsList.add(partitionInfo);
+                }
+            }
+            return rsList;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PartitionInfo> getPartitionDescByTableId(String tableId) {
+        store.lock.readLock().lock();
+        try {
+            List<PartitionInfo> rsList = new ArrayList<>();
+            for (TreeMap<Integer, PartitionInfo> versions : partitions(tableId).values()) {
+                rsList.add(copyOf(versions.lastEntry().getValue()));
+            }
+            return rsList;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    // snapshots are stored in full, so no older version has to be kept for a retained one
+    @Override
+    public long[] deleteExpiredVersions(String tableId, int retainVersions) {
+        store.lock.writeLock().lock();
+        try {
+            long[] result = new long[]{0, 0};
+            List<Change> changes = new ArrayList<>();
+            for (TreeMap<Integer, PartitionInfo> versions : partitions(tableId).values()) {
+                int keepFrom = versions.lastKey() - retainVersions + 1;
+                for (PartitionInfo partitionInfo : versions.headMap(keepFrom).values()) {
+                    changes.add(remove(PARTITION_INFO, partitionInfo));
+                    result[0]++;
+                    result[1] += sizeOf(partitionInfo);
+                }
+            }
+            store.write(changes);
+            return result;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getLatestVersions(String tableId) {
+        store.lock.readLock().lock();
+        try {
+            Map<String, Integer> versionMap = new HashMap<>();
+            for (Map.Entry<String, TreeMap<Integer, PartitionInfo>> entry : partitions(tableId).entrySet()) {
+                versionMap.put(entry.getKey(), entry.getValue().lastKey());
+            }
+            return versionMap;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getLatestVersions(String tableId, List<String> partitionDescList) {
+        store.lock.readLock().lock();
+        try {
+            Map<String, Integer> versionMap = new HashMap<>();
+            for (String partitionDesc : partitionDescList) {
+                int version = lastVersion(tableId, partitionDesc);
+                if (version >= 0) {
+                    versionMap.put(partitionDesc, version);
+                }
+            }
+            return versionMap;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int selectLatestVersion(String tableId, String partitionDesc) {
+        store.lock.readLock().lock();
+        try {
+            PartitionInfo partitionInfo = latest(tableId, partitionDesc);
+            return partitionInfo == null ? -1 : partitionInfo.getVersion();
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PartitionInfo> findByTableIdAndVersions(String tableId, Map<String, Integer> versionMap) {
+        store.lock.readLock().lock();
+        try {
+            List<PartitionInfo> rsList = new ArrayList<>(versionMap.size());
+            for (Map.Entry<String, Integer> entry : versionMap.entrySet()) {
+                TreeMap<Integer, PartitionInfo> versions = partitions(tableId).get(entry.getKey());
+                PartitionInfo partitionInfo = versions == null ? null : versions.get(entry.getValue());
+                if (partitionInfo != null) {
+                    rsList.add(copyOf(partitionInfo));
+                }
+            }
+            return rsList;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PartitionInfo findByKey(String tableId, String partitionDesc, int version) {
+        store.lock.readLock().lock();
+        try {
+            TreeMap<Integer, PartitionInfo> versions = partitions(tableId).get(partitionDesc);
+            PartitionInfo partitionInfo = versions == null ? null : versions.get(version);
+            return partitionInfo == null ? new PartitionInfo() : copyOf(partitionInfo);
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+}
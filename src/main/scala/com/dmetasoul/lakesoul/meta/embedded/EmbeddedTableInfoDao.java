@@ -0,0 +1,160 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.embedded;
+
+import com.alibaba.fastjson.JSONObject;
+import com.dmetasoul.lakesoul.meta.dao.TableInfoDao;
+import com.dmetasoul.lakesoul.meta.entity.TableInfo;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collections;
+
+import static com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore.*;
+
+class EmbeddedTableInfoDao extends TableInfoDao {
+    private final EmbeddedMetaStore store;
+
+    EmbeddedTableInfoDao(EmbeddedMetaStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public TableInfo selectByTableId(String tableId) {
+        return select(tableId, null, null);
+    }
+
+    @Override
+    public TableInfo selectByTableName(String tableName) {
+        return select(null, tableName, null);
+    }
+
+    @Override
+    public TableInfo selectByTablePath(String tablePath) {
+        return select(null, null, tablePath);
+    }
+
+    @Override
+    public TableInfo selectByIdAndTablePath(String tableId, String tablePath) {
+        return select(tableId, null, tablePath);
+    }
+
+    @Override
+    public TableInfo selectByIdAndTableName(String tableId, String tableName) {
+        return select(tableId, tableName, null);
+    }
+
+    private TableInfo select(String tableId, String tableName, String tablePath) {
+        store.lock.readLock().lock();
+        try {
+            Iterable<TableInfo> candidates = tableId != null
+                    ? Collections.singletonList(store.tableInfoMap.get(tableId))
+                    : store.tableInfoMap.values();
+            for (TableInfo tableInfo : candidates) {
+                if (tableInfo != null
+                        && (tableName == null || tableName.equals(tableInfo.getTableName()))
+                        && (tablePath == null || tablePath.equals(tableInfo.getTablePath()))) {
+                    return copyOf(tableInfo);
+                }
+            }
+            return null;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(TableInfo tableInfo) {
+        store.lock.writeLock().lock();
+        try {
+            if (tableInfo.getTableId() == null || store.tableInfoMap.containsKey(tableInfo.getTableId())) {
+                return false;
+            }
+            store.write(Collections.singletonList(put(TABLE_INFO, copyOf(tableInfo))));
+            return true;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTableId(String tableId) {
+        delete(tableId, null);
+    }
+
+    @Override
+    public void deleteByIdAndPath(String tableId, String tablePath) {
+        delete(tableId, tablePath);
+    }
+
+    private void delete(String tableId, String tablePath) {
+        store.lock.writeLock().lock();
+        try {
+            TableInfo tableInfo = store.tableInfoMap.get(tableId);
+            if (tableInfo != null && (tablePath == null || tablePath.equals(tableInfo.getTablePath()))) {
+                store.write(Collections.singletonList(remove(TABLE_INFO, tableInfo)));
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updatePropertiesById(String tableId, JSONObject properties) {
+        store.lock.writeLock().lock();
+        try {
+            TableInfo tableInfo = store.tableInfoMap.get(tableId);
+            if (tableInfo == null) {
+                return 0;
+            }
+            TableInfo updated = copyOf(tableInfo);
+            updated.setProperties(JSONObject.parseObject(properties.toJSONString()));
+            store.write(Collections.singletonList(put(TABLE_INFO, updated)));
+            return 1;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateByTableId(String tableId, String tableName, String tablePath, String tableSchema) {
+        if (StringUtils.isBlank(tableName) && StringUtils.isBlank(tablePath) && StringUtils.isBlank(tableSchema)) {
+            return 0;
+        }
+        store.lock.writeLock().lock();
+        try {
+            TableInfo tableInfo = store.tableInfoMap.get(tableId);
+            if (tableInfo == null) {
+                return 0;
+            }
+            TableInfo updated = copyOf(tableInfo);
+            if (StringUtils.isNotBlank(tableName)) {
+                updated.setTableName(tableName);
+            }
+            if (StringUtils.isNotBlank(tablePath)) {
+                updated.setTablePath(tablePath);
+            }
+            if (StringUtils.isNotBlank(tableSchema)) {
+                updated.setTableSchema(tableSchema);
+            }
+            store.write(Collections.singletonList(put(TABLE_INFO, updated)));
+            return 1;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.embedded;
+
+import com.dmetasoul.lakesoul.meta.dao.TableNameIdDao;
+import com.dmetasoul.lakesoul.meta.entity.TableNameId;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore.*;
+
+class EmbeddedTableNameIdDao extends TableNameIdDao {
+    private final EmbeddedMetaStore store;
+
+    EmbeddedTableNameIdDao(EmbeddedMetaStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public TableNameId findByTableName(String tableName) {
+        store.lock.readLock().lock();
+        try {
+            TableNameId tableNameId = store.tableNameIdMap.get(tableName);
+            return tableNameId == null ? new TableNameId()
+                    : new TableNameId(tableNameId.getTableName(), tableNameId.getTableId());
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(TableNameId tableNameId) {
+        store.lock.writeLock().lock();
+        try {
+            if (tableNameId.getTableName() == null || store.tableNameIdMap.containsKey(tableNameId.getTableName())) {
+                return false;
+            }
+            store.write(Collections.singletonList(put(TABLE_NAME_ID,
+                    new TableNameId(tableNameId.getTableName(), tableNameId.getTableId()))));
+            return true;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(String tableName) {
+        store.lock.writeLock().lock();
+        try {
+            TableNameId tableNameId = store.tableNameIdMap.get(tableName);
+            if (tableNameId != null) {
+                store.write(Collections.singletonList(remove(TABLE_NAME_ID, tableNameId)));
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTableId(String tableId) {
+        store.lock.writeLock().lock();
+        try {
+            List<Change> changes = new ArrayList<>();
+            for (TableNameId tableNameId : store.tableNameIdMap.values()) {
+                if (tableId.equals(tableNameId.getTableId())) {
+                    changes.add(remove(TABLE_NAME_ID, tableNameId));
+                }
+            }
+            store.write(changes);
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateTableId(String tableName, String table_id) {
+        if (StringUtils.isBlank(table_id)) {
+            return 0;
+        }
+        store.lock.writeLock().lock();
+        try {
+            if (!store.tableNameIdMap.containsKey(tableName)) {
+                return 0;
+            }
+            store.write(Collections.singletonList(put(TABLE_NAME_ID, new TableNameId(tableName, table_id))));
+            return 1;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.embedded;
+
+import com.dmetasoul.lakesoul.meta.dao.TablePathIdDao;
+import com.dmetasoul.lakesoul.meta.entity.TablePathId;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore.*;
+
+class EmbeddedTablePathIdDao extends TablePathIdDao {
+    private final EmbeddedMetaStore store;
+
+    EmbeddedTablePathIdDao(EmbeddedMetaStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public TablePathId findByTablePath(String tablePath) {
+        store.lock.readLock().lock();
+        try {
+            TablePathId tablePathId = store.tablePathIdMap.get(tablePath);
+            return tablePathId == null ? new TablePathId()
+                    : new TablePathId(tablePathId.getTablePath(), tablePathId.getTableId());
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<TablePathId> listAll() {
+        store.lock.readLock().lock();
+        try {
+            List<TablePathId> list = new ArrayList<>(store.tablePathIdMap.size());
+            for (TablePathId tablePathId : store.tablePathIdMap.values()) {
+                list.add(new TablePathId(tablePathId.getTablePath(), tablePathId.getTableId()));
+            }
+            return list;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> listAllPath() {
+        store.lock.readLock().lock();
+        try {
+            return new ArrayList<>(store.tablePathIdMap.keySet());
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(TablePathId tablePathId) {
+        store.lock.writeLock().lock();
+        try {
+            if (tablePathId.getTablePath() == null || store.tablePathIdMap.containsKey(tablePathId.getTablePath())) {
+                return false;
+            }
+            store.write(Collections.singletonList(put(TABLE_PATH_ID,
+                    new TablePathId(tablePathId.getTablePath(), tablePathId.getTableId()))));
+            return true;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(String tablePath) {
+        store.lock.writeLock().lock();
+        try {
+            TablePathId tablePathId = store.tablePathIdMap.get(tablePath);
+            if (tablePathId != null) {
+                store.write(Collections.singletonList(remove(TABLE_PATH_ID, tablePathId)));
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTableId(String tableId) {
+        store.lock.writeLock().lock();
+        try {
+            List<Change> changes = new ArrayList<>();
+            for (TablePathId tablePathId : store.tablePathIdMap.values()) {
+                if (tableId.equals(tablePathId.getTableId())) {
+                    changes.add(remove(TABLE_PATH_ID, tablePathId));
+                }
+            }
+            store.write(changes);
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateTableId(String tablePath, String table_id) {
+        if (StringUtils.isBlank(table_id)) {
+            return 0;
+        }
+        store.lock.writeLock().lock();
+        try {
+            if (!store.tablePathIdMap.containsKey(tablePath)) {
+                return 0;
+            }
+            store.write(Collections.singletonList(put(TABLE_PATH_ID, new TablePathId(tablePath, table_id))));
+            return 1;
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+}
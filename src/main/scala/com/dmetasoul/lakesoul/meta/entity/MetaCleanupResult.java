@@ -0,0 +1,70 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.dmetasoul.lakesoul.meta.entity;
+
+public class MetaCleanupResult {
+    private long partitionInfoRows;
+
+    private long partitionInfoBytes;
+
+    private long dataCommitInfoRows;
+
+    private long dataCommitInfoBytes;
+
+    public long getPartitionInfoRows() {
+        return partitionInfoRows;
+    }
+
+    public void setPartitionInfoRows(long partitionInfoRows) {
+        this.partitionInfoRows = partitionInfoRows;
+    }
+
+    public long getPartitionInfoBytes() {
+        return partitionInfoBytes;
+    }
+
+    public void setPartitionInfoBytes(long partitionInfoBytes) {
+        this.partitionInfoBytes = partitionInfoBytes;
+    }
+
+    public long getDataCommitInfoRows() {
+        return dataCommitInfoRows;
+    }
+
+    public void setDataCommitInfoRows(long dataCommitInfoRows) {
+        this.dataCommitInfoRows = dataCommitInfoRows;
+    }
+
+    public long getDataCommitInfoBytes() {
+        return dataCommitInfoBytes;
+    }
+
+    public void setDataCommitInfoBytes(long dataCommitInfoBytes) {
+        this.dataCommitInfoBytes = dataCommitInfoBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "MetaCleanupResult{" +
+                "partitionInfoRows=" + partitionInfoRows +
+                ", partitionInfoBytes=" + partitionInfoBytes +
+                ", dataCommitInfoRows=" + dataCommitInfoRows +
+                ", dataCommitInfoBytes=" + dataCommitInfoBytes +
+                '}';
+    }
+}
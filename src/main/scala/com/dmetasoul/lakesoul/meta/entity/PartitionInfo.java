@@ -33,6 +33,14 @@ public class PartitionInfo {
 
     private String expression;
 
+    // version of the last full snapshot this row's snapshot is chained to
+    private int checkpointVersion = -1;
+
+    // version and expanded snapshot size as read from the meta database, used to write delta snapshots
+    private int baseVersion = -1;
+
+    private int baseSnapshotSize;
+
     public String getTableId() {
         return tableId;
     }
@@ -80,4 +88,28 @@ public class PartitionInfo {
     public void setExpression(String expression) {
         this.expression = expression;
     }
+
+    public int getCheckpointVersion() {
+        return checkpointVersion;
+    }
+
+    public void setCheckpointVersion(int checkpointVersion) {
+        this.checkpointVersion = checkpointVersion;
+    }
+
+    public int getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(int baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public int getBaseSnapshotSize() {
+        return baseSnapshotSize;
+    }
+
+    public void setBaseSnapshotSize(int baseSnapshotSize) {
+        this.baseSnapshotSize = baseSnapshotSize;
+    }
 }
\ No newline at end of file
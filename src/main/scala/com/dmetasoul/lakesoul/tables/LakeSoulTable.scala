@@ -17,6 +17,7 @@
 package com.dmetasoul.lakesoul.tables
 
 import com.dmetasoul.lakesoul.meta.MetaVersion
+import com.dmetasoul.lakesoul.meta.entity.MetaCleanupResult
 import com.dmetasoul.lakesoul.tables.execution.LakeSoulTableOperations
 import org.apache.hadoop.fs.Path
 import org.apache.spark.internal.Logging
@@ -346,6 +347,19 @@ class LakeSoulTable(df: => Dataset[Row], snapshotManagement: SnapshotManagement)
   }
 
 
+  /**
+    * Remove old partition versions from the meta store, keeping the latest `retainVersions` versions of
+    * each partition, and remove data commit info no longer referenced by any version once it is older
+    * than `retentionMillis`. Versions removed can no longer be read or rolled back to.
+    */
+  def cleanupMetaVersions(retainVersions: Int = 10,
+                          retentionMillis: Long = 7 * 24 * 60 * 60 * 1000L): MetaCleanupResult = {
+    val result = MetaVersion.cleanupMetaVersions(snapshotManagement.getTableInfoOnly.table_id,
+      retainVersions, retentionMillis)
+    snapshotManagement.updateSnapshot()
+    result
+  }
+
   def partitionVersions(partitionDesc:String=""): Unit ={
     if("".equals(partitionDesc)){
       println("Please set partition value such as RangeCoulmnName = Value")
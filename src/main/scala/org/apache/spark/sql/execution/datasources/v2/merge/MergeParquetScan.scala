@@ -187,7 +187,8 @@ abstract class MergeDeltaParquetScan(sparkSession: SparkSession,
       .newInstance()
       .asInstanceOf[MergeOperator[Any]]
     MergeParquetPartitionReaderFactory(sparkSession.sessionState.conf, broadcastedConf,
-      dataSchema, readDataSchema, readPartitionSchema, newFilters, mergeOperatorInfo, defaultMergeOp)
+      dataSchema, readDataSchema, readPartitionSchema, newFilters, mergeOperatorInfo, defaultMergeOp,
+      filePartitions.forall(_.isSingleFile))
   }
 
   protected def seqToString(seq: Seq[Any]): String = seq.mkString("[", ", ", "]")
@@ -205,9 +206,12 @@ abstract class MergeDeltaParquetScan(sparkSession: SparkSession,
   }
 
   override def planInputPartitions(): Array[InputPartition] = {
-    partitions.toArray
+    filePartitions.toArray
   }
 
+  //planned once, the reader factory decides on columnar reads for all partitions of the scan
+  private lazy val filePartitions: Seq[MergeFilePartition] = partitions
+
   protected def partitions: Seq[MergeFilePartition] = {
     val selectedPartitions = newFileIndex.listFiles(partitionFilters, dataFilters)
     val partitionAttributes = newFileIndex.partitionSchema.toAttributes
@@ -18,7 +18,7 @@ package org.apache.spark.sql.execution.datasources.v2.merge.parquet
 
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.connector.read.{InputPartition, PartitionReader, PartitionReaderFactory}
-import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.MergeParquetSingletonFilePartitionByBatchFile
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.{MergeColumnarBatchWriter, MergeParquetSingletonFileColumnarReader, MergeParquetSingletonFilePartitionByBatchFile}
 import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.merge_operator.{MergeOperator, MergeParquetFileWithOperatorPartitionByBatchFile}
 import org.apache.spark.sql.execution.datasources.v2.merge.{MergeFilePartition, MergeFilePartitionReader, MergePartitionedFile, MergePartitionedFileReader}
 import org.apache.spark.sql.vectorized.ColumnarBatch
@@ -30,10 +30,7 @@ abstract class MergeFilePartitionReaderFactory(mergeOperatorInfo: Map[String, Me
     assert(partition.isInstanceOf[MergeFilePartition])
     val filePartition = partition.asInstanceOf[MergeFilePartition]
 
-    val iter = filePartition.files.toIterator.map { files =>
-      assert(files.forall(_.isInstanceOf[MergePartitionedFile]))
-      files.map(f => f -> buildColumnarReader(f)).toSeq
-    }.toSeq
+    val iter = buildFileReaders(filePartition)
 
     val mergeReader =
       if (filePartition.isSingleFile) {
@@ -49,10 +46,31 @@ abstract class MergeFilePartitionReaderFactory(mergeOperatorInfo: Map[String, Me
   }
 
   override def createColumnarReader(partition: InputPartition): PartitionReader[ColumnarBatch] = {
+    assert(partition.isInstanceOf[MergeFilePartition])
+    val filePartition = partition.asInstanceOf[MergeFilePartition]
+    //multi-file partitions are merged row by row, batches would only copy the merged rows
+    assert(filePartition.isSingleFile, "columnar merge reads only support single file partitions")
+
+    val mergeReader =
+      new MergeParquetSingletonFileColumnarReader(buildFileReaders(filePartition), createMergeBatchWriter())
 
-    throw new Exception("this function is not supported")
+    new MergeFilePartitionReader[ColumnarBatch](
+      Iterator(MergePartitionedFileReader(mergeReader))
+    )
   }
 
+  //file readers are built lazily, one range partition after another
+  private def buildFileReaders(filePartition: MergeFilePartition)
+  : Seq[Seq[(MergePartitionedFile, PartitionReader[ColumnarBatch])]] = {
+    filePartition.files.toIterator.map { files =>
+      assert(files.forall(_.isInstanceOf[MergePartitionedFile]))
+      files.map(f => f -> buildColumnarReader(f)).toSeq
+    }.toSeq
+  }
+
+  /** Writer of the merged batches of columnar reads. */
+  def createMergeBatchWriter(): MergeColumnarBatchWriter
+
   def buildReader(partitionedFile: MergePartitionedFile): PartitionReader[InternalRow]
 
   def buildColumnarReader(partitionedFile: MergePartitionedFile): PartitionReader[ColumnarBatch] = {
@@ -340,6 +340,24 @@ public class MergeHeap<E> extends AbstractQueue<E>
         return (size == 0) ? null : (E) queue[0];
     }
 
+    /**
+     * Retrieves, but does not remove, the element that would be the head
+     * of this queue once the current head is removed, or returns
+     * {@code null} if this queue has less than two elements.
+     */
+    @SuppressWarnings("unchecked")
+    public E peekSecond() {
+        if (size < 2)
+            return null;
+        if (size == 2)
+            return (E) queue[1];
+        E left = (E) queue[1];
+        E right = (E) queue[2];
+        int c = (comparator != null) ? comparator.compare(left, right)
+                : ((Comparable<? super E>) left).compareTo(right);
+        return (c <= 0) ? left : right;
+    }
+
     public boolean putBack(E e) {
         if (e == null)
             throw new NullPointerException();
@@ -33,10 +33,12 @@ import org.apache.spark.sql.catalyst.util.DateTimeUtils
 import org.apache.spark.sql.connector.read.{InputPartition, PartitionReader}
 import org.apache.spark.sql.execution.datasources.parquet._
 import org.apache.spark.sql.execution.datasources.v2.merge.MergePartitionedFile
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.MergeColumnarBatchWriter
 import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.merge_operator.MergeOperator
 import org.apache.spark.sql.execution.datasources.{DataSourceUtils, RecordReaderIterator}
 import org.apache.spark.sql.internal.SQLConf
 import org.apache.spark.sql.internal.SQLConf.LegacyBehaviorPolicy
+import org.apache.spark.sql.lakesoul.sources.LakeSoulSQLConf
 import org.apache.spark.sql.sources.Filter
 import org.apache.spark.sql.types.{AtomicType, StructType}
 import org.apache.spark.sql.vectorized.ColumnarBatch
@@ -53,6 +55,7 @@ import scala.collection.mutable
   * @param dataSchema      Schema of Parquet files.
   * @param readDataSchema  Required schema of Parquet files.
   * @param partitionSchema Schema of partitions.
+  * @param singleFileScan  Whether every partition of the scan reads a single file, only such scans are columnar.
   *                        //  * @param filterMap Filters to be pushed down in the batch scan.
   */
 case class MergeParquetPartitionReaderFactory(sqlConf: SQLConf,
@@ -62,7 +65,8 @@ case class MergeParquetPartitionReaderFactory(sqlConf: SQLConf,
                                               partitionSchema: StructType,
                                               filters: Array[Filter],
                                               mergeOperatorInfo: Map[String, MergeOperator[Any]],
-                                              defaultMergeOp: MergeOperator[Any])
+                                              defaultMergeOp: MergeOperator[Any],
+                                              singleFileScan: Boolean)
   extends MergeFilePartitionReaderFactory(mergeOperatorInfo, defaultMergeOp) with Logging {
 
   private val isCaseSensitive = sqlConf.caseSensitiveAnalysis
@@ -79,6 +83,7 @@ case class MergeParquetPartitionReaderFactory(sqlConf: SQLConf,
   private val pushDownDecimal = sqlConf.parquetFilterPushDownDecimal
   private val pushDownStringStartWith = sqlConf.parquetFilterPushDownStringStartWith
   private val pushDownInFilterThreshold = sqlConf.parquetFilterPushDownInFilterThreshold
+  private val enableColumnarMerge = sqlConf.getConf(LakeSoulSQLConf.MERGE_COLUMNAR_READ_ENABLE)
 
   // schemea: path->schema    source: path->file|path->file|path->file
   private val requestSchemaMap: mutable.Map[String, String] = broadcastedConf.value.value
@@ -87,11 +92,20 @@ case class MergeParquetPartitionReaderFactory(sqlConf: SQLConf,
     .fold(mutable.Map[String, String]())(_ ++ _)
 
   override def supportColumnarReads(partition: InputPartition): Boolean = {
-    //don't support columnar reads, but retain this assert
+    //merged batches are only built for atomic types, retain this assert
     assert(sqlConf.parquetVectorizedReaderEnabled && sqlConf.wholeStageEnabled &&
       resultSchema.length <= sqlConf.wholeStageMaxNumFields &&
       resultSchema.forall(_.dataType.isInstanceOf[AtomicType]))
-    false
+    //spark doesn't allow row and columnar partitions in one scan, so any multi-file partition disables it
+    enableColumnarMerge && singleFileScan
+  }
+
+  //merged batches are in the order of the scan output, data columns before partition columns
+  override def createMergeBatchWriter(): MergeColumnarBatchWriter = {
+    new MergeColumnarBatchWriter(
+      StructType(readDataSchema.fields ++ partitionSchema.fields),
+      capacity,
+      enableOffHeapColumnVector && Option(TaskContext.get()).isDefined)
   }
 
 
@@ -0,0 +1,220 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.execution.vectorized.{OffHeapColumnVector, OnHeapColumnVector, WritableColumnVector}
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.{ColumnVector, ColumnarBatch}
+
+/**
+  * Assembles merged rows into reused column vectors of the result schema, so that merge scans return
+  * columnar batches. Values are copied column by column, either from selected rows of an input batch or
+  * from merged rows, and the last appended row can be dropped until the batch is returned.
+  *
+  * @param schema   result schema, in the order of the scan output
+  * @param capacity maximum number of rows of a batch
+  */
+class MergeColumnarBatchWriter(schema: StructType, val capacity: Int, offHeap: Boolean) extends AutoCloseable {
+
+  import MergeColumnarBatchWriter._
+
+  private val vectors: Array[WritableColumnVector] =
+    if (offHeap) {
+      OffHeapColumnVector.allocateColumns(capacity, schema).map(v => v: WritableColumnVector)
+    } else {
+      OnHeapColumnVector.allocateColumns(capacity, schema).map(v => v: WritableColumnVector)
+    }
+
+  private val copiers: Array[ColumnCopier] = schema.fields.map(field => ColumnCopier(field.dataType))
+
+  private val columnarBatch = new ColumnarBatch(vectors.toArray[ColumnVector])
+
+  private var rows = 0
+
+  def numRows: Int = rows
+
+  def isFull: Boolean = rows >= capacity
+
+  def reset(): Unit = {
+    vectors.foreach(_.reset())
+    rows = 0
+  }
+
+  /**
+    * Appends the rows `rowIds(0 until count)` of an input batch.
+    *
+    * @param columnIndex input column of every result column, -1 if the input doesn't have the column
+    */
+  def append(input: ColumnarBatch, columnIndex: Array[Int], rowIds: Array[Int], count: Int): Unit = {
+    var c = 0
+    while (c < vectors.length) {
+      val vector = vectors(c)
+      if (columnIndex(c) == -1) {
+        vector.putNulls(rows, count)
+      } else {
+        val column = input.column(columnIndex(c))
+        val copier = copiers(c)
+        var i = 0
+        while (i < count) {
+          if (column.isNullAt(rowIds(i))) {
+            vector.putNull(rows + i)
+          } else {
+            vector.putNotNull(rows + i)
+            copier.copy(column, rowIds(i), vector, rows + i)
+          }
+          i += 1
+        }
+      }
+      c += 1
+    }
+    rows += count
+  }
+
+  /** Appends a merged row, whose fields are in the order of the result schema. */
+  def append(row: InternalRow): Unit = {
+    var c = 0
+    while (c < vectors.length) {
+      if (row.isNullAt(c)) {
+        vectors(c).putNull(rows)
+      } else {
+        vectors(c).putNotNull(rows)
+        copiers(c).copy(row, c, vectors(c), rows)
+      }
+      c += 1
+    }
+    rows += 1
+  }
+
+  /** Drops the last appended row, its position is written again by the next append. */
+  def removeLast(): Unit = rows -= 1
+
+  def batch(): ColumnarBatch = {
+    columnarBatch.setNumRows(rows)
+    columnarBatch
+  }
+
+  override def close(): Unit = columnarBatch.close()
+
+}
+
+object MergeColumnarBatchWriter {
+
+  /** Copies a non-null value of one column, the type is resolved once per scan. */
+  private abstract class ColumnCopier {
+    def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit
+
+    def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit
+  }
+
+  private object ColumnCopier {
+    def apply(dataType: DataType): ColumnCopier = dataType match {
+      case StringType => StringCopier
+      case IntegerType | DateType => IntCopier
+      case BooleanType => BooleanCopier
+      case ByteType => ByteCopier
+      case ShortType => ShortCopier
+      case LongType | TimestampType => LongCopier
+      case FloatType => FloatCopier
+      case DoubleType => DoubleCopier
+      case BinaryType => BinaryCopier
+      case t: DecimalType => new DecimalCopier(t.precision, t.scale)
+      case o => throw new UnsupportedOperationException(s"LakeSoul columnar merge don't support type ${o.typeName}")
+    }
+  }
+
+  private object StringCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putByteArray(pos, column.getUTF8String(rowId).getBytes)
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putByteArray(pos, row.getUTF8String(ordinal).getBytes)
+  }
+
+  private object IntCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putInt(pos, column.getInt(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putInt(pos, row.getInt(ordinal))
+  }
+
+  private object BooleanCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putBoolean(pos, column.getBoolean(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putBoolean(pos, row.getBoolean(ordinal))
+  }
+
+  private object ByteCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putByte(pos, column.getByte(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putByte(pos, row.getByte(ordinal))
+  }
+
+  private object ShortCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putShort(pos, column.getShort(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putShort(pos, row.getShort(ordinal))
+  }
+
+  private object LongCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putLong(pos, column.getLong(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putLong(pos, row.getLong(ordinal))
+  }
+
+  private object FloatCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putFloat(pos, column.getFloat(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putFloat(pos, row.getFloat(ordinal))
+  }
+
+  private object DoubleCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putDouble(pos, column.getDouble(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putDouble(pos, row.getDouble(ordinal))
+  }
+
+  private object BinaryCopier extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putByteArray(pos, column.getBinary(rowId))
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putByteArray(pos, row.getBinary(ordinal))
+  }
+
+  private class DecimalCopier(precision: Int, scale: Int) extends ColumnCopier {
+    override def copy(column: ColumnVector, rowId: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putDecimal(pos, column.getDecimal(rowId, precision, scale), precision)
+
+    override def copy(row: InternalRow, ordinal: Int, vector: WritableColumnVector, pos: Int): Unit =
+      vector.putDecimal(pos, row.getDecimal(ordinal, precision, scale), precision)
+  }
+
+}
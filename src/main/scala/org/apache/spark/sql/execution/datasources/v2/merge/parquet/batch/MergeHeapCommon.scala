@@ -21,7 +21,8 @@ import java.util.Comparator
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
 import org.apache.spark.sql.execution.datasources.v2.merge.parquet.MergeHeap
-import org.apache.spark.sql.types._
+import org.apache.spark.sql.internal.SQLConf
+import org.apache.spark.sql.lakesoul.sources.LakeSoulSQLConf
 
 import scala.collection.{BufferedIterator, mutable}
 
@@ -37,38 +38,15 @@ trait MergeHeapCommon {
 
   def poll(): Unit
 
+  /** The file that is merged after the one returned by the last dequeue, null if there is none. */
+  def runnerUp(): (Long, BufferedIterator[(InternalRow, Int)])
+
   def isEmpty: Boolean
 
   def nonEmpty: Boolean
 
-  val comparatorT = new Comparator[heapType] {
-    override def compare(x: (Long, BufferedIterator[(InternalRow, Int)]),
-                         y: (Long, BufferedIterator[(InternalRow, Int)])): Int = {
-      for (i <- versionKeyInfoMap(x._1).indices) {
-        val inputX = x._2.head._1
-        val inputY = y._2.head._1
-        val ordinalX = versionKeyInfoMap(x._1)(i).index
-        val ordinalY = versionKeyInfoMap(y._1)(i).index
-        val comparV =
-          versionKeyInfoMap(x._1)(i).keyType match {
-            case StringType => inputX.getUTF8String(ordinalX).compareTo(inputY.getUTF8String(ordinalY))
-            case IntegerType | DateType => inputX.getInt(ordinalX) compareTo (inputY getInt ordinalY)
-            case BooleanType => inputX.getBoolean(ordinalX) compareTo inputY.getBoolean(ordinalY)
-            case ByteType => inputX.getByte(ordinalX).compareTo(inputY.getByte(ordinalY))
-            case ShortType => inputX.getShort(ordinalX).compareTo(inputY.getShort(ordinalY))
-            case LongType | TimestampType => inputX.getLong(ordinalX).compareTo(inputY.getLong(ordinalY))
-            case FloatType => inputX.getFloat(ordinalX).compareTo(inputY.getFloat(ordinalY))
-            case DoubleType => inputX.getDouble(ordinalX).compareTo(inputY.getDouble(ordinalY))
-            case t: DecimalType => inputX.getDecimal(ordinalX, t.precision, t.scale).compareTo(inputY.getDecimal(ordinalY, t.precision, t.scale))
-            case _ => throw new RuntimeException("Unsupported data type for merge,type is " + versionKeyInfoMap(x._1)(i).keyType.getClass.getTypeName)
-          }
-        if (comparV != 0) {
-          return comparV
-        }
-      }
-      x._1.compareTo(y._1)
-    }
-  }
+  // lazy, versionKeyInfoMap is only set by the implementing class
+  lazy val comparatorT: Comparator[heapType] = new MergeKeyComparator(versionKeyInfoMap)
 
 }
 
@@ -93,6 +71,8 @@ class MergeOptimizeHeap(versionKey: Map[Long, Array[KeyIndex]]) extends MergeHea
 
   def poll(): Unit = mergeFileHeap.poll()
 
+  def runnerUp(): (Long, BufferedIterator[(InternalRow, Int)]) = mergeFileHeap.peekSecond()
+
   def isEmpty: Boolean = mergeFileHeap.isEmpty
 
   def nonEmpty: Boolean = !isEmpty
@@ -117,9 +97,128 @@ class MergePriorityQ(versionKey: Map[Long, Array[KeyIndex]]) extends MergeHeapCo
 
   override def poll(): Unit = {}
 
+  //dequeue has already removed the current file
+  override def runnerUp(): (Long, BufferedIterator[(InternalRow, Int)]) = {
+    if (mergeFileHeap.isEmpty) null else mergeFileHeap.head
+  }
+
   override def isEmpty: Boolean = mergeFileHeap.isEmpty
 
   override def nonEmpty: Boolean = !isEmpty
 
 
 }
+
+/**
+  * Loser (tournament) tree over the files of a merge. Every internal node keeps the loser of the match below it and
+  * the root keeps the winner, so replacing or removing the winner replays a single leaf to root path,
+  * about log2(k) comparisons for k files, where a binary heap needs up to two per level.
+  * Like [[MergeOptimizeHeap]], dequeue returns the winner without removing it, enqueue puts the dequeued file back
+  * after it advanced and poll removes it.
+  */
+class MergeLoserTree(versionKey: Map[Long, Array[KeyIndex]]) extends MergeHeapCommon {
+
+  override val versionKeyInfoMap = versionKey
+
+  //current file of every leaf, null once the leaf is exhausted
+  private var leaves = new Array[heapType](0)
+  //tree(0) is the leaf of the winner, tree(1 until k) the leaves losing at the internal nodes
+  private var tree = new Array[Int](0)
+
+  override def enqueueBySeq(fileInfoSeq: Seq[(Long, BufferedIterator[(InternalRow, Int)])]): Unit = {
+    leaves = leaves.filter(_ != null) ++ fileInfoSeq
+    tree = new Array[Int](math.max(leaves.length, 1))
+    if (leaves.nonEmpty) {
+      tree(0) = build(1)
+    }
+  }
+
+  override def enqueue(fileInfo: (Long, BufferedIterator[(InternalRow, Int)])): Unit = {
+    leaves(tree(0)) = fileInfo
+    replay(tree(0))
+  }
+
+  override def dequeue(): (Long, BufferedIterator[(InternalRow, Int)]) = {
+    if (leaves.isEmpty) null else leaves(tree(0))
+  }
+
+  override def poll(): Unit = {
+    if (leaves.nonEmpty) {
+      leaves(tree(0)) = null
+      replay(tree(0))
+    }
+  }
+
+  //the runner-up lost only against the winner, so it is one of the losers on the path of the winner
+  override def runnerUp(): (Long, BufferedIterator[(InternalRow, Int)]) = {
+    var best = -1
+    var node = if (leaves.isEmpty) 0 else (tree(0) + leaves.length) >> 1
+    while (node > 0) {
+      if (leaves(tree(node)) != null && (best == -1 || wins(tree(node), best))) {
+        best = tree(node)
+      }
+      node >>= 1
+    }
+    if (best == -1) null else leaves(best)
+  }
+
+  override def isEmpty: Boolean = leaves.isEmpty || leaves(tree(0)) == null
+
+  override def nonEmpty: Boolean = !isEmpty
+
+  //node i has the children 2i and 2i + 1, leaf j is the node k + j
+  private def build(node: Int): Int = {
+    if (node >= leaves.length) {
+      node - leaves.length
+    } else {
+      val left = build(2 * node)
+      val right = build(2 * node + 1)
+      if (wins(left, right)) {
+        tree(node) = right
+        left
+      } else {
+        tree(node) = left
+        right
+      }
+    }
+  }
+
+  private def replay(leaf: Int): Unit = {
+    var winner = leaf
+    var node = (leaf + leaves.length) >> 1
+    while (node > 0) {
+      if (wins(tree(node), winner)) {
+        val loser = winner
+        winner = tree(node)
+        tree(node) = loser
+      }
+      node >>= 1
+    }
+    tree(0) = winner
+  }
+
+  //exhausted leaves lose against every file
+  private def wins(x: Int, y: Int): Boolean = {
+    if (leaves(x) == null) {
+      false
+    } else if (leaves(y) == null) {
+      true
+    } else {
+      comparatorT.compare(leaves(x), leaves(y)) < 0
+    }
+  }
+
+}
+
+object MergeHeapCommon {
+
+  /** Merge structure chosen by [[LakeSoulSQLConf.MERGE_HEAP_TYPE]]. */
+  def apply(versionKeyInfoMap: Map[Long, Array[KeyIndex]]): MergeHeapCommon = {
+    SQLConf.get.getConf(LakeSoulSQLConf.MERGE_HEAP_TYPE) match {
+      case "loserTree" => new MergeLoserTree(versionKeyInfoMap)
+      case "priorityQueue" => new MergePriorityQ(versionKeyInfoMap)
+      case _ => new MergeOptimizeHeap(versionKeyInfoMap)
+    }
+  }
+
+}
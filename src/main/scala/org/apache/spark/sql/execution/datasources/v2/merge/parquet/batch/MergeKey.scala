@@ -0,0 +1,79 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.expressions.SpecificInternalRow
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.types._
+
+/**
+  * Primary key of the row merged last. Rows are compared with it column by column in place,
+  * with the same per type comparison as the merge heap.
+  * The key values are copied into a reused row once per key, because the column vectors they were read from
+  * are reused by the next batch. Only string and decimal keys allocate on copy.
+  *
+  * @param keyTypes types of the primary key columns, in key order
+  */
+class MergeKey(keyTypes: Seq[DataType]) {
+
+  private val key = new SpecificInternalRow(keyTypes)
+
+  private val columns = keyTypes.map(KeyColumnComparator(_)).toArray
+
+  private var empty = true
+
+  def isEmpty: Boolean = empty
+
+  def clear(): Unit = {
+    empty = true
+  }
+
+  def set(row: InternalRow, keyInfo: Array[KeyIndex]): Unit = {
+    var i = 0
+    while (i < keyInfo.length) {
+      val ordinal = keyInfo(i).index
+      keyInfo(i).keyType match {
+        case StringType => key.update(i, row.getUTF8String(ordinal).clone())
+        case IntegerType | DateType => key.setInt(i, row.getInt(ordinal))
+        case BooleanType => key.setBoolean(i, row.getBoolean(ordinal))
+        case ByteType => key.setByte(i, row.getByte(ordinal))
+        case ShortType => key.setShort(i, row.getShort(ordinal))
+        case LongType | TimestampType => key.setLong(i, row.getLong(ordinal))
+        case FloatType => key.setFloat(i, row.getFloat(ordinal))
+        case DoubleType => key.setDouble(i, row.getDouble(ordinal))
+        case t: DecimalType => key.update(i, row.getDecimal(ordinal, t.precision, t.scale).clone())
+        case t => throw new RuntimeException("Unsupported data type for merge,type is " + t.getClass.getTypeName)
+      }
+      i += 1
+    }
+    empty = false
+  }
+
+  /** Whether the key columns of row are equal to this key. */
+  def matches(row: InternalRow, keyInfo: Array[KeyIndex]): Boolean = {
+    var i = 0
+    while (i < keyInfo.length) {
+      if (columns(i).compare(key, i, row, keyInfo(i).index) != 0) {
+        return false
+      }
+      i += 1
+    }
+    true
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import java.util.Comparator
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnVector
+
+import scala.collection.{BufferedIterator, mutable}
+
+/**
+  * Orders the files of a merge by the primary key of their current row, then by write version.
+  * It is built once per scan: the type of every key column is resolved to a specialized [[KeyColumnComparator]],
+  * and the key ordinals of every file are kept in a primitive keyed map, or shared when all files
+  * have the key columns at the same ordinals, which is the common case.
+  */
+class MergeKeyComparator(versionKeyInfoMap: Map[Long, Array[KeyIndex]])
+  extends Comparator[(Long, BufferedIterator[(InternalRow, Int)])] {
+
+  private val columns: Array[KeyColumnComparator] =
+    versionKeyInfoMap.values.headOption.toArray.flatMap(_.map(keyIndex => KeyColumnComparator(keyIndex.keyType)))
+
+  private val sharedOrdinals: Array[Int] = {
+    val ordinals = versionKeyInfoMap.values.map(_.map(_.index).toSeq).toSet
+    if (ordinals.size == 1) ordinals.head.toArray else null
+  }
+
+  private val versionOrdinals = mutable.LongMap(versionKeyInfoMap.mapValues(_.map(_.index)).toSeq: _*)
+
+  override def compare(x: (Long, BufferedIterator[(InternalRow, Int)]),
+                       y: (Long, BufferedIterator[(InternalRow, Int)])): Int = {
+    val inputX = x._2.head._1
+    val inputY = y._2.head._1
+    val ordinalsX = if (sharedOrdinals != null) sharedOrdinals else versionOrdinals(x._1)
+    val ordinalsY = if (sharedOrdinals != null) sharedOrdinals else versionOrdinals(y._1)
+    var i = 0
+    while (i < columns.length) {
+      val comparV = columns(i).compare(inputX, ordinalsX(i), inputY, ordinalsY(i))
+      if (comparV != 0) {
+        return comparV
+      }
+      i += 1
+    }
+    java.lang.Long.compare(x._1, y._1)
+  }
+
+}
+
+/** Compares one key column of two rows in place, without a type dispatch per call. */
+abstract class KeyColumnComparator {
+  def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int
+
+  def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int
+}
+
+object KeyColumnComparator {
+
+  def apply(keyType: DataType): KeyColumnComparator = keyType match {
+    case StringType => StringKeyComparator
+    case IntegerType | DateType => IntKeyComparator
+    case BooleanType => BooleanKeyComparator
+    case ByteType => ByteKeyComparator
+    case ShortType => ShortKeyComparator
+    case LongType | TimestampType => LongKeyComparator
+    case FloatType => FloatKeyComparator
+    case DoubleType => DoubleKeyComparator
+    case t: DecimalType => new DecimalKeyComparator(t.precision, t.scale)
+    case _ => throw new RuntimeException("Unsupported data type for merge,type is " + keyType.getClass.getTypeName)
+  }
+
+  private object StringKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      inputX.getUTF8String(ordinalX).compareTo(inputY.getUTF8String(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      columnX.getUTF8String(rowIdX).compareTo(columnY.getUTF8String(rowIdY))
+  }
+
+  private object IntKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      Integer.compare(inputX.getInt(ordinalX), inputY.getInt(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      Integer.compare(columnX.getInt(rowIdX), columnY.getInt(rowIdY))
+  }
+
+  private object BooleanKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      java.lang.Boolean.compare(inputX.getBoolean(ordinalX), inputY.getBoolean(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      java.lang.Boolean.compare(columnX.getBoolean(rowIdX), columnY.getBoolean(rowIdY))
+  }
+
+  private object ByteKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      java.lang.Byte.compare(inputX.getByte(ordinalX), inputY.getByte(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      java.lang.Byte.compare(columnX.getByte(rowIdX), columnY.getByte(rowIdY))
+  }
+
+  private object ShortKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      java.lang.Short.compare(inputX.getShort(ordinalX), inputY.getShort(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      java.lang.Short.compare(columnX.getShort(rowIdX), columnY.getShort(rowIdY))
+  }
+
+  private object LongKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      java.lang.Long.compare(inputX.getLong(ordinalX), inputY.getLong(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      java.lang.Long.compare(columnX.getLong(rowIdX), columnY.getLong(rowIdY))
+  }
+
+  private object FloatKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      java.lang.Float.compare(inputX.getFloat(ordinalX), inputY.getFloat(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      java.lang.Float.compare(columnX.getFloat(rowIdX), columnY.getFloat(rowIdY))
+  }
+
+  private object DoubleKeyComparator extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      java.lang.Double.compare(inputX.getDouble(ordinalX), inputY.getDouble(ordinalY))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      java.lang.Double.compare(columnX.getDouble(rowIdX), columnY.getDouble(rowIdY))
+  }
+
+  private class DecimalKeyComparator(precision: Int, scale: Int) extends KeyColumnComparator {
+    override def compare(inputX: InternalRow, ordinalX: Int, inputY: InternalRow, ordinalY: Int): Int =
+      inputX.getDecimal(ordinalX, precision, scale).compareTo(inputY.getDecimal(ordinalY, precision, scale))
+
+    override def compare(columnX: ColumnVector, rowIdX: Int, columnY: ColumnVector, rowIdY: Int): Int =
+      columnX.getDecimal(rowIdX, precision, scale).compareTo(columnY.getDecimal(rowIdY, precision, scale))
+  }
+
+}
@@ -16,7 +16,6 @@
 
 package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
 
-import org.apache.commons.lang3.StringUtils
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.catalyst.InternalRow.getAccessor
 import org.apache.spark.sql.catalyst.expressions.GenericInternalRow
@@ -87,20 +86,22 @@ class MergeSingletonFile(filesInfo: Seq[(MergePartitionedFile, PartitionReader[C
 
   var rowId: Int = -1
 
+  private val lastKey = new MergeKey(keyInfoArray.map(_.keyType))
+
   def deDuplication(): Boolean = {
     if (emptyBatch) {
       return false
     }
-    var lastKey: String = null
+    lastKey.clear()
     rowId = -1
     while (true) {
       if (bufferedIt.hasNext) {
         val currentRow = bufferedIt.head._1
-        if (StringUtils.isEmpty(lastKey)) {
-          lastKey = combineKey(currentRow)
+        if (lastKey.isEmpty) {
+          lastKey.set(currentRow, keyInfoArray)
           rowId = bufferedIt.head._2
         } else {
-          if (combineKey(currentRow).equals(lastKey)) {
+          if (lastKey.matches(currentRow, keyInfoArray)) {
             if (temporaryStoreLastRow) temporaryStoreLastRow = false
             rowId = bufferedIt.head._2
           } else {
@@ -132,13 +133,6 @@ class MergeSingletonFile(filesInfo: Seq[(MergePartitionedFile, PartitionReader[C
     false
   }
 
-  def combineKey(row: InternalRow): String = {
-    keyInfoArray.map(keyIndex => {
-      row.get(keyIndex.index, keyIndex.keyType).toString
-    })
-      .reduce(_.concat(_))
-  }
-
   def getRow(): InternalRow = {
     if (temporaryStoreLastRow) {
       val batchLastRow = new GenericInternalRow(temporaryRow.clone())
@@ -0,0 +1,148 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.connector.read.PartitionReader
+import org.apache.spark.sql.execution.datasources.v2.merge.{KeyIndex, MergePartitionedFile}
+import org.apache.spark.sql.vectorized.ColumnarBatch
+
+/**
+  * Columnar counterpart of [[MergeParquetSingletonFilePartitionByBatchFile]]. For every input batch it selects
+  * the last row of each key run by comparing neighbouring keys in the column vectors, and copies the selected
+  * rows column by column into the result batch.
+  * The last row of an input batch is written tentatively, and dropped again if the next batch starts with the same key.
+  *
+  * @param filesInfo Seq(Seq()) => rangePartitions(filesInOnePartition())
+  */
+class MergeParquetSingletonFileColumnarReader(filesInfo: Seq[Seq[(MergePartitionedFile, PartitionReader[ColumnarBatch])]],
+                                              writer: MergeColumnarBatchWriter)
+  extends PartitionReader[ColumnarBatch] with Logging {
+
+  private val filesItr = filesInfo.iterator
+  private var files: Seq[(MergePartitionedFile, PartitionReader[ColumnarBatch])] = Seq.empty
+
+  private var keyInfo: Array[KeyIndex] = _
+  private var keyColumns: Array[KeyColumnComparator] = _
+  //input column of every result column, -1 if the file doesn't have the column
+  private var columnIndex: Array[Int] = _
+  private var lastKey: MergeKey = _
+
+  private var input: ColumnarBatch = _
+  private var inputRow = 0
+  //whether the last written row may still be replaced by the first row of the next input batch
+  private var pending = false
+
+  private val selected = new Array[Int](writer.capacity)
+
+  override def next(): Boolean = {
+    writer.reset()
+    while (!writer.isFull || pending) {
+      if (input != null && inputRow < input.numRows()) {
+        select()
+      } else if (!nextInput()) {
+        return writer.numRows > 0
+      }
+    }
+    true
+  }
+
+  override def get(): ColumnarBatch = writer.batch()
+
+  override def close(): Unit = {
+    if (filesInfo.nonEmpty) {
+      filesInfo.foreach(f => f.foreach(_._2.close()))
+    }
+    writer.close()
+  }
+
+  //select the last row of every key run of the input batch, until the result batch is full
+  private def select(): Unit = {
+    val lastRow = input.numRows() - 1
+    val limit = writer.capacity - writer.numRows
+    var count = 0
+    while (inputRow < lastRow && count < limit) {
+      if (!sameKey(inputRow, inputRow + 1)) {
+        selected(count) = inputRow
+        count += 1
+      }
+      inputRow += 1
+    }
+    if (inputRow == lastRow && count < limit) {
+      selected(count) = lastRow
+      count += 1
+      lastKey.set(input.getRow(lastRow), keyInfo)
+      pending = true
+      inputRow += 1
+    }
+    writer.append(input, columnIndex, selected, count)
+  }
+
+  private def sameKey(rowId: Int, nextRowId: Int): Boolean = {
+    var i = 0
+    while (i < keyInfo.length) {
+      val column = input.column(keyInfo(i).index)
+      if (keyColumns(i).compare(column, rowId, column, nextRowId) != 0) {
+        return false
+      }
+      i += 1
+    }
+    true
+  }
+
+  private def nextInput(): Boolean = {
+    while (true) {
+      val fileSeq = MergeUtils.getNextBatch(files)
+      if (fileSeq.nonEmpty) {
+        input = fileSeq.head._2
+        inputRow = 0
+        if (input.numRows() > 0) {
+          if (pending) {
+            if (lastKey.matches(input.getRow(0), keyInfo)) {
+              writer.removeLast()
+            }
+            pending = false
+          }
+          return true
+        }
+      } else {
+        //key runs end with their range partition
+        pending = false
+        input = null
+        files.foreach(_._2.close())
+        files = Seq.empty
+        if (!filesItr.hasNext) {
+          return false
+        }
+        files = filesItr.next()
+        if (files.nonEmpty) {
+          initFile(files.head._1)
+        }
+      }
+    }
+    false
+  }
+
+  private def initFile(file: MergePartitionedFile): Unit = {
+    keyInfo = file.keyInfo.toArray
+    keyColumns = keyInfo.map(keyIndex => KeyColumnComparator(keyIndex.keyType))
+    val fileSchema = file.fileInfo.map(_.fieldName)
+    columnIndex = file.resultSchema.map(field => fileSchema.indexOf(field.fieldName)).toArray
+    lastKey = new MergeKey(keyInfo.map(_.keyType))
+  }
+
+}
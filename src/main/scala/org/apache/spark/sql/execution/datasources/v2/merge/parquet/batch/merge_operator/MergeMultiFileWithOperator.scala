@@ -16,17 +16,20 @@
 
 package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.merge_operator
 
-import org.apache.commons.lang3.StringUtils
 import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.catalyst.util.{ArrayData, MapData}
 import org.apache.spark.sql.connector.read.PartitionReader
 import org.apache.spark.sql.execution.datasources.v2.merge.{FieldInfo, KeyIndex, MergePartitionedFile}
-import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.{MergeLogic, MergeOperatorColumnarBatchRow, MergeOptimizeHeap, MergeUtils}
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.{KeyColumnComparator, MergeHeapCommon, MergeKey, MergeLogic, MergeOperatorColumnarBatchRow, MergeUtils}
+import org.apache.spark.sql.internal.SQLConf
+import org.apache.spark.sql.lakesoul.sources.LakeSoulSQLConf
 import org.apache.spark.sql.types._
 import org.apache.spark.sql.vectorized.ColumnarBatch
 import org.apache.spark.unsafe.types.{CalendarInterval, UTF8String}
 
-import scala.collection.mutable
+import java.util.concurrent.atomic.AtomicLong
+
+import scala.collection.{BufferedIterator, mutable}
 import scala.collection.mutable.ArrayBuffer
 
 /**
@@ -97,7 +100,7 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
 
   //get next batch
   val fileSeq: Seq[(MergePartitionedFile, ColumnarBatch)] = MergeUtils.getNextBatch(filesInfo)
-  val mergeHeap = new MergeOptimizeHeap(versionKeyInfoMap)
+  val mergeHeap: MergeHeapCommon = MergeHeapCommon(versionKeyInfoMap)
   mergeHeap.enqueueBySeq(MergeUtils.toBufferedIterator(fileSeq))
 
   /** initialize mergeColumnIndexMap and mergeColumnarBatch object */
@@ -111,6 +114,26 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
 
   var lastVersion: Long = -5
 
+  //all files share the primary key columns, only their ordinals differ
+  private val lastKey = new MergeKey(filesInfo.head._1.keyInfo.map(_.keyType))
+
+  private val keyColumns: Array[KeyColumnComparator] =
+    filesInfo.head._1.keyInfo.map(keyIndex => KeyColumnComparator(keyIndex.keyType)).toArray
+
+  //current batch of every file, its last row has the largest key of the batch
+  private val versionBatchMap: mutable.LongMap[ColumnarBatch] =
+    mutable.LongMap(fileSeq.map(t => t._1.writeVersion -> t._2): _*)
+
+  private val passThroughEnabled = SQLConf.get.getConf(LakeSoulSQLConf.MERGE_RUN_PASS_THROUGH_ENABLE)
+
+  //file whose rows before runEnd have smaller keys than the current rows of all other files
+  private var runFile: (Long, BufferedIterator[(InternalRow, Int)]) = _
+  private var runEnd = 0
+
+  //rows read through the merge heap, and rows of key runs passed through without heap operations
+  var rowsMerged = 0L
+  var rowsPassedThrough = 0L
+
   def getRowByProxyMergeBatch(): InternalRow = {
     mergeColumnarBatch.getRow(resultIndex)
   }
@@ -131,23 +154,32 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
   }
 
 
-  def isHeapEmpty: Boolean = mergeHeap.isEmpty
+  //a priority queue doesn't hold the file of a running key run
+  def isHeapEmpty: Boolean = runFile == null && mergeHeap.isEmpty
 
   def merge(): Unit = {
 
     MergeUtils.resetBatchIndexMerge(resultIndex)
-    var lastKey: String = null
+    lastKey.clear()
+    if (runFile != null) {
+      mergeRun()
+      return
+    }
     while (mergeHeap.nonEmpty) {
       val currentFile = mergeHeap.dequeue()
       val currentRowAndLineId = currentFile._2.head
       val currentVersion = currentFile._1
 
-      if (StringUtils.isEmpty(lastKey)) {
-        lastKey = combineKey(currentVersion, currentRowAndLineId._1)
+      if (lastKey.isEmpty) {
+        if (passThroughEnabled && startRun(currentFile)) {
+          mergeRun()
+          return
+        }
+        lastKey.set(currentRowAndLineId._1, versionKeyInfoMap(currentVersion))
       } else {
-        if (!combineKey(currentVersion, currentRowAndLineId._1).equals(lastKey)) {
+        if (!lastKey.matches(currentRowAndLineId._1, versionKeyInfoMap(currentVersion))) {
           mergeHeap.enqueue(currentFile)
-          lastKey = null
+          lastKey.clear()
           lastVersion = -5
           // End the merge
           return
@@ -155,6 +187,7 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
       }
 
       currentFile._2.next()
+      rowsMerged += 1
       if (currentFile._2.hasNext) {
         //calculate the field index in File And fill into the MergeBatch Object
         //if previous row has the BatchLastRow, store row data in temp row, else add index into resultIndex
@@ -181,6 +214,7 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
         val nextBatches = MergeUtils.getNextBatch(fileInfo)
 
         if (nextBatches.nonEmpty) {
+          versionBatchMap(currentVersion) = nextBatches.head._2
           val bufferIt = MergeUtils.toBufferedIterator(nextBatches)
           mergeHeap.enqueue(bufferIt.head)
         } else {
@@ -192,6 +226,85 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
 
   }
 
+  /**
+    * Starts a key run if the rows of the current batch of the file, up to its last key, are all below
+    * the current row of the runner-up file. The last key may continue in the next batch and is merged by the heap.
+    */
+  private def startRun(currentFile: (Long, BufferedIterator[(InternalRow, Int)])): Boolean = {
+    val version = currentFile._1
+    val columnarBatch = versionBatchMap(version)
+    val keyInfo = versionKeyInfoMap(version)
+    val firstRowId = currentFile._2.head._2
+    val lastRowId = columnarBatch.numRows() - 1
+    if (lastRowId <= firstRowId) {
+      return false
+    }
+
+    //a runner-up with an equal key has to be merged, so the run must be strictly below it
+    val runnerUp = mergeHeap.runnerUp()
+    if (runnerUp != null && compareKeys(columnarBatch.getRow(lastRowId), keyInfo,
+      runnerUp._2.head._1, versionKeyInfoMap(runnerUp._1)) >= 0) {
+      return false
+    }
+
+    var end = lastRowId
+    while (end > firstRowId && sameKey(columnarBatch, keyInfo, end - 1, lastRowId)) {
+      end -= 1
+    }
+    if (end <= firstRowId) {
+      return false
+    }
+    runFile = currentFile
+    runEnd = end
+    true
+  }
+
+  //merge the next key of the run, its duplicates can only be in the same file
+  private def mergeRun(): Unit = {
+    val version = runFile._1
+    val columnarBatch = versionBatchMap(version)
+    val keyInfo = versionKeyInfoMap(version)
+
+    val rowId = runFile._2.head._2
+    lastVersion = -5
+    do {
+      fillMergeBatchIndex(runFile._2.head, version)
+      lastVersion = version
+      runFile._2.next()
+      rowsPassedThrough += 1
+    } while (runFile._2.head._2 < runEnd && sameKey(columnarBatch, keyInfo, rowId, runFile._2.head._2))
+    lastVersion = -5
+
+    if (runFile._2.head._2 >= runEnd) {
+      mergeHeap.enqueue(runFile)
+      runFile = null
+    }
+  }
+
+  private def compareKeys(rowX: InternalRow, keyInfoX: Array[KeyIndex], rowY: InternalRow, keyInfoY: Array[KeyIndex]): Int = {
+    var i = 0
+    while (i < keyColumns.length) {
+      val comparV = keyColumns(i).compare(rowX, keyInfoX(i).index, rowY, keyInfoY(i).index)
+      if (comparV != 0) {
+        return comparV
+      }
+      i += 1
+    }
+    0
+  }
+
+  private def sameKey(columnarBatch: ColumnarBatch, keyInfo: Array[KeyIndex], rowIdX: Int, rowIdY: Int): Boolean = {
+    var i = 0
+    while (i < keyColumns.length) {
+      val column = columnarBatch.column(keyInfo(i).index)
+      if (keyColumns(i).compare(column, rowIdX, column, rowIdY) != 0) {
+        return false
+      }
+      i += 1
+    }
+    true
+  }
+
   def putIndexedRowToTemporaryRow(): Unit = {
     if (resultIndex.head.nonEmpty) {
       val row = mergeColumnarBatch.getMergeRow(resultIndex)
@@ -241,14 +354,6 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
     })
   }
 
-  def combineKey(version: Long, row: InternalRow): String = {
-    versionKeyInfoMap(version)
-      .map(key_type => {
-        row.get(key_type.index, key_type.keyType).toString
-      })
-      .reduce(_.concat(_))
-  }
-
   def getMergeValuesByType(row: MergeOperatorColumnarBatchRow, fieldIndex: Int, dataType: DataType): Seq[Any] = {
     dataType match {
       case StringType => row.getMergeUTF8String(fieldIndex)
@@ -299,6 +404,12 @@ class MergeMultiFileWithOperator(filesInfo: Seq[(MergePartitionedFile, Partition
 
 }
 
+object MergeMultiFileWithOperator {
+  //rows merged and passed through by all merge readers of this JVM, published by LakeSoulMetaSource
+  val totalRowsMerged = new AtomicLong()
+  val totalRowsPassedThrough = new AtomicLong()
+}
+
 
 /**
   * @param index     filed index in result schema, such as ResultScheme:[a,k,b], field a is 0, k is 1,b is 2
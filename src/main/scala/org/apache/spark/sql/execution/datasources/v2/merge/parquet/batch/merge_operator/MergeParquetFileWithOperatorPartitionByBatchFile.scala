@@ -21,6 +21,7 @@ import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.catalyst.expressions.GenericInternalRow
 import org.apache.spark.sql.connector.read.PartitionReader
 import org.apache.spark.sql.execution.datasources.v2.merge.MergePartitionedFile
+import org.apache.spark.sql.lakesoul.utils.LakeSoulMetaSource
 import org.apache.spark.sql.vectorized.ColumnarBatch
 
 
@@ -32,6 +33,9 @@ class MergeParquetFileWithOperatorPartitionByBatchFile[T](filesInfo: Seq[Seq[(Me
   val filesItr: Iterator[Seq[(MergePartitionedFile, PartitionReader[ColumnarBatch])]] = filesInfo.iterator
   var mergeLogic: MergeMultiFileWithOperator = _
 
+  //executors don't load MetaVersion, which registers the source on the driver
+  LakeSoulMetaSource.register()
+
   /**
     * @return Boolean
     */
@@ -54,6 +58,7 @@ class MergeParquetFileWithOperatorPartitionByBatchFile[T](filesInfo: Seq[Seq[(Me
       if (filesItr.hasNext) {
         //close current file readers
         mergeLogic.closeReadFileReader()
+        publishMergedRows()
 
         mergeLogic = new MergeMultiFileWithOperator(filesItr.next(), mergeOperatorInfo, defaultMergeOp)
       } else {
@@ -84,6 +89,18 @@ class MergeParquetFileWithOperatorPartitionByBatchFile[T](filesInfo: Seq[Seq[(Me
     if (filesInfo.nonEmpty) {
       filesInfo.foreach(f => f.foreach(_._2.close()))
     }
+    if (mergeLogic != null) {
+      publishMergedRows()
+      mergeLogic = null
+    }
+  }
+
+  //adds the rows of the finished merge to the totals of this JVM
+  private def publishMergedRows(): Unit = {
+    MergeMultiFileWithOperator.totalRowsMerged.addAndGet(mergeLogic.rowsMerged)
+    MergeMultiFileWithOperator.totalRowsPassedThrough.addAndGet(mergeLogic.rowsPassedThrough)
+    logDebug(s"Merged ${mergeLogic.rowsMerged} rows by the merge heap, " +
+      s"passed ${mergeLogic.rowsPassedThrough} rows of non-overlapping key runs through")
   }
 
 
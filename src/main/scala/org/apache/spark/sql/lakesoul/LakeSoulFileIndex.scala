@@ -19,13 +19,13 @@ package org.apache.spark.sql.lakesoul
 import java.net.URI
 
 import org.apache.hadoop.fs.{FileStatus, Path}
-import org.apache.spark.sql.catalyst.expressions.{Cast, Expression, GenericInternalRow, Literal}
+import org.apache.spark.sql.catalyst.expressions.Expression
 import org.apache.spark.sql.execution.datasources.{PartitionDirectory, PartitionSpec, PartitioningAwareFileIndex}
 import org.apache.spark.sql.lakesoul.LakeSoulFileIndexUtils._
 import org.apache.spark.sql.lakesoul.utils.{DataFileInfo, SparkUtil}
 import org.apache.spark.sql.types.StructType
 import org.apache.spark.sql.{AnalysisException, SparkSession}
-import com.dmetasoul.lakesoul.meta.{DataOperation, MetaUtils, MetaVersion}
+import com.dmetasoul.lakesoul.meta.{DataOperation, MetaVersion}
 
 import scala.collection.mutable
 
@@ -70,11 +70,9 @@ abstract class LakeSoulFileIndexV2(val spark: SparkSession,
       files =  matchingFiles(partitionFilters, dataFilters)
     }
 
-      files.groupBy(x=>MetaUtils.getPartitionMapFromKey(x.range_partitions)).map {
-      case (partitionValues, files) =>
-        val rowValues: Array[Any] = partitionSchema.map { p =>
-          Cast(Literal(partitionValues(p.name)), p.dataType, Option(timeZone)).eval()
-        }.toArray
+    val partitionIndex = snapshotManagement.snapshot.getPartitionIndex(timeZone)
+      files.groupBy(_.range_partitions).map {
+      case (range_partitions, files) =>
 
         //file status
         val fileStats = files.map { f =>
@@ -87,7 +85,7 @@ abstract class LakeSoulFileIndexV2(val spark: SparkSession,
             absolutePath(f.path, tableName))
         }.toArray
 
-        PartitionDirectory(new GenericInternalRow(rowValues), fileStats)
+        PartitionDirectory(partitionIndex.row(range_partitions), fileStats)
     }.toSeq
   }
 
@@ -31,20 +31,30 @@ object PartitionFilter {
     val partitionFilters = filters.flatMap { filter =>
       LakeSoulUtils.splitMetadataAndDataPredicates(filter, table_info.range_partition_columns, SparkUtil.spark)._1
     }
-    val allPartitions = SparkUtil.allPartitionFilterInfoDF(snapshot)
+    val timeZoneId = SparkUtil.spark.sessionState.conf.sessionLocalTimeZone
+    snapshot.getPartitionIndex(timeZoneId).prune(partitionFilters) match {
+      case Some(positions) =>
+        val partitions = snapshot.getPartitionInfoArray
+        positions.map(i => PartitionFilterInfo(
+          partitions(i).range_value,
+          MetaUtils.getPartitionMapFromKey(partitions(i).range_value),
+          partitions(i).version))
+      case None =>
+        val allPartitions = SparkUtil.allPartitionFilterInfoDF(snapshot)
 
-    import SparkUtil.spark.implicits._
+        import SparkUtil.spark.implicits._
 
-    filterFileList(
-      table_info.range_partition_schema,
-      allPartitions,
-      partitionFilters).as[PartitionFilterInfo].collect()
+        filterFileList(
+          table_info.range_partition_schema,
+          allPartitions,
+          partitionFilters).as[PartitionFilterInfo].collect()
+    }
   }
 
 
   def filesForScan(snapshot: Snapshot,
                    filters: Seq[Expression]): Array[DataFileInfo] = {
-    val partitionRangeValues = partitionsForScan(snapshot, filters).map(_.range_value)
+    val partitionRangeValues = partitionsForScan(snapshot, filters).map(_.range_value).toSet
     val partitionInfo = snapshot.getPartitionInfoArray.filter(p => partitionRangeValues.contains(p.range_value))
     DataOperation.getTableDataInfo(partitionInfo)
   }
@@ -52,15 +62,23 @@ object PartitionFilter {
   def filterFileList(partitionSchema: StructType,
                      files: Seq[DataFileInfo],
                      partitionFilters: Seq[Expression]): Seq[DataFileInfo] = {
-    import SparkUtil.spark.implicits._
-    val partitionsMatched = filterFileList(partitionSchema,
-      files.map(f => PartitionFilterInfo(
-        f.range_partitions,
-        MetaUtils.getPartitionMapFromKey(f.range_partitions),
-        0
-      )).toDF,
-      partitionFilters).as[PartitionFilterInfo].collect()
-    files.filter(f => partitionsMatched.exists(p => p.range_value == f.range_partitions))
+    val rangeValues = files.map(_.range_partitions).distinct.toArray
+    val index = new PartitionIndex(partitionSchema, rangeValues, SparkUtil.spark.sessionState.conf.sessionLocalTimeZone)
+    index.prune(partitionFilters) match {
+      case Some(positions) =>
+        val matched = positions.map(rangeValues).toSet
+        files.filter(f => matched.contains(f.range_partitions))
+      case None =>
+        import SparkUtil.spark.implicits._
+        val partitionsMatched = filterFileList(partitionSchema,
+          files.map(f => PartitionFilterInfo(
+            f.range_partitions,
+            MetaUtils.getPartitionMapFromKey(f.range_partitions),
+            0
+          )).toDF,
+          partitionFilters).as[PartitionFilterInfo].collect().map(_.range_value).toSet
+        files.filter(f => partitionsMatched.contains(f.range_partitions))
+    }
   }
 
   /**
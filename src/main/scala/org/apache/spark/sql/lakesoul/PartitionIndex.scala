@@ -0,0 +1,246 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.lakesoul
+
+import java.util.concurrent.ConcurrentHashMap
+
+import com.dmetasoul.lakesoul.meta.MetaUtils
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.expressions._
+import org.apache.spark.sql.catalyst.plans.logical.{Filter, LocalRelation}
+import org.apache.spark.sql.catalyst.util.TypeUtils
+import org.apache.spark.sql.lakesoul.utils.SparkUtil
+import org.apache.spark.sql.types.{AtomicType, StructType}
+
+/**
+  * Typed view of the range partitions of a table. Partition descriptors are parsed and cast to the partition
+  * column types once and cached, and each partition column gets a sorted index on first use, so that range
+  * predicates like `dt >= ... AND dt < ...` are answered by binary search and the compiled partition predicate
+  * only checks the remaining candidates.
+  *
+  * @param rangeValues range_value of every partition, positions returned by [[prune]] refer to this array
+  * @param inherited   index of a previous snapshot of the same table whose parsed rows are reused
+  */
+class PartitionIndex(val partitionSchema: StructType,
+                     val rangeValues: Array[String],
+                     val timeZoneId: String,
+                     inherited: Option[PartitionIndex] = None) extends PredicateHelper {
+
+  import PartitionIndex._
+
+  private val rows = new ConcurrentHashMap[String, InternalRow]()
+
+  inherited
+    .filter(previous => previous.partitionSchema == partitionSchema && previous.timeZoneId == timeZoneId)
+    .foreach { previous =>
+      rangeValues.foreach { range_value =>
+        val row = previous.rows.get(range_value)
+        if (row != null) {
+          rows.put(range_value, row)
+        }
+      }
+    }
+
+  private val attributes = partitionSchema.toAttributes
+
+  private val sortedColumns = new Array[SortedColumn](partitionSchema.length)
+
+  /** Typed partition values of a range_value, in the order of the partition schema. */
+  def row(range_value: String): InternalRow = {
+    val row = rows.get(range_value)
+    if (row != null) {
+      row
+    } else {
+      val parsed = parseRow(range_value)
+      val existing = rows.putIfAbsent(range_value, parsed)
+      if (existing != null) existing else parsed
+    }
+  }
+
+  /**
+    * Positions of the partitions satisfying all of the partition filters, in ascending order,
+    * or None if the filters cannot be resolved against the partition columns alone.
+    */
+  def prune(partitionFilters: Seq[Expression]): Option[Array[Int]] = {
+    if (partitionFilters.isEmpty) {
+      return Some(rangeValues.indices.toArray)
+    }
+    resolve(partitionFilters).map { condition =>
+      val predicate = Predicate.create(condition, attributes)
+      predicate.initialize(0)
+      candidates(condition).filter(i => predicate.eval(row(rangeValues(i))))
+    }
+  }
+
+  private def parseRow(range_value: String): InternalRow = {
+    val values = MetaUtils.getPartitionMapFromKey(range_value)
+    new GenericInternalRow(partitionSchema.fields.map { field =>
+      values.get(field.name) match {
+        case Some(value) => Cast(Literal(value), field.dataType, Option(timeZoneId)).eval()
+        case None => null
+      }
+    })
+  }
+
+  private def resolve(partitionFilters: Seq[Expression]): Option[Expression] = {
+    val sessionState = SparkUtil.spark.sessionState
+    val resolver = sessionState.conf.resolver
+    val condition = partitionFilters.map(_.transformUp {
+      case a: Attribute =>
+        val unquoted = a.name.stripPrefix("`").stripSuffix("`")
+        partitionSchema.fields.indexWhere(field => resolver(field.name, unquoted)) match {
+          case -1 => a
+          case i => attributes(i)
+        }
+    }).reduceLeft(And)
+
+    val analyzed = sessionState.analyzer.execute(Filter(condition, LocalRelation(attributes)))
+    analyzed match {
+      case Filter(resolvedCondition, _) if analyzed.resolved && analyzed.missingInput.isEmpty =>
+        Some(resolvedCondition)
+      case _ => None
+    }
+  }
+
+  // narrowest slice of the sorted columns bounded by the condition, all partitions if no column is bounded
+  private def candidates(condition: Expression): Array[Int] = {
+    val bounds = splitConjunctivePredicates(condition).flatMap(bound)
+      .groupBy(_.ordinal)
+      .map { case (ordinal, columnBounds) => columnBounds.reduce(_.intersect(_, orderings(ordinal))) }
+    if (bounds.isEmpty) {
+      return rangeValues.indices.toArray
+    }
+    bounds.map(b => sortedColumn(b.ordinal).slice(b))
+      .minBy(_.length)
+      .sorted
+  }
+
+  private def bound(predicate: Expression): Option[Bound] = {
+    predicate match {
+      case EqualTo(Column(i), Value(v)) => Some(Bound(i, v, true, v, true))
+      case EqualTo(Value(v), Column(i)) => Some(Bound(i, v, true, v, true))
+      case LessThan(Column(i), Value(v)) => Some(Bound(i, null, false, v, false))
+      case LessThan(Value(v), Column(i)) => Some(Bound(i, v, false, null, false))
+      case LessThanOrEqual(Column(i), Value(v)) => Some(Bound(i, null, false, v, true))
+      case LessThanOrEqual(Value(v), Column(i)) => Some(Bound(i, v, true, null, false))
+      case GreaterThan(Column(i), Value(v)) => Some(Bound(i, v, false, null, false))
+      case GreaterThan(Value(v), Column(i)) => Some(Bound(i, null, false, v, false))
+      case GreaterThanOrEqual(Column(i), Value(v)) => Some(Bound(i, v, true, null, false))
+      case GreaterThanOrEqual(Value(v), Column(i)) => Some(Bound(i, null, false, v, true))
+      case In(Column(i), list) if list.nonEmpty && list.forall(_.foldable) =>
+        val values = list.map(_.eval()).filter(_ != null)
+        if (values.isEmpty) None else Some(Bound(i, values.min(orderings(i)), true, values.max(orderings(i)), true))
+      case _ => None
+    }
+  }
+
+  private def sortedColumn(ordinal: Int): SortedColumn = synchronized {
+    if (sortedColumns(ordinal) == null) {
+      val ordering = orderings(ordinal)
+      val positions = rangeValues.indices
+        .filter(i => !row(rangeValues(i)).isNullAt(ordinal))
+        .map(i => (row(rangeValues(i)).get(ordinal, partitionSchema(ordinal).dataType), i))
+        .sortBy(_._1)(ordering)
+      sortedColumns(ordinal) = new SortedColumn(positions.map(_._1).toArray, positions.map(_._2).toArray, ordering)
+    }
+    sortedColumns(ordinal)
+  }
+
+  private lazy val orderings: Array[Ordering[Any]] = partitionSchema.fields.map { field =>
+    field.dataType match {
+      case _: AtomicType => TypeUtils.getInterpretedOrdering(field.dataType)
+      case _ => null
+    }
+  }
+
+  private object Column {
+    def unapply(e: Expression): Option[Int] = e match {
+      case a: AttributeReference =>
+        val i = attributes.indexWhere(_.exprId == a.exprId)
+        if (i >= 0 && orderings(i) != null) Some(i) else None
+      case _ => None
+    }
+  }
+
+}
+
+object PartitionIndex {
+
+  private object Value {
+    def unapply(e: Expression): Option[Any] = {
+      if (e.foldable) Option(e.eval()) else None
+    }
+  }
+
+  /** Range of a partition column, a null bound is unbounded. */
+  private case class Bound(ordinal: Int, lower: Any, lowerInclusive: Boolean, upper: Any, upperInclusive: Boolean) {
+    def intersect(other: Bound, ordering: Ordering[Any]): Bound = {
+      val (newLower, newLowerInclusive) = tighter(lower, lowerInclusive, other.lower, other.lowerInclusive,
+        (x, y) => ordering.compare(x, y))
+      val (newUpper, newUpperInclusive) = tighter(upper, upperInclusive, other.upper, other.upperInclusive,
+        (x, y) => ordering.compare(y, x))
+      Bound(ordinal, newLower, newLowerInclusive, newUpper, newUpperInclusive)
+    }
+
+    private def tighter(x: Any, xInclusive: Boolean, y: Any, yInclusive: Boolean,
+                        compare: (Any, Any) => Int): (Any, Boolean) = {
+      if (x == null) {
+        (y, yInclusive)
+      } else if (y == null) {
+        (x, xInclusive)
+      } else {
+        val c = compare(x, y)
+        if (c > 0) (x, xInclusive) else if (c < 0) (y, yInclusive) else (x, xInclusive && yInclusive)
+      }
+    }
+  }
+
+  /** Non-null values of a partition column in ascending order, with the positions of their partitions. */
+  private class SortedColumn(values: Array[Any], positions: Array[Int], ordering: Ordering[Any]) {
+    def slice(bound: Bound): Array[Int] = {
+      val from = if (bound.lower == null) {
+        0
+      } else {
+        search(v => {
+          val c = ordering.compare(v, bound.lower)
+          c > 0 || (c == 0 && bound.lowerInclusive)
+        })
+      }
+      val until = if (bound.upper == null) {
+        values.length
+      } else {
+        search(v => {
+          val c = ordering.compare(v, bound.upper)
+          c > 0 || (c == 0 && !bound.upperInclusive)
+        })
+      }
+      if (from < until) positions.slice(from, until) else Array.empty[Int]
+    }
+
+    // first index whose value satisfies `after`, which is monotone over the sorted values
+    private def search(after: Any => Boolean): Int = {
+      var low = 0
+      var high = values.length
+      while (low < high) {
+        val mid = (low + high) >>> 1
+        if (after(values(mid))) high = mid else low = mid + 1
+      }
+      low
+    }
+  }
+
+}
@@ -51,4 +51,27 @@ class Snapshot(table_info: TableInfo,
 
   def getPartitionInfoArray: Array[PartitionInfo] = partition_info_arr
 
+  private var partitionIndex: PartitionIndex = _
+  private var previousPartitionIndex: Option[PartitionIndex] = None
+
+  /** Typed index of the partitions of this snapshot, positions refer to [[getPartitionInfoArray]]. */
+  def getPartitionIndex(timeZoneId: String): PartitionIndex = synchronized {
+    if (partitionIndex == null || partitionIndex.timeZoneId != timeZoneId) {
+      partitionIndex = new PartitionIndex(
+        table_info.range_partition_schema,
+        partition_info_arr.map(_.range_value),
+        timeZoneId,
+        Option(partitionIndex).orElse(previousPartitionIndex))
+      previousPartitionIndex = None
+    }
+    partitionIndex
+  }
+
+  /** Reuse the parsed partition rows of an older snapshot of the same table, if it built any. */
+  private[lakesoul] def inheritPartitionIndex(previous: Snapshot): Unit = synchronized {
+    if (partitionIndex == null) {
+      previousPartitionIndex = previous.synchronized(Option(previous.partitionIndex))
+    }
+  }
+
 }
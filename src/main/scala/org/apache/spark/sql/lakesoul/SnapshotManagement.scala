@@ -16,12 +16,13 @@
 
 package org.apache.spark.sql.lakesoul
 
-import com.dmetasoul.lakesoul.meta.{MetaUtils, MetaVersion}
-import com.google.common.cache.{CacheBuilder, RemovalNotification}
+import com.dmetasoul.lakesoul.meta.{LatencyHistogram, MetaUtils, MetaVersion}
+import com.google.common.cache.{Cache, CacheBuilder, CacheStats, RemovalNotification, Weigher}
 import javolution.util.ReentrantLock
 
 import java.util.UUID
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 import java.lang
 import java.io.File
 import org.apache.hadoop.fs.Path
@@ -34,7 +35,8 @@ import org.apache.spark.sql.execution.datasources.v2.DataSourceV2Relation
 import org.apache.spark.sql.functions._
 import org.apache.spark.sql.lakesoul.catalog.LakeSoulTableV2
 import org.apache.spark.sql.lakesoul.exception.LakeSoulErrors
-import org.apache.spark.sql.lakesoul.sources.{LakeSoulBaseRelation, LakeSoulSourceUtils}
+import org.apache.spark.sql.internal.SQLConf
+import org.apache.spark.sql.lakesoul.sources.{LakeSoulBaseRelation, LakeSoulSQLConf, LakeSoulSourceUtils}
 import org.apache.spark.sql.lakesoul.utils.{DataFileInfo, PartitionInfo, SparkUtil, TableInfo}
 import org.apache.spark.sql.sources.BaseRelation
 import org.apache.spark.sql.util.CaseInsensitiveStringMap
@@ -94,14 +96,66 @@ class SnapshotManagement(path: String) extends Logging {
 //    new Snapshot(table_info, partition_info_arr)
 //  }
 
+  /**
+    * Partitions of a wide table rarely change all at once, so an existing snapshot is refreshed by comparing
+    * partition versions only and fetching just the partitions whose version moved. A partition dropped and written
+    * again continues with versions after the dropped ones, so an unchanged version always means an unchanged snapshot.
+    */
+  private def refreshSnapshot(cached: Snapshot): Snapshot = {
+    val table_info = MetaVersion.getTableInfo(table_path)
+    if (table_info.table_id != cached.getTableInfo.table_id) {
+      return createSnapshot
+    }
+    if (table_info.table_schema.isEmpty) {
+      throw LakeSoulErrors.schemaNotSetException
+    }
+    val latestVersions = MetaVersion.getLatestPartitionVersions(table_info.table_id)
+    val cachedPartitions = cached.getPartitionInfoArray.map(p => (p.range_value, p)).toMap
+    val changedVersions = latestVersions.filter {
+      case (range_value, version) => cachedPartitions.get(range_value).forall(_.version != version)
+    }
+    if (changedVersions.isEmpty && latestVersions.size == cachedPartitions.size) {
+      val snapshot = new Snapshot(table_info, cached.getPartitionInfoArray)
+      snapshot.inheritPartitionIndex(cached)
+      return snapshot
+    }
+    val changed = MetaVersion.getPartitionInfoForVersions(table_info.table_id, changedVersions)
+      .map(p => (p.range_value, p)).toMap
+    if (changed.size < changedVersions.size) {
+      // partitions were dropped or rewritten meanwhile
+      return createSnapshot
+    }
+    val patched = cached.getPartitionInfoArray
+      .filter(p => latestVersions.contains(p.range_value))
+      .map(p => changed.getOrElse(p.range_value, p))
+    val added = changed.values.filterNot(p => cachedPartitions.contains(p.range_value))
+    SnapshotManagement.refreshedPartitions.addAndGet(changed.size)
+    val snapshot = new Snapshot(table_info, patched ++ added)
+    snapshot.inheritPartitionIndex(cached)
+    snapshot
+  }
+
   def updateSnapshot(): Snapshot = {
     lockInterruptibly {
-      val new_snapshot = getCurrentSnapshot
+      val start = System.nanoTime()
+      val new_snapshot = if (!currentSnapshot.isFirstCommit && LakeSoulSourceUtils.isLakeSoulTableExists(table_path)) {
+        refreshSnapshot(currentSnapshot)
+      } else {
+        getCurrentSnapshot
+      }
+      SnapshotManagement.refreshLatency.record(System.nanoTime() - start)
       currentSnapshot = new_snapshot
+      SnapshotManagement.reweigh(this)
       currentSnapshot
     }
   }
 
+  //cache weight of this table: one plus its partitions plus the commits in their snapshots
+  def weight: Int = {
+    val partitions = currentSnapshot.getPartitionInfoArray
+    math.min(1L + partitions.length + partitions.map(_.read_files.length.toLong).sum, Int.MaxValue).toInt
+  }
+
   def updateSnapshotForVersion(partitionDesc:String,partitionVersion:Int): Unit = {
       currentSnapshot.setPartitionDescAndVersion(partitionDesc,partitionVersion)
   }
@@ -181,13 +235,35 @@ class SnapshotManagement(path: String) extends Logging {
 
 object SnapshotManagement {
 
+  //time spent in updateSnapshot and number of partitions fetched again, over all tables of this JVM
+  val refreshLatency = new LatencyHistogram
+  val refreshedPartitions = new AtomicLong()
+
   /**
     * We create only a single [[SnapshotManagement]] for any given path to avoid wasted work
     * in reconstructing.
     */
   private val snapshotManagementCache = {
+    val conf = SQLConf.get
+    buildCache(
+      conf.getConf(LakeSoulSQLConf.SNAPSHOT_CACHE_MAX_WEIGHT),
+      conf.getConf(LakeSoulSQLConf.SNAPSHOT_CACHE_EXPIRE_MINUTES))
+  }
+
+  /**
+    * Guava splits maxWeight between the segments of a cache and evicts an entry heavier than the share of its
+    * segment as soon as it is stored, so the cache has a single segment and the weight of a table is capped at
+    * maxWeight. Even the heaviest table then stays cached until it is the least recently used one.
+    */
+  private[lakesoul] def buildCache(maxWeight: Long, expireMinutes: Long): Cache[String, SnapshotManagement] = {
     val builder = CacheBuilder.newBuilder()
-      .expireAfterAccess(60, TimeUnit.MINUTES)
+      .concurrencyLevel(1)
+      .expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+      .maximumWeight(maxWeight)
+      .weigher[String, SnapshotManagement](new Weigher[String, SnapshotManagement] {
+        override def weigh(key: String, value: SnapshotManagement): Int = math.min(value.weight, maxWeight).toInt
+      })
+      .recordStats()
       .removalListener((removalNotification: RemovalNotification[String, SnapshotManagement]) => {
         val snapshotManagement = removalNotification.getValue
         try snapshotManagement.snapshot catch {
@@ -196,9 +272,18 @@ object SnapshotManagement {
         }
       })
 
-    builder.maximumSize(5).build[String, SnapshotManagement]()
+    builder.build[String, SnapshotManagement]()
+  }
+
+  //the weight of an entry is computed when it is stored, so store it again once its snapshot changed
+  private def reweigh(snapshotManagement: SnapshotManagement): Unit = {
+    snapshotManagementCache.asMap().replace(snapshotManagement.table_path, snapshotManagement, snapshotManagement)
   }
 
+  def cacheStats: CacheStats = snapshotManagementCache.stats()
+
+  def cacheSize: Long = snapshotManagementCache.size()
+
   def forTable(spark: SparkSession, tableName: TableIdentifier): SnapshotManagement = {
     val catalog = spark.sessionState.catalog
     val catalogTable = catalog.getTableMetadata(tableName).location
@@ -146,6 +146,14 @@ object LakeSoulErrors {
       commit_id)
   }
 
+  def commitFailedByMetaStore(table_name: String, cause: Throwable): MetaException = {
+    new MetaException(
+      s"""
+         |Error: Table `$table_name` was failed to commit, the meta store reports: ${cause.getMessage}
+       """.stripMargin,
+      cause = Some(cause))
+  }
+
   def tableExistsException(table: String): Throwable = {
     new AnalysisException(s"Table $table already exists.")
   }
@@ -19,6 +19,8 @@ package org.apache.spark.sql.lakesoul.sources
 import org.apache.spark.internal.config.{ConfigBuilder, ConfigEntry}
 import org.apache.spark.sql.internal.SQLConf
 
+import java.util.concurrent.TimeUnit
+
 object LakeSoulSQLConf {
 
   def buildConf(key: String): ConfigBuilder = SQLConf.buildConf(s"spark.dmetasoul.lakesoul.$key")
@@ -109,7 +111,8 @@ object LakeSoulSQLConf {
     buildConf("meta.connect.timeout")
       .doc(
         """
-          |Timeout for connecting to cassandra, default is 60s.
+          |Timeout in milliseconds for getting a connection to the meta database from the pool, default is 60s.
+          |Only applies when set explicitly, before the first meta access of the JVM.
         """.stripMargin)
       .intConf
       .createWithDefault(60 * 1000)
@@ -127,9 +130,9 @@ object LakeSoulSQLConf {
     buildConf("meta.connections_per_executor_max")
       .doc(
         """
-          |Maximum number of connections per Host set on each Executor JVM. Will be
-          |updated to DefaultParallelism / Executors for Spark Commands. Defaults to 1
-          | if not specifying and not in a Spark Env.
+          |Maximum size of the meta database connection pool of each JVM. Only applies when set explicitly,
+          |before the first meta access of the JVM, otherwise lakesoul.pg.maximumPoolSize of lakesoul_home
+          |or the pool default is used.
         """.stripMargin)
       .intConf
       .createWithDefault(600)
@@ -163,6 +166,26 @@ object LakeSoulSQLConf {
       .intConf
       .createWithDefault(1)
 
+  val SNAPSHOT_CACHE_MAX_WEIGHT: ConfigEntry[Long] =
+    buildConf("snapshot.cache.maxWeight")
+      .doc(
+        """
+          |Maximum total weight of the table snapshots cached in a JVM. A table weighs one plus its number of
+          |partitions plus the number of commits in their snapshots, capped at this maximum so that any single table
+          |can be cached. The least recently used tables are evicted first. Read once when the cache is created.
+        """.stripMargin)
+      .longConf
+      .createWithDefault(500000L)
+
+  val SNAPSHOT_CACHE_EXPIRE_MINUTES: ConfigEntry[Long] =
+    buildConf("snapshot.cache.expireAfterAccess")
+      .doc(
+        """
+          |Minutes after the last access when a cached table snapshot is dropped. Read once when the cache is created.
+        """.stripMargin)
+      .timeConf(TimeUnit.MINUTES)
+      .createWithDefault(60)
+
   val ALLOW_FULL_TABLE_UPSERT: ConfigEntry[Boolean] =
     buildConf("full.partitioned.table.scan.enabled")
       .doc("If true, enables full table scan when upsert.")
@@ -205,6 +228,39 @@ object LakeSoulSQLConf {
       .booleanConf
       .createWithDefault(false)
 
+  val MERGE_COLUMNAR_READ_ENABLE: ConfigEntry[Boolean] =
+    buildConf("merge.columnar.read.enable")
+      .doc(
+        """
+          |If true, scans merging hash partitioned files return columnar batches instead of rows,
+          |so the columnar plan above the scan is kept. Requires the Parquet vectorized reader.
+          |Only applies to scans whose partitions each read a single file, scans that merge several
+          |files per partition still return rows.
+        """.stripMargin)
+      .booleanConf
+      .createWithDefault(false)
+
+  val MERGE_HEAP_TYPE: ConfigEntry[String] =
+    buildConf("merge.heap.type")
+      .doc(
+        """
+          |Structure ordering the files merged by key, one of `heap`, `loserTree` or `priorityQueue`.
+          |A loser tree needs fewer comparisons per merged row when a partition has many delta files.
+        """.stripMargin)
+      .stringConf
+      .checkValues(Set("heap", "loserTree", "priorityQueue"))
+      .createWithDefault("heap")
+
+  val MERGE_RUN_PASS_THROUGH_ENABLE: ConfigEntry[Boolean] =
+    buildConf("merge.runPassThrough.enable")
+      .doc(
+        """
+          |If true, rows of a delta file whose keys are below the current keys of all other merged files
+          |are returned without merge heap operations, up to the last key of the current batch.
+        """.stripMargin)
+      .booleanConf
+      .createWithDefault(true)
+
   val PART_MERGE_ENABLE: ConfigEntry[Boolean] =
     buildConf("part.merge.enable")
       .doc(
@@ -0,0 +1,98 @@
+/*
+ *
+ *  * Copyright [2022] [DMetaSoul Team]
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *     http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.apache.spark.sql.lakesoul.utils
+
+import com.codahale.metrics.{Gauge, MetricRegistry}
+import com.dmetasoul.lakesoul.meta.{DBConnector, DBMetrics, LatencyHistogram}
+import org.apache.spark.SparkEnv
+import org.apache.spark.metrics.source.Source
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.merge_operator.MergeMultiFileWithOperator
+import org.apache.spark.sql.lakesoul.SnapshotManagement
+
+import java.util.function.Consumer
+
+/**
+  * Publishes the meta database metrics of this JVM to the spark metrics system:
+  * pool state, connection wait time, latency and error count of every DAO method,
+  * snapshot refresh time, snapshot cache usage and the rows of merge reads.
+  */
+class LakeSoulMetaSource(metrics: DBMetrics) extends Source {
+  override val sourceName: String = "lakesoul.meta"
+
+  override val metricRegistry: MetricRegistry = new MetricRegistry
+
+  private def gauge[T](name: String)(value: => T): Unit = {
+    metricRegistry.register(name, new Gauge[T] {
+      override def getValue: T = value
+    })
+  }
+
+  private def registerHistogram(prefix: String, histogram: => LatencyHistogram): Unit = {
+    gauge(MetricRegistry.name(prefix, "count"))(histogram.getCount)
+    gauge(MetricRegistry.name(prefix, "meanMillis"))(histogram.getMeanMillis)
+    gauge(MetricRegistry.name(prefix, "p50Millis"))(histogram.getPercentileMillis(0.5))
+    gauge(MetricRegistry.name(prefix, "p99Millis"))(histogram.getPercentileMillis(0.99))
+    gauge(MetricRegistry.name(prefix, "maxMillis"))(histogram.getMaxNanos / 1e6)
+  }
+
+  private def poolGauge(name: String)(value: com.zaxxer.hikari.HikariPoolMXBean => Int): Unit = {
+    gauge(MetricRegistry.name("pool", name)) {
+      val pool = DBConnector.getPoolMXBean
+      if (pool == null) 0 else value(pool)
+    }
+  }
+
+  poolGauge("active")(_.getActiveConnections)
+  poolGauge("idle")(_.getIdleConnections)
+  poolGauge("total")(_.getTotalConnections)
+  poolGauge("pending")(_.getThreadsAwaitingConnection)
+  registerHistogram("pool.wait", metrics.getPoolWait)
+  gauge("errors")(metrics.getErrorCount)
+  registerHistogram("snapshot.refresh", SnapshotManagement.refreshLatency)
+  gauge("snapshot.refreshedPartitions")(SnapshotManagement.refreshedPartitions.get)
+  gauge("snapshot.cache.size")(SnapshotManagement.cacheSize)
+  gauge("snapshot.cache.hits")(SnapshotManagement.cacheStats.hitCount)
+  gauge("snapshot.cache.misses")(SnapshotManagement.cacheStats.missCount)
+  gauge("snapshot.cache.evictions")(SnapshotManagement.cacheStats.evictionCount)
+  gauge("merge.rowsMerged")(MergeMultiFileWithOperator.totalRowsMerged.get)
+  gauge("merge.rowsPassedThrough")(MergeMultiFileWithOperator.totalRowsPassedThrough.get)
+
+  metrics.addOperationListener(new Consumer[String] {
+    override def accept(op: String): Unit = metricRegistry.synchronized {
+      val prefix = MetricRegistry.name("dao", op)
+      if (!metricRegistry.getNames.contains(MetricRegistry.name(prefix, "count"))) {
+        registerHistogram(prefix, metrics.getLatency(op))
+        gauge(MetricRegistry.name(prefix, "errors"))(metrics.getErrorCount(op))
+      }
+    }
+  })
+}
+
+object LakeSoulMetaSource {
+  @volatile private var registered = false
+
+  // registers the source once per JVM, does nothing before the spark env is up
+  def register(): Unit = synchronized {
+    val env = SparkEnv.get
+    if (!registered && env != null) {
+      env.metricsSystem.registerSource(new LakeSoulMetaSource(DBConnector.getMetrics))
+      registered = true
+    }
+  }
+}
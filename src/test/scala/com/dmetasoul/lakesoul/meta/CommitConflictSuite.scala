@@ -0,0 +1,140 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.alibaba.fastjson.JSONObject
+import com.dmetasoul.lakesoul.meta.entity.{MetaInfo, PartitionInfo, TableInfo}
+import org.apache.spark.SparkFunSuite
+
+import java.util
+import java.util.UUID
+import java.util.concurrent.{ConcurrentLinkedQueue, Executors, TimeUnit}
+import scala.collection.JavaConverters._
+
+class CommitConflictSuite extends SparkFunSuite {
+
+  private def withTable(f: (DBManager, String, String) => Unit): Unit = {
+    val dbManager = new DBManager()
+    val tableId = "table_" + UUID.randomUUID().toString
+    val tablePath = "file:///tmp/lakesoul_commit_conflict/" + tableId
+    dbManager.createNewTable(tableId, "", tablePath, "", new JSONObject(), "range;")
+    val maxAttempts = DBConfig.MAX_COMMIT_ATTEMPTS
+    DBConfig.MAX_COMMIT_ATTEMPTS = 1000
+    try {
+      f(dbManager, tableId, tablePath)
+    } finally {
+      DBConfig.MAX_COMMIT_ATTEMPTS = maxAttempts
+      dbManager.deletePartitionInfoByTableId(tableId)
+      dbManager.deleteTableInfo(tablePath, tableId)
+    }
+  }
+
+  private def metaInfo(tableId: String, tablePath: String, partitions: Seq[String],
+                       snapshot: Seq[UUID], commitOp: String): MetaInfo = {
+    val tableInfo = new TableInfo()
+    tableInfo.setTableId(tableId)
+    tableInfo.setTablePath(tablePath)
+    tableInfo.setProperties(new JSONObject())
+
+    val partitionList = new util.ArrayList[PartitionInfo]()
+    partitions.foreach(partitionDesc => {
+      val partitionInfo = new PartitionInfo()
+      partitionInfo.setTableId(tableId)
+      partitionInfo.setPartitionDesc(partitionDesc)
+      partitionInfo.setSnapshot(new util.ArrayList(snapshot.asJava))
+      partitionInfo.setCommitOp(commitOp)
+      partitionList.add(partitionInfo)
+    })
+
+    val info = new MetaInfo()
+    info.setTableInfo(tableInfo)
+    info.setListPartition(partitionList)
+    info
+  }
+
+  private def runConcurrently(threads: Int)(body: Int => Unit): Unit = {
+    val errors = new ConcurrentLinkedQueue[Throwable]()
+    val pool = Executors.newFixedThreadPool(threads)
+    (0 until threads).foreach(i => pool.submit(new Runnable {
+      override def run(): Unit = {
+        try {
+          body(i)
+        } catch {
+          case e: Throwable => errors.add(e)
+        }
+      }
+    }))
+    pool.shutdown()
+    assert(pool.awaitTermination(10, TimeUnit.MINUTES))
+    assert(errors.isEmpty, errors.asScala.mkString("\n"))
+  }
+
+  test("concurrent appends to overlapping partitions all succeed") {
+    withTable((dbManager, tableId, tablePath) => {
+      val writers = 16
+      val commitsPerWriter = 10
+      val partitions = Seq("range=0", "range=1", "range=2", "range=3")
+      val committed = new ConcurrentLinkedQueue[UUID]()
+      dbManager.getCommitMetrics.reset()
+
+      runConcurrently(writers)(i => {
+        (0 until commitsPerWriter).foreach(j => {
+          val commitId = UUID.randomUUID()
+          // every writer commits into two partitions that overlap with other writers
+          val commitPartitions = Seq(partitions(i % partitions.size), partitions((i + j) % partitions.size)).distinct
+          assert(dbManager.commitData(metaInfo(tableId, tablePath, commitPartitions, Seq(commitId), "AppendCommit"),
+            false, "AppendCommit"))
+          committed.add(commitId)
+        })
+      })
+
+      val allSnapshots = partitions.flatMap(dbManager.getSinglePartitionInfo(tableId, _).getSnapshot.asScala)
+      assert(allSnapshots.toSet == committed.asScala.toSet)
+      partitions.foreach(partitionDesc => {
+        val partitionInfo = dbManager.getSinglePartitionInfo(tableId, partitionDesc)
+        assert(partitionInfo.getSnapshot.size() == partitionInfo.getVersion + 1)
+      })
+
+      val metrics = dbManager.getCommitMetrics
+      assert(metrics.getCommits == writers * commitsPerWriter)
+      assert(metrics.getFailedCommits == 0)
+      assert(metrics.getRetries >= metrics.getConflictedCommits)
+    })
+  }
+
+  test("concurrent compactions of a partition all complete") {
+    withTable((dbManager, tableId, tablePath) => {
+      val partitions = Seq("range=0")
+      (0 until 5).foreach(_ =>
+        assert(dbManager.commitData(metaInfo(tableId, tablePath, partitions, Seq(UUID.randomUUID()), "AppendCommit"),
+          false, "AppendCommit")))
+
+      val compacted = new ConcurrentLinkedQueue[UUID]()
+      runConcurrently(8)(_ => {
+        val commitId = UUID.randomUUID()
+        compacted.add(commitId)
+        assert(dbManager.commitData(metaInfo(tableId, tablePath, partitions, Seq(commitId), "CompactionCommit"),
+          false, "CompactionCommit"))
+      })
+
+      // a compaction losing against another compaction is dropped instead of stacking on top of it
+      val snapshot = dbManager.getSinglePartitionInfo(tableId, "range=0").getSnapshot.asScala
+      assert(snapshot.size == 1)
+      assert(compacted.contains(snapshot.head))
+    })
+  }
+}
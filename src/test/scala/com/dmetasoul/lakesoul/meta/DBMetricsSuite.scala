@@ -0,0 +1,55 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import org.apache.spark.SparkFunSuite
+
+import scala.collection.mutable.ArrayBuffer
+
+class DBMetricsSuite extends SparkFunSuite {
+
+  test("latency histogram percentiles are bucket upper bounds") {
+    val histogram = new LatencyHistogram
+    (1 to 99).foreach(_ => histogram.record(1500 * 1000L))
+    histogram.record(300 * 1000 * 1000L)
+    assert(histogram.getCount == 100)
+    assert(histogram.getMaxNanos == 300 * 1000 * 1000L)
+    assert(histogram.getPercentileMillis(0.5) == 2.048)
+    assert(histogram.getPercentileMillis(0.99) == 2.048)
+    assert(histogram.getPercentileMillis(1.0) >= 300)
+    histogram.reset()
+    assert(histogram.getCount == 0 && histogram.getPercentileMillis(0.99) == 0)
+  }
+
+  test("operations and errors are recorded per dao method") {
+    val metrics = new DBMetrics
+    val seen = ArrayBuffer[String]()
+    metrics.recordLatency("TableInfoDao.insert", 1000L)
+    metrics.addOperationListener(new java.util.function.Consumer[String] {
+      override def accept(op: String): Unit = seen += op
+    })
+    metrics.recordLatency("PartitionInfoDao.transactionInsert", 2000L)
+    metrics.recordError("PartitionInfoDao.transactionInsert")
+    metrics.recordError("PartitionInfoDao.transactionInsert")
+
+    assert(seen == Seq("TableInfoDao.insert", "PartitionInfoDao.transactionInsert"))
+    assert(metrics.getLatency("PartitionInfoDao.transactionInsert").getCount == 1)
+    assert(metrics.getErrorCount("PartitionInfoDao.transactionInsert") == 2)
+    assert(metrics.getErrorCount("TableInfoDao.insert") == 0)
+    assert(metrics.getErrorCount == 2)
+  }
+}
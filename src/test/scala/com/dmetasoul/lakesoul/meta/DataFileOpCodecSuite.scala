@@ -0,0 +1,50 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.dmetasoul.lakesoul.meta.entity.DataFileOp
+import org.apache.spark.SparkFunSuite
+
+import scala.collection.JavaConverters._
+
+class DataFileOpCodecSuite extends SparkFunSuite {
+
+  private def fileOp(path: String, op: String, size: Long, cols: String): DataFileOp = {
+    val dataFileOp = new DataFileOp
+    dataFileOp.setPath(path)
+    dataFileOp.setFileOp(op)
+    dataFileOp.setSize(size)
+    dataFileOp.setFileExistCols(cols)
+    dataFileOp
+  }
+
+  test("encode and decode file ops") {
+    val ops = Seq(
+      fileOp("s3://bucket/table/range=1/part-00000.parquet", "add", 1024L, "a,b,c"),
+      fileOp("s3://bucket/table/range=1/part-00001.parquet", "add", 0L, "a,b,c"),
+      fileOp("s3://bucket/table/range=1/part-00000.parquet", "del", Long.MaxValue, null),
+      fileOp("/tmp/数据/part-00002.parquet", "add", 3L, "a"))
+
+    val decoded = DataFileOpCodec.decode(DataFileOpCodec.encode(ops.asJava)).asScala
+    assert(decoded.map(o => (o.getPath, o.getFileOp, o.getSize, o.getFileExistCols)) ==
+      ops.map(o => (o.getPath, o.getFileOp, o.getSize, o.getFileExistCols)))
+  }
+
+  test("encode empty file ops") {
+    assert(DataFileOpCodec.decode(DataFileOpCodec.encode(Seq.empty[DataFileOp].asJava)).isEmpty)
+  }
+}
@@ -16,22 +16,50 @@
 
 package com.dmetasoul.lakesoul.meta
 
-import org.apache.spark.sql.QueryTest
-import org.apache.spark.sql.lakesoul.exception.MetaException
-import org.apache.spark.sql.lakesoul.test.LakeSoulTestUtils
-import org.apache.spark.sql.test.SharedSparkSession
+import com.dmetasoul.lakesoul.meta.entity.{DataCommitInfo, DataFileOp}
+import org.apache.spark.SparkFunSuite
 
-class DataOperationSuite extends QueryTest
-  with SharedSparkSession with LakeSoulTestUtils {
+import java.util.UUID
+import scala.collection.JavaConverters._
 
-//  private lazy val cassandraConnector = MetaUtils.cassandraConnector
-//  private lazy val database = MetaUtils.DATA_BASE
+class DataOperationSuite extends SparkFunSuite {
 
-  override def beforeAll(): Unit = {
-    super.beforeAll()
+  private def commit(timestamp: Long, ops: (String, String)*): DataCommitInfo = {
+    val dataCommitInfo = new DataCommitInfo
+    dataCommitInfo.setCommitId(UUID.randomUUID())
+    dataCommitInfo.setTimestamp(timestamp)
+    dataCommitInfo.setFileOps(ops.map { case (path, op) =>
+      val fileOp = new DataFileOp
+      fileOp.setPath(path)
+      fileOp.setFileOp(op)
+      fileOp.setSize(1L)
+      fileOp.setFileExistCols("a")
+      fileOp
+    }.asJava)
+    dataCommitInfo
   }
 
-  override def afterEach(): Unit = {
-    super.afterEach()
+  test("files deleted by a later commit are dropped") {
+    val commits = Seq(
+      commit(1, "a" -> "add", "b" -> "add"),
+      commit(2, "c" -> "add", "a" -> "del"),
+      commit(3, "a" -> "add", "c" -> "del", "d" -> "add"),
+      commit(4, "b" -> "add"))
+    val files = DataOperation.getSinglePartitionDataInfo("range=1", commits)
+    assert(files.map(f => (f.path, f.modification_time)) == Seq(("b", 1), ("a", 3), ("d", 3), ("b", 4)))
+    assert(files.forall(f => f.range_partitions == "range=1" && f.file_op == "add"))
+
+    assert(DataOperation.getSinglePartitionDataInfo("range=1", Seq(commit(1, "a" -> "del"))).isEmpty)
+    assert(DataOperation.getSinglePartitionDataInfo("range=1", Nil).isEmpty)
+  }
+
+  test("file path set grows past its expected size") {
+    val set = new FilePathSet(2)
+    val paths = (0 until 1000).map(i => s"s3://bucket/table/range=1/part-$i.parquet")
+    assert(paths.forall(set.add))
+    assert(!set.add(paths.head))
+    assert(set.size == 1000)
+    assert(paths.forall(set.contains))
+    assert(!set.contains("s3://bucket/table/range=1/part-1000.parquet"))
   }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.dmetasoul.lakesoul.meta.embedded.EmbeddedMetaStore
+
+import java.io.File
+import java.nio.file.Files
+import java.util.UUID
+import scala.collection.JavaConverters._
+
+class EmbeddedMetaStoreSuite extends MetaStoreConformanceSuite {
+  override protected val metaStore: MetaStore = new EmbeddedMetaStore
+
+  test("journal is replayed on restart") {
+    val dir = Files.createTempDirectory("lakesoul_meta_journal").toFile
+    val journal = new File(dir, "meta.journal").getPath
+    val store = new EmbeddedMetaStore(journal)
+    val dbManager = new DBManager(store)
+    val tableId = "table_" + UUID.randomUUID().toString
+    val tablePath = "file:///tmp/lakesoul_meta_store/" + tableId
+    dbManager.createNewTable(tableId, "", tablePath, "", new com.alibaba.fastjson.JSONObject(), "range;")
+    val commitIds = (0 until 3).map(_ => UUID.randomUUID())
+    assert(dbManager.batchCommitDataCommitInfo(commitIds.map(dataCommitInfo(tableId, "range=0", _)).asJava))
+    commitIds.foreach(commitId =>
+      assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+    store.close()
+
+    // a torn last line is dropped
+    Files.write(new File(journal).toPath, "[{\"table\":".getBytes, java.nio.file.StandardOpenOption.APPEND)
+
+    val reopened = new DBManager(new EmbeddedMetaStore(journal))
+    assert(reopened.isTableExists(tablePath))
+    val partitionInfo = reopened.getSinglePartitionInfo(tableId, "range=0")
+    assert(partitionInfo.getVersion == 2)
+    assert(partitionInfo.getSnapshot.asScala == commitIds)
+    val dataCommitInfoList = reopened.getTableSinglePartitionDataInfo(partitionInfo).asScala
+    assert(dataCommitInfoList.map(_.getCommitId) == commitIds)
+    assert(dataCommitInfoList.head.getFileOps.get(0).getFileExistCols == "key,value")
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.alibaba.fastjson.JSONObject
+import com.dmetasoul.lakesoul.meta.entity.{MetaInfo, PartitionInfo, TableInfo}
+
+import java.util
+import java.util.UUID
+import java.util.concurrent.{Executors, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+  * Manually executed benchmark comparing commits/sec of the client side commit path
+  * and the single round trip server side commit against a running meta database.
+  * Usage: MetaCommitBenchmark [writers] [commitsPerWriter] [partitions]
+  */
+object MetaCommitBenchmark {
+  def main(args: Array[String]): Unit = {
+    val writers = if (args.length > 0) args(0).toInt else 50
+    val commitsPerWriter = if (args.length > 1) args(1).toInt else 20
+    val partitions = if (args.length > 2) args(2).toInt else 10
+
+    val dbManager = new DBManager()
+    Seq(false, true).foreach(serverSide => {
+      DBConfig.SERVER_SIDE_COMMIT = serverSide
+      val tableId = "table_" + UUID.randomUUID().toString
+      val tablePath = "file:///tmp/lakesoul_meta_benchmark/" + tableId
+      dbManager.createNewTable(tableId, "", tablePath, "", new JSONObject(), "range;")
+
+      val failed = new AtomicInteger()
+      val pool = Executors.newFixedThreadPool(writers)
+      val start = System.nanoTime()
+      (0 until writers).foreach(_ => pool.submit(new Runnable {
+        override def run(): Unit = {
+          (0 until commitsPerWriter).foreach(_ => {
+            if (!dbManager.commitData(metaInfo(tableId, tablePath, partitions), false, "AppendCommit")) {
+              failed.incrementAndGet()
+            }
+          })
+        }
+      }))
+      pool.shutdown()
+      pool.awaitTermination(1, TimeUnit.HOURS)
+      val seconds = (System.nanoTime() - start) / 1e9
+
+      val commits = writers * commitsPerWriter
+      println(s"serverSideCommit=$serverSide writers=$writers partitions=$partitions " +
+        s"commits=$commits failed=${failed.get()} elapsed=${"%.2f".format(seconds)}s " +
+        s"commits/sec=${"%.1f".format(commits / seconds)}")
+
+      dbManager.deletePartitionInfoByTableId(tableId)
+      dbManager.deleteTableInfo(tablePath, tableId)
+    })
+    DBConnector.closeConn()
+  }
+
+  private def metaInfo(tableId: String, tablePath: String, partitions: Int): MetaInfo = {
+    val tableInfo = new TableInfo()
+    tableInfo.setTableId(tableId)
+    tableInfo.setTablePath(tablePath)
+    tableInfo.setProperties(new JSONObject())
+
+    val partitionList = new util.ArrayList[PartitionInfo]()
+    (0 until partitions).foreach(i => {
+      val partitionInfo = new PartitionInfo()
+      partitionInfo.setTableId(tableId)
+      partitionInfo.setPartitionDesc(s"range=$i")
+      partitionInfo.setSnapshot(util.Arrays.asList(UUID.randomUUID()))
+      partitionInfo.setCommitOp("AppendCommit")
+      partitionList.add(partitionInfo)
+    })
+
+    val info = new MetaInfo()
+    info.setTableInfo(tableInfo)
+    info.setListPartition(partitionList)
+    info
+  }
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.alibaba.fastjson.JSONObject
+import com.dmetasoul.lakesoul.meta.entity._
+import org.apache.spark.SparkFunSuite
+
+import java.sql.SQLException
+import java.util
+import java.util.UUID
+import java.util.concurrent.{ConcurrentLinkedQueue, Executors, TimeUnit}
+import scala.collection.JavaConverters._
+
+/**
+  * Behaviour every [[MetaStore]] has to share, run against each implementation through [[DBManager]].
+  */
+abstract class MetaStoreConformanceSuite extends SparkFunSuite {
+
+  protected def metaStore: MetaStore
+
+  protected def withTable(f: (DBManager, String, String) => Unit): Unit = {
+    val dbManager = new DBManager(metaStore)
+    val tableId = "table_" + UUID.randomUUID().toString
+    val tablePath = "file:///tmp/lakesoul_meta_store/" + tableId
+    dbManager.createNewTable(tableId, "", tablePath, "", new JSONObject(), "range;")
+    try {
+      f(dbManager, tableId, tablePath)
+    } finally {
+      dbManager.deleteDataCommitInfo(tableId)
+      dbManager.deletePartitionInfoByTableId(tableId)
+      dbManager.deleteTableInfo(tablePath, tableId)
+    }
+  }
+
+  protected def commit(dbManager: DBManager, tableId: String, tablePath: String, partitions: Seq[String],
+                       commitIds: Seq[UUID], commitOp: String): Boolean = {
+    val tableInfo = new TableInfo()
+    tableInfo.setTableId(tableId)
+    tableInfo.setTablePath(tablePath)
+    tableInfo.setProperties(new JSONObject())
+
+    val partitionList = new util.ArrayList[PartitionInfo]()
+    partitions.foreach(partitionDesc => {
+      val partitionInfo = new PartitionInfo()
+      partitionInfo.setTableId(tableId)
+      partitionInfo.setPartitionDesc(partitionDesc)
+      partitionInfo.setSnapshot(new util.ArrayList(commitIds.asJava))
+      partitionInfo.setCommitOp(commitOp)
+      partitionList.add(partitionInfo)
+    })
+    val metaInfo = new MetaInfo()
+    metaInfo.setTableInfo(tableInfo)
+    metaInfo.setListPartition(partitionList)
+    dbManager.commitData(metaInfo, false, commitOp)
+  }
+
+  protected def dataCommitInfo(tableId: String, partitionDesc: String, commitId: UUID,
+                               timestamp: Long = System.currentTimeMillis()): DataCommitInfo = {
+    val fileOp = new DataFileOp
+    fileOp.setPath(s"file:///tmp/lakesoul_meta_store/$tableId/$partitionDesc/$commitId.parquet")
+    fileOp.setFileOp("add")
+    fileOp.setSize(1024L)
+    fileOp.setFileExistCols("key,value")
+
+    val dataCommitInfo = new DataCommitInfo
+    dataCommitInfo.setTableId(tableId)
+    dataCommitInfo.setPartitionDesc(partitionDesc)
+    dataCommitInfo.setCommitId(commitId)
+    dataCommitInfo.setFileOps(util.Arrays.asList(fileOp))
+    dataCommitInfo.setCommitOp("AppendCommit")
+    dataCommitInfo.setTimestamp(timestamp)
+    dataCommitInfo
+  }
+
+  test("create, find and drop table") {
+    val dbManager = new DBManager(metaStore)
+    val tableId = "table_" + UUID.randomUUID().toString
+    val tableName = "name_" + tableId
+    val tablePath = "file:///tmp/lakesoul_meta_store/" + tableId
+    dbManager.createNewTable(tableId, tableName, tablePath, "schema", new JSONObject(), "range;")
+
+    assert(dbManager.isTableExists(tablePath))
+    assert(dbManager.isTableIdExists(tablePath, tableId))
+    assert(dbManager.getTablePathFromShortTableName(tableName) == tablePath)
+    assert(dbManager.listTables().contains(tablePath))
+    assert(dbManager.getTableInfo(tablePath).getTableSchema == "schema")
+    intercept[IllegalStateException] {
+      dbManager.createNewTable("other_" + tableId, "", tablePath, "", new JSONObject(), "range;")
+    }
+
+    dbManager.deleteShortTableName(tableName, tablePath)
+    dbManager.deleteTableInfo(tablePath, tableId)
+    assert(!dbManager.isTableExists(tablePath))
+    assert(dbManager.shortTableName(tableName).getTableId == null)
+  }
+
+  test("table info changes of other clients are read at once and cached table info is copied") {
+    withTable((dbManager, tableId, tablePath) => {
+      val other = new DBManager(metaStore)
+      assert(dbManager.getTableInfo(tablePath).getProperties.isEmpty)
+      val properties = new JSONObject()
+      properties.put("hashBucketNum", "2")
+      other.updateTableProperties(tableId, properties)
+      assert(dbManager.getTableInfo(tablePath).getProperties.getString("hashBucketNum") == "2")
+
+      val tableInfoEnabled = DBConfig.META_CACHE_TABLE_INFO_ENABLED
+      try {
+        DBConfig.META_CACHE_TABLE_INFO_ENABLED = true
+        val cached = new DBManager(metaStore)
+        cached.getTableInfo(tablePath).getProperties.put("hashBucketNum", "4")
+        assert(cached.getTableInfo(tablePath).getProperties.getString("hashBucketNum") == "2")
+      } finally {
+        DBConfig.META_CACHE_TABLE_INFO_ENABLED = tableInfoEnabled
+      }
+    })
+  }
+
+  test("short table name is set once and other names are refused") {
+    withTable((dbManager, tableId, tablePath) => {
+      val tableName = "name_" + tableId
+      dbManager.updateTableShortName(tablePath, tableId, tableName)
+      dbManager.updateTableShortName(tablePath, tableId, tableName)
+      assert(dbManager.getTableInfo(tablePath).getTableName == tableName)
+      assert(dbManager.getTablePathFromShortTableName(tableName) == tablePath)
+      intercept[IllegalStateException] {
+        dbManager.updateTableShortName(tablePath, tableId, "other_" + tableId)
+      }
+      intercept[IllegalStateException] {
+        new DBManager(metaStore).updateTableShortName(tablePath, tableId, "other_" + tableId)
+      }
+    })
+  }
+
+  test("append commits bump versions and keep data commits in snapshot order") {
+    withTable((dbManager, tableId, tablePath) => {
+      val commitIds = (0 until 5).map(_ => UUID.randomUUID())
+      assert(dbManager.batchCommitDataCommitInfo(commitIds.map(dataCommitInfo(tableId, "range=0", _)).asJava))
+      commitIds.foreach(commitId =>
+        assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+
+      val partitionInfo = dbManager.getSinglePartitionInfo(tableId, "range=0")
+      assert(partitionInfo.getVersion == 4)
+      assert(partitionInfo.getSnapshot.asScala == commitIds)
+      assert(dbManager.getTableSinglePartitionDataInfo(partitionInfo).asScala.map(_.getCommitId) == commitIds)
+      assert(dbManager.getPartitionSnapshot(tableId, "range=0", 2).asScala.map(_.getCommitId) == commitIds.take(3))
+      assert(dbManager.getOnePartitionVersions(tableId, "range=0").asScala.map(_.getVersion).sorted == (0 to 4))
+    })
+  }
+
+  test("a partition dropped and written again is not read from the cache of another manager") {
+    Seq(false, true).foreach(serverSide => withTable((dbManager, tableId, tablePath) => {
+      val serverSideCommit = DBConfig.SERVER_SIDE_COMMIT
+      try {
+        DBConfig.SERVER_SIDE_COMMIT = serverSide
+        val reader = new DBManager(metaStore)
+        val dropped = (0 until 3).map(_ => UUID.randomUUID())
+        assert(dbManager.batchCommitDataCommitInfo(dropped.map(dataCommitInfo(tableId, "range=0", _)).asJava))
+        dropped.foreach(commitId =>
+          assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+        assert(reader.getAllPartitionInfo(tableId).asScala.map(_.getSnapshot.asScala) == Seq(dropped))
+        assert(reader.getSinglePartitionInfo(tableId, "range=0").getSnapshot.asScala == dropped)
+
+        dbManager.deletePartitionInfoByTableAndPartition(tableId, "range=0")
+        assert(reader.getAllPartitionInfo(tableId).isEmpty)
+        assert(reader.getSinglePartitionInfo(tableId, "range=0").getTableId == null)
+
+        val rewritten = (0 until 3).map(_ => UUID.randomUUID())
+        assert(dbManager.batchCommitDataCommitInfo(rewritten.map(dataCommitInfo(tableId, "range=0", _)).asJava))
+        rewritten.foreach(commitId =>
+          assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+
+        // the versions of the written partition continue after the dropped ones
+        val partitionInfo = reader.getSinglePartitionInfo(tableId, "range=0")
+        assert(partitionInfo.getVersion == 5)
+        assert(partitionInfo.getSnapshot.asScala == rewritten)
+        assert(reader.getAllPartitionInfo(tableId).asScala.map(_.getSnapshot.asScala) == Seq(rewritten))
+        assert(reader.getTableSinglePartitionDataInfo(partitionInfo).asScala.map(_.getCommitId) == rewritten)
+      } finally {
+        DBConfig.SERVER_SIDE_COMMIT = serverSideCommit
+      }
+    }))
+  }
+
+  test("data commits of many partitions are fetched in one call") {
+    withTable((dbManager, tableId, tablePath) => {
+      val partitions = (0 until 4).map(i => s"range=$i")
+      val commitIds = partitions.map(_ => (0 until 3).map(_ => UUID.randomUUID()))
+      partitions.zip(commitIds).foreach { case (partitionDesc, ids) =>
+        assert(dbManager.batchCommitDataCommitInfo(ids.map(dataCommitInfo(tableId, partitionDesc, _)).asJava))
+        assert(commit(dbManager, tableId, tablePath, Seq(partitionDesc), ids, "AppendCommit"))
+      }
+
+      val partitionInfoList = partitions.reverse.map(dbManager.getSinglePartitionInfo(tableId, _))
+      val dataInfo = dbManager.getTableDataInfo(partitionInfoList.asJava).asScala.map(_.asScala.map(_.getCommitId))
+      assert(dataInfo == commitIds.reverse)
+      assert(dataInfo == partitionInfoList.map(dbManager.getTableSinglePartitionDataInfo(_).asScala.map(_.getCommitId)))
+    })
+  }
+
+  test("duplicate data commits are rejected as a whole") {
+    withTable((dbManager, tableId, _) => {
+      val commitId = UUID.randomUUID()
+      assert(dbManager.batchCommitDataCommitInfo(util.Arrays.asList(dataCommitInfo(tableId, "range=0", commitId))))
+      val other = UUID.randomUUID()
+      assert(!dbManager.batchCommitDataCommitInfo(util.Arrays.asList(
+        dataCommitInfo(tableId, "range=0", other), dataCommitInfo(tableId, "range=0", commitId))))
+      assert(metaStore.getDataCommitInfoDao.selectByPrimaryKey(tableId, "range=0", other).getCommitId == null)
+    })
+  }
+
+  test("partition versions are inserted all or nothing") {
+    withTable((dbManager, tableId, tablePath) => {
+      assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(UUID.randomUUID()), "AppendCommit"))
+
+      def version0(partitionDesc: String): PartitionInfo = {
+        val partitionInfo = new PartitionInfo()
+        partitionInfo.setTableId(tableId)
+        partitionInfo.setPartitionDesc(partitionDesc)
+        partitionInfo.setVersion(0)
+        partitionInfo.setCommitOp("AppendCommit")
+        partitionInfo.setSnapshot(util.Arrays.asList(UUID.randomUUID()))
+        partitionInfo
+      }
+
+      val partitionInfoDao = metaStore.getPartitionInfoDao
+      assert(!partitionInfoDao.transactionInsert(util.Arrays.asList(version0("range=1"), version0("range=0"))))
+      assert(partitionInfoDao.selectLatestVersion(tableId, "range=1") == -1)
+      assert(partitionInfoDao.transactionInsert(util.Arrays.asList(version0("range=1"))))
+      assert(partitionInfoDao.getLatestVersions(tableId).asScala == Map("range=0" -> 0, "range=1" -> 0))
+    })
+  }
+
+  test("server side commit returns the committed versions") {
+    withTable((dbManager, tableId, _) => {
+      def partition(partitionDesc: String): PartitionInfo = {
+        val partitionInfo = new PartitionInfo()
+        partitionInfo.setTableId(tableId)
+        partitionInfo.setPartitionDesc(partitionDesc)
+        partitionInfo.setSnapshot(new util.ArrayList(Seq(UUID.randomUUID()).asJava))
+        partitionInfo.setCommitOp("AppendCommit")
+        partitionInfo
+      }
+      val partitionInfoDao = metaStore.getPartitionInfoDao
+      assert(partitionInfoDao.serverSideCommit(tableId, util.Arrays.asList(partition("range=0")), "AppendCommit",
+        true, "{}"))
+      val committed = util.Arrays.asList(partition("range=0"), partition("range=1"))
+      assert(partitionInfoDao.serverSideCommit(tableId, committed, "AppendCommit", true, "{}"))
+      assert(committed.asScala.map(p => (p.getPartitionDesc, p.getVersion)) == Seq(("range=0", 1), ("range=1", 0)))
+      assert(dbManager.getSinglePartitionInfo(tableId, "range=0").getSnapshot.size == 2)
+    })
+  }
+
+  test("compaction, update and rollback") {
+    withTable((dbManager, tableId, tablePath) => {
+      val appended = (0 until 3).map(_ => UUID.randomUUID())
+      appended.foreach(commitId =>
+        assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+      val compacted = UUID.randomUUID()
+      assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(compacted), "CompactionCommit"))
+      assert(dbManager.getSinglePartitionInfo(tableId, "range=0").getSnapshot.asScala == Seq(compacted))
+
+      val updated = UUID.randomUUID()
+      assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(updated), "UpdateCommit"))
+      assert(dbManager.getSinglePartitionInfo(tableId, "range=0").getSnapshot.asScala == Seq(updated))
+
+      assert(dbManager.rollbackPartitionByVersion(tableId, "range=0", 1))
+      val rolledBack = dbManager.getSinglePartitionInfo(tableId, "range=0")
+      assert(rolledBack.getVersion == 5)
+      assert(rolledBack.getSnapshot.asScala == appended.take(2))
+    })
+  }
+
+  test("concurrent appends resolve their conflicts") {
+    withTable((dbManager, tableId, tablePath) => {
+      val maxAttempts = DBConfig.MAX_COMMIT_ATTEMPTS
+      DBConfig.MAX_COMMIT_ATTEMPTS = 1000
+      try {
+        val partitions = Seq("range=0", "range=1")
+        val committed = new ConcurrentLinkedQueue[UUID]()
+        val failed = new ConcurrentLinkedQueue[Throwable]()
+        val pool = Executors.newFixedThreadPool(8)
+        (0 until 8).foreach(_ => pool.submit(new Runnable {
+          override def run(): Unit = {
+            try {
+              (0 until 10).foreach(_ => {
+                val commitId = UUID.randomUUID()
+                assert(commit(dbManager, tableId, tablePath, partitions, Seq(commitId), "AppendCommit"))
+                committed.add(commitId)
+              })
+            } catch {
+              case e: Throwable => failed.add(e)
+            }
+          }
+        }))
+        pool.shutdown()
+        assert(pool.awaitTermination(10, TimeUnit.MINUTES))
+        assert(failed.isEmpty, failed.asScala.mkString("\n"))
+
+        partitions.foreach(partitionDesc => {
+          val partitionInfo = dbManager.getSinglePartitionInfo(tableId, partitionDesc)
+          assert(partitionInfo.getVersion == 79)
+          assert(partitionInfo.getSnapshot.asScala.toSet == committed.asScala.toSet)
+        })
+      } finally {
+        DBConfig.MAX_COMMIT_ATTEMPTS = maxAttempts
+      }
+    })
+  }
+
+  test("cleanup keeps the latest versions and referenced data commits") {
+    withTable((dbManager, tableId, tablePath) => {
+      val old = System.currentTimeMillis() - 60 * 60 * 1000L
+      val commitIds = (0 until 4).map(_ => UUID.randomUUID())
+      assert(dbManager.batchCommitDataCommitInfo(commitIds.map(dataCommitInfo(tableId, "range=0", _, old)).asJava))
+      commitIds.foreach(commitId =>
+        assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+      val compacted = UUID.randomUUID()
+      assert(dbManager.batchCommitDataCommitInfo(util.Arrays.asList(dataCommitInfo(tableId, "range=0", compacted, old))))
+      assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(compacted), "CompactionCommit"))
+      val inFlight = UUID.randomUUID()
+      assert(dbManager.batchCommitDataCommitInfo(util.Arrays.asList(dataCommitInfo(tableId, "range=0", inFlight))))
+
+      val result = dbManager.cleanupMetaVersions(tableId, 1, 60 * 1000L)
+      assert(result.getPartitionInfoRows == 4)
+      // only the compacted commit is still referenced, the commit not yet committed is too recent
+      assert(result.getDataCommitInfoRows == 4)
+      assert(result.getPartitionInfoBytes > 0 && result.getDataCommitInfoBytes > 0)
+      assert(dbManager.getOnePartitionVersions(tableId, "range=0").asScala.map(_.getVersion) == Seq(4))
+      val dataCommitInfoDao = metaStore.getDataCommitInfoDao
+      assert(dataCommitInfoDao.selectByPrimaryKey(tableId, "range=0", commitIds.last).getCommitId == null)
+      assert(dataCommitInfoDao.selectByPrimaryKey(tableId, "range=0", compacted).getCommitId == compacted)
+      assert(dataCommitInfoDao.selectByPrimaryKey(tableId, "range=0", inFlight).getCommitId == inFlight)
+    })
+  }
+
+  test("delete partitions and data commits of a table") {
+    withTable((dbManager, tableId, tablePath) => {
+      val commitId = UUID.randomUUID()
+      assert(dbManager.batchCommitDataCommitInfo(util.Arrays.asList(
+        dataCommitInfo(tableId, "range=0", commitId), dataCommitInfo(tableId, "range=1", commitId))))
+      assert(commit(dbManager, tableId, tablePath, Seq("range=0", "range=1"), Seq(commitId), "AppendCommit"))
+
+      dbManager.deletePartitionInfoByTableAndPartition(tableId, "range=0")
+      dbManager.deleteDataCommitInfo(tableId, "range=0")
+      assert(dbManager.getAllPartitionInfo(tableId).asScala.map(_.getPartitionDesc) == Seq("range=1"))
+      assert(metaStore.getDataCommitInfoDao.selectByPrimaryKey(tableId, "range=0", commitId).getCommitId == null)
+
+      dbManager.deletePartitionInfoByTableId(tableId)
+      dbManager.deleteDataCommitInfo(tableId)
+      assert(dbManager.getAllPartitionInfo(tableId).isEmpty)
+      assert(metaStore.getDataCommitInfoDao.selectByPrimaryKey(tableId, "range=1", commitId).getCommitId == null)
+    })
+  }
+}
+
+class JdbcMetaStoreSuite extends MetaStoreConformanceSuite {
+  override protected val metaStore: MetaStore = new JdbcMetaStore
+
+  test("delta snapshots are expanded and appended to by clients that don't write deltas") {
+    Seq(false, true).foreach(serverSide => withTable((dbManager, tableId, tablePath) => {
+      val delta = DBConfig.SNAPSHOT_DELTA_ENABLED
+      val serverSideCommit = DBConfig.SERVER_SIDE_COMMIT
+      try {
+        DBConfig.SERVER_SIDE_COMMIT = serverSide
+        val commitIds = (0 until 4).map(_ => UUID.randomUUID())
+        assert(dbManager.batchCommitDataCommitInfo(commitIds.map(dataCommitInfo(tableId, "range=0", _)).asJava))
+        DBConfig.SNAPSHOT_DELTA_ENABLED = true
+        commitIds.take(3).foreach(commitId =>
+          assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+
+        DBConfig.SNAPSHOT_DELTA_ENABLED = false
+        val partitionInfoDao = metaStore.getPartitionInfoDao
+        assert(partitionInfoDao.findByKey(tableId, "range=0", 2).getCheckpointVersion == 0)
+        assert(dbManager.getSinglePartitionInfo(tableId, "range=0").getSnapshot.asScala == commitIds.take(3))
+
+        assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitIds.last), "AppendCommit"))
+        val partitionInfo = partitionInfoDao.findByKey(tableId, "range=0", 3)
+        assert(partitionInfo.getCheckpointVersion == 3)
+        assert(partitionInfo.getSnapshot.asScala == commitIds)
+        assert(dbManager.getSinglePartitionInfo(tableId, "range=0").getSnapshot.asScala == commitIds)
+      } finally {
+        DBConfig.SNAPSHOT_DELTA_ENABLED = delta
+        DBConfig.SERVER_SIDE_COMMIT = serverSideCommit
+      }
+    }))
+  }
+
+  test("server side commit throws database errors other than a version conflict") {
+    withTable((_, tableId, _) => {
+      val partitionInfo = new PartitionInfo()
+      partitionInfo.setTableId(tableId)
+      partitionInfo.setPartitionDesc("range=0")
+      partitionInfo.setSnapshot(new util.ArrayList(Seq(UUID.randomUUID()).asJava))
+      partitionInfo.setCommitOp("AppendCommit")
+      val e = intercept[IllegalStateException] {
+        metaStore.getPartitionInfoDao.serverSideCommit(tableId, util.Arrays.asList(partitionInfo), "AppendCommit",
+          true, "not json")
+      }
+      assert(e.getCause.asInstanceOf[SQLException].getSQLState != "23505")
+      assert(metaStore.getPartitionInfoDao.selectLatestVersion(tableId, "range=0") == -1)
+    })
+  }
+
+  test("cleanup keeps the delta chain of retained versions") {
+    withTable((dbManager, tableId, tablePath) => {
+      val delta = DBConfig.SNAPSHOT_DELTA_ENABLED
+      try {
+        val old = System.currentTimeMillis() - 60 * 60 * 1000L
+        val commitIds = (0 until 5).map(_ => UUID.randomUUID())
+        assert(dbManager.batchCommitDataCommitInfo(commitIds.map(dataCommitInfo(tableId, "range=0", _, old)).asJava))
+        DBConfig.SNAPSHOT_DELTA_ENABLED = true
+        commitIds.foreach(commitId =>
+          assert(commit(dbManager, tableId, tablePath, Seq("range=0"), Seq(commitId), "AppendCommit")))
+
+        // cleanup from a client that doesn't write deltas must not break the chain either
+        DBConfig.SNAPSHOT_DELTA_ENABLED = false
+        val result = dbManager.cleanupMetaVersions(tableId, 1, 60 * 1000L)
+        assert(result.getPartitionInfoRows == 0)
+        assert(result.getDataCommitInfoRows == 0)
+        assert(dbManager.getOnePartitionVersions(tableId, "range=0").asScala.map(_.getVersion).sorted == (0 to 4))
+        val partitionInfo = dbManager.getSinglePartitionInfo(tableId, "range=0")
+        assert(partitionInfo.getSnapshot.asScala == commitIds)
+        assert(dbManager.getTableSinglePartitionDataInfo(partitionInfo).asScala.map(_.getCommitId) == commitIds)
+      } finally {
+        DBConfig.SNAPSHOT_DELTA_ENABLED = delta
+      }
+    })
+  }
+
+  test("file ops written in binary are read with the default text encoding") {
+    withTable((_, tableId, _) => {
+      val encoding = DBConfig.FILE_OPS_ENCODING
+      val commitId = UUID.randomUUID()
+      val written = dataCommitInfo(tableId, "range=0", commitId)
+      try {
+        DBConfig.FILE_OPS_ENCODING = "binary"
+        assert(metaStore.getDataCommitInfoDao.batchInsert(util.Arrays.asList(written)))
+      } finally {
+        DBConfig.FILE_OPS_ENCODING = encoding
+      }
+
+      assert(DBConfig.FILE_OPS_ENCODING == "text")
+      val dataCommitInfoDao = metaStore.getDataCommitInfoDao
+      Seq(
+        dataCommitInfoDao.selectByPrimaryKey(tableId, "range=0", commitId),
+        dataCommitInfoDao.selectByTableIdPartitionDescCommitList(tableId, "range=0", util.Arrays.asList(commitId)).get(0),
+        dataCommitInfoDao.selectByTableIdCommitPairs(tableId, util.Arrays.asList("range=0"),
+          util.Arrays.asList(commitId)).get(0)
+      ).foreach(read =>
+        assert(read.getFileOps.asScala.map(_.getPath) == written.getFileOps.asScala.map(_.getPath)))
+    })
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.dmetasoul.lakesoul.meta.entity.{DataCommitInfo, DataFileOp}
+import org.apache.spark.sql.lakesoul.utils.DataFileInfo
+
+import java.util
+import java.util.UUID
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Manually executed benchmark of the add/del reconciliation of a partition snapshot, comparing
+  * DataOperation.getSinglePartitionDataInfo with the previous implementation kept below.
+  * Every commit adds filesPerCommit files, and compactions every compactionInterval commits delete all
+  * live files and add one file, the way compaction rewrites a partition.
+  * Usage: PartitionReconcileBenchmark [commits] [filesPerCommit] [compactionInterval] [iterations]
+  */
+object PartitionReconcileBenchmark {
+  def main(args: Array[String]): Unit = {
+    val commits = if (args.length > 0) args(0).toInt else 500
+    val filesPerCommit = if (args.length > 1) args(1).toInt else 100
+    val compactionInterval = if (args.length > 2) args(2).toInt else 50
+    val iterations = if (args.length > 3) args(3).toInt else 20
+
+    val dataCommitInfoList = snapshot(commits, filesPerCommit, compactionInterval)
+    val fileOps = dataCommitInfoList.map(_.getFileOps.size).sum
+    require(DataOperation.getSinglePartitionDataInfo("range=0", dataCommitInfoList) ==
+      previous("range=0", dataCommitInfoList))
+
+    Seq[(String, () => Int)](
+      ("previous", () => previous("range=0", dataCommitInfoList).size),
+      ("current", () => DataOperation.getSinglePartitionDataInfo("range=0", dataCommitInfoList).size)
+    ).foreach { case (name, run) =>
+      (0 until 5).foreach(_ => run())
+      val start = System.nanoTime()
+      var files = 0
+      (0 until iterations).foreach(_ => files = run())
+      val millis = (System.nanoTime() - start) / 1e6 / iterations
+      println(s"$name fileOps=$fileOps files=$files ${"%.2f".format(millis)}ms/partition")
+    }
+  }
+
+  private def snapshot(commits: Int, filesPerCommit: Int, compactionInterval: Int): Seq[DataCommitInfo] = {
+    val live = new ArrayBuffer[String]()
+    (0 until commits).map(i => {
+      val ops = new util.ArrayList[DataFileOp]()
+      if (i > 0 && i % compactionInterval == 0) {
+        live.foreach(path => ops.add(fileOp(path, "del")))
+        live.clear()
+        live += s"s3://bucket/warehouse/table/range=0/compact-$i.parquet"
+        ops.add(fileOp(live.head, "add"))
+      } else {
+        (0 until filesPerCommit).foreach(j => {
+          val path = s"s3://bucket/warehouse/table/range=0/part-$i-$j-${UUID.randomUUID()}.parquet"
+          live += path
+          ops.add(fileOp(path, "add"))
+        })
+      }
+      val dataCommitInfo = new DataCommitInfo
+      dataCommitInfo.setCommitId(UUID.randomUUID())
+      dataCommitInfo.setTimestamp(i)
+      dataCommitInfo.setFileOps(ops)
+      dataCommitInfo
+    })
+  }
+
+  private def fileOp(path: String, op: String): DataFileOp = {
+    val fileOp = new DataFileOp
+    fileOp.setPath(path)
+    fileOp.setFileOp(op)
+    fileOp.setSize(1024L)
+    fileOp.setFileExistCols("key,value")
+    fileOp
+  }
+
+  private def previous(range_value: String, dataCommitInfoList: Seq[DataCommitInfo]): ArrayBuffer[DataFileInfo] = {
+    val file_arr_buf = new ArrayBuffer[DataFileInfo]()
+    val file_res_arr_buf = new ArrayBuffer[DataFileInfo]()
+
+    val dupCheck = new mutable.HashSet[String]()
+    for (metaDataCommitInfo <- dataCommitInfoList) {
+      val fileOps = metaDataCommitInfo.getFileOps.asScala.toArray
+      for (file <- fileOps) {
+        file_arr_buf += DataFileInfo(
+          range_value,
+          file.getPath(),
+          file.getFileOp(),
+          file.getSize(),
+          metaDataCommitInfo.getTimestamp(),
+          file.getFileExistCols()
+        )
+      }
+    }
+    if (file_arr_buf.length > 1) {
+      for (i <- Range(file_arr_buf.size - 1, -1, -1)) {
+        if (file_arr_buf(i).file_op.equals("del")) {
+          dupCheck.add(file_arr_buf(i).path)
+        } else {
+          if (dupCheck.size == 0 || !dupCheck.contains(file_arr_buf(i).path)) {
+            file_res_arr_buf += file_arr_buf(i)
+          }
+        }
+      }
+      file_res_arr_buf.reverse
+    } else {
+      file_arr_buf.filter(_.file_op.equals("add"))
+    }
+  }
+}
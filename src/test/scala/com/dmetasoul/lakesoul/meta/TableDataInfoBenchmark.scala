@@ -0,0 +1,93 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dmetasoul.lakesoul.meta
+
+import com.alibaba.fastjson.JSONObject
+import com.dmetasoul.lakesoul.meta.entity.{DataCommitInfo, DataFileOp, PartitionInfo}
+
+import java.util
+import java.util.UUID
+import scala.collection.JavaConverters._
+
+/**
+  * Manually executed benchmark comparing the time to list the data commits of a snapshot with one query
+  * per partition and with the batched DBManager.getTableDataInfo against a running meta database.
+  * The meta cache is disabled so every run goes to the database.
+  * Usage: TableDataInfoBenchmark [commitsPerPartition] [partitionCounts, comma separated]
+  */
+object TableDataInfoBenchmark {
+  def main(args: Array[String]): Unit = {
+    val commitsPerPartition = if (args.length > 0) args(0).toInt else 5
+    val partitionCounts = if (args.length > 1) args(1).split(",").map(_.toInt).toSeq else Seq(10, 100, 500, 2000)
+
+    DBConfig.META_CACHE_ENABLED = false
+    val dbManager = new DBManager()
+    partitionCounts.foreach(partitions => {
+      val tableId = "table_" + UUID.randomUUID().toString
+      val tablePath = "file:///tmp/lakesoul_meta_benchmark/" + tableId
+      dbManager.createNewTable(tableId, "", tablePath, "", new JSONObject(), "range;")
+
+      val partitionInfoList = (0 until partitions).map(i => {
+        val partitionDesc = s"range=$i"
+        val commitIds = (0 until commitsPerPartition).map(_ => UUID.randomUUID())
+        dbManager.batchCommitDataCommitInfo(commitIds.map(dataCommitInfo(tableId, partitionDesc, _)).asJava)
+        val partitionInfo = new PartitionInfo()
+        partitionInfo.setTableId(tableId)
+        partitionInfo.setPartitionDesc(partitionDesc)
+        partitionInfo.setSnapshot(new util.ArrayList(commitIds.asJava))
+        partitionInfo
+      })
+
+      // warm up the connection pool and the prepared statements
+      partitionInfoList.take(10).foreach(dbManager.getTableSinglePartitionDataInfo)
+      dbManager.getTableDataInfo(partitionInfoList.take(10).asJava)
+
+      val perPartition = time(partitionInfoList.map(dbManager.getTableSinglePartitionDataInfo(_).size).sum)
+      val batched = time(dbManager.getTableDataInfo(partitionInfoList.asJava).asScala.map(_.size).sum)
+      println(s"partitions=$partitions commitsPerPartition=$commitsPerPartition " +
+        s"perPartition=${"%.1f".format(perPartition._2)}ms batched=${"%.1f".format(batched._2)}ms " +
+        s"commits=${perPartition._1}/${batched._1}")
+
+      dbManager.deleteDataCommitInfo(tableId)
+      dbManager.deleteTableInfo(tablePath, tableId)
+    })
+    DBConnector.closeConn()
+  }
+
+  private def time(f: => Int): (Int, Double) = {
+    val start = System.nanoTime()
+    val result = f
+    (result, (System.nanoTime() - start) / 1e6)
+  }
+
+  private def dataCommitInfo(tableId: String, partitionDesc: String, commitId: UUID): DataCommitInfo = {
+    val fileOp = new DataFileOp
+    fileOp.setPath(s"file:///tmp/lakesoul_meta_benchmark/$tableId/$partitionDesc/$commitId.parquet")
+    fileOp.setFileOp("add")
+    fileOp.setSize(1024L)
+    fileOp.setFileExistCols("key,value")
+
+    val dataCommitInfo = new DataCommitInfo
+    dataCommitInfo.setTableId(tableId)
+    dataCommitInfo.setPartitionDesc(partitionDesc)
+    dataCommitInfo.setCommitId(commitId)
+    dataCommitInfo.setFileOps(util.Arrays.asList(fileOp))
+    dataCommitInfo.setCommitOp("AppendCommit")
+    dataCommitInfo.setTimestamp(System.currentTimeMillis())
+    dataCommitInfo
+  }
+}
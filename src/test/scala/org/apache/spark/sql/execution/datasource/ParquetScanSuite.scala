@@ -413,5 +413,43 @@ class ParquetScanSuite extends QueryTest
     }
   }
 
+  test("merge scan returns the same rows as columnar batches") {
+    withTempDir(dir => {
+      val tablePath = dir.getCanonicalPath
+      Seq((20201101, 1, 1, "a"), (20201101, 2, 2, "b"), (20201102, 3, 3, "c"))
+        .toDF("range", "hash", "value", "name")
+        .write
+        .option("rangePartitions", "range")
+        .option("hashPartitions", "hash")
+        .option("hashBucketNum", "2")
+        .format("lakesoul")
+        .save(tablePath)
+
+      val table = LakeSoulTable.forPath(tablePath)
+      table.compaction("range=20201102")
+
+      val singleFileExpected = Seq((20201101, 1, 1, "a"), (20201101, 2, 2, "b"), (20201102, 3, 3, "c"))
+        .toDF("range", "hash", "value", "name")
+      withSQLConf(LakeSoulSQLConf.MERGE_COLUMNAR_READ_ENABLE.key -> "true") {
+        val df = table.toDF.select("range", "hash", "value", "name")
+        assert(df.queryExecution.executedPlan.toString().contains("ColumnarToRow"))
+        checkAnswer(df, singleFileExpected)
+      }
+
+      table.upsert(Seq((20201101, 1, 11, "aa"), (20201101, 4, 4, null)).toDF("range", "hash", "value", "name"))
+
+      val expected = Seq((20201101, 1, 11, "aa"), (20201101, 2, 2, "b"), (20201101, 4, 4, null), (20201102, 3, 3, "c"))
+        .toDF("range", "hash", "value", "name")
+      withSQLConf(LakeSoulSQLConf.MERGE_COLUMNAR_READ_ENABLE.key -> "true") {
+        //partitions merging several files are read as rows
+        val df = table.toDF.select("range", "hash", "value", "name")
+        assert(!df.queryExecution.executedPlan.toString().contains("ColumnarToRow"))
+        checkAnswer(df, expected)
+      }
+      withSQLConf(LakeSoulSQLConf.MERGE_COLUMNAR_READ_ENABLE.key -> "false") {
+        checkAnswer(table.toDF.select("range", "hash", "value", "name"), expected)
+      }
+    })
+  }
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.connector.read.PartitionReader
+import org.apache.spark.sql.execution.datasources.v2.merge.{FieldInfo, KeyIndex, MergePartitionedFile}
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types.{LongType, StringType}
+import org.apache.spark.sql.vectorized.ColumnarBatch
+import org.apache.spark.unsafe.types.UTF8String
+
+object MergeBatchTestUtils {
+
+  /** A batch of (string, long) rows in fresh column vectors. */
+  def batch(rows: Seq[(String, Long)]): ColumnarBatch = {
+    val strings = new OnHeapColumnVector(rows.length, StringType)
+    val longs = new OnHeapColumnVector(rows.length, LongType)
+    rows.zipWithIndex.foreach { case ((s, l), i) =>
+      strings.putByteArray(i, UTF8String.fromString(s).getBytes)
+      longs.putLong(i, l)
+    }
+    val columnarBatch = new ColumnarBatch(Array(strings, longs))
+    columnarBatch.setNumRows(rows.length)
+    columnarBatch
+  }
+
+  /**
+    * An in-memory file of the given version whose first field is the hash key, read batch by batch.
+    * Batches are taken from the iterator only when the reader advances, so they may reuse column vectors.
+    */
+  def file(version: Long, fields: Seq[FieldInfo], batches: Iterator[ColumnarBatch])
+  : (MergePartitionedFile, PartitionReader[ColumnarBatch]) = {
+    val mergePartitionedFile = MergePartitionedFile(InternalRow.empty, s"file$version", 0, 0, s"file$version",
+      "range", Seq(KeyIndex(0, fields.head.fieldType)), fields, fields, version, "range-0", 0)
+    val reader = new PartitionReader[ColumnarBatch] {
+      private var current: ColumnarBatch = _
+
+      override def next(): Boolean = {
+        if (batches.hasNext) {
+          current = batches.next()
+          true
+        } else {
+          false
+        }
+      }
+
+      override def get(): ColumnarBatch = current
+
+      override def close(): Unit = {}
+    }
+    mergePartitionedFile -> reader
+  }
+
+}
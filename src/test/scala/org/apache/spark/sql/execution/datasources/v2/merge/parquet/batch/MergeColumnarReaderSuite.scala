@@ -0,0 +1,60 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.sql.connector.read.PartitionReader
+import org.apache.spark.sql.execution.datasources.v2.merge.{FieldInfo, MergePartitionedFile}
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnarBatch
+
+import scala.collection.mutable.ArrayBuffer
+
+class MergeColumnarReaderSuite extends SparkFunSuite {
+
+  private val schema = StructType(Seq(StructField("hash", StringType), StructField("value", LongType)))
+
+  private val fields = schema.map(field => FieldInfo(field.name, field.dataType))
+
+  private def file(batches: Seq[Seq[(String, Long)]]): (MergePartitionedFile, PartitionReader[ColumnarBatch]) =
+    MergeBatchTestUtils.file(1, fields, batches.iterator.map(MergeBatchTestUtils.batch))
+
+  private def readAll(reader: PartitionReader[ColumnarBatch]): Seq[(String, Long)] = {
+    val rows = new ArrayBuffer[(String, Long)]()
+    while (reader.next()) {
+      val columnarBatch = reader.get()
+      assert(columnarBatch.numRows() <= 2)
+      (0 until columnarBatch.numRows()).foreach(i => {
+        val row = columnarBatch.getRow(i)
+        rows += (row.getUTF8String(0).toString -> row.getLong(1))
+      })
+    }
+    reader.close()
+    rows
+  }
+
+  test("last row of every key run is selected across input and output batches") {
+    val reader = new MergeParquetSingletonFileColumnarReader(
+      Seq(
+        Seq(file(Seq(Seq(("a", 1L), ("a", 2L), ("b", 3L)), Seq(("b", 4L), ("c", 5L)), Seq(("c", 6L))))),
+        Seq(file(Seq(Seq(("c", 7L), ("d", 8L)))))),
+      new MergeColumnarBatchWriter(schema, 2, false))
+
+    // key runs don't continue into the next range partition
+    assert(readAll(reader) == Seq(("a", 2L), ("b", 4L), ("c", 6L), ("c", 7L), ("d", 8L)))
+  }
+}
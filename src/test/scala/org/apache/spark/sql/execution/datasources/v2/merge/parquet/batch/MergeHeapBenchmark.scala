@@ -0,0 +1,120 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import java.util.Comparator
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.MergeHeap
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnarBatch
+import org.apache.spark.unsafe.types.UTF8String
+
+import scala.collection.BufferedIterator
+import scala.collection.JavaConverters._
+
+/**
+  * Manually executed benchmark of the k-way merge heap, comparing the previous comparator that looked up
+  * the key info and matched the key type on every comparison with [[MergeKeyComparator]],
+  * in rows/sec over sorted batches of several files with int, long, string and composite keys.
+  * Usage: MergeHeapBenchmark [files] [rowsPerFile] [iterations]
+  */
+object MergeHeapBenchmark {
+  type heapType = (Long, BufferedIterator[(InternalRow, Int)])
+
+  def main(args: Array[String]): Unit = {
+    val files = if (args.length > 0) args(0).toInt else 20
+    val rowsPerFile = if (args.length > 1) args(1).toInt else 4096
+    val iterations = if (args.length > 2) args(2).toInt else 50
+
+    val batches = (0 until files).map(file => batch(file, files, rowsPerFile))
+    Seq(
+      ("int", Array(KeyIndex(0, IntegerType))),
+      ("long", Array(KeyIndex(1, LongType))),
+      ("string", Array(KeyIndex(2, StringType))),
+      ("int,string", Array(KeyIndex(0, IntegerType), KeyIndex(2, StringType)))
+    ).foreach { case (name, keyInfo) =>
+      val versionKeyInfoMap = (0 until files).map(_.toLong -> keyInfo).toMap
+      Seq[(String, Comparator[heapType])](
+        ("previous", previous(versionKeyInfoMap)),
+        ("specialized", new MergeKeyComparator(versionKeyInfoMap))
+      ).foreach { case (mode, comparator) =>
+        (0 until iterations / 10).foreach(_ => merge(batches, comparator))
+        val start = System.nanoTime()
+        var rows = 0
+        (0 until iterations).foreach(_ => rows = merge(batches, comparator))
+        val seconds = (System.nanoTime() - start) / 1e9
+        println(s"key=$name files=$files mode=$mode rows/sec=${"%.0f".format(rows.toLong * iterations / seconds)}")
+      }
+    }
+  }
+
+  // every file holds every files-th key, so the merge interleaves all files
+  private def batch(file: Int, files: Int, rows: Int): ColumnarBatch = {
+    val ints = new OnHeapColumnVector(rows, IntegerType)
+    val longs = new OnHeapColumnVector(rows, LongType)
+    val strings = new OnHeapColumnVector(rows, StringType)
+    (0 until rows).foreach(i => {
+      val key = i * files + file
+      ints.putInt(i, key)
+      longs.putLong(i, key * 1000003L)
+      strings.putByteArray(i, UTF8String.fromString(f"user_$key%010d").getBytes)
+    })
+    val columnarBatch = new ColumnarBatch(Array(ints, longs, strings))
+    columnarBatch.setNumRows(rows)
+    columnarBatch
+  }
+
+  private def merge(batches: Seq[ColumnarBatch], comparator: Comparator[heapType]): Int = {
+    val heap = new MergeHeap[heapType](comparator)
+    batches.zipWithIndex.foreach { case (columnarBatch, version) =>
+      heap.add(version.toLong -> columnarBatch.rowIterator().asScala.zipWithIndex.buffered)
+    }
+    var rows = 0
+    while (!heap.isEmpty) {
+      val file = heap.peek()
+      file._2.next()
+      rows += 1
+      if (file._2.hasNext) heap.putBack(file) else heap.poll()
+    }
+    rows
+  }
+
+  private def previous(versionKeyInfoMap: Map[Long, Array[KeyIndex]]): Comparator[heapType] = new Comparator[heapType] {
+    override def compare(x: heapType, y: heapType): Int = {
+      for (i <- versionKeyInfoMap(x._1).indices) {
+        val inputX = x._2.head._1
+        val inputY = y._2.head._1
+        val ordinalX = versionKeyInfoMap(x._1)(i).index
+        val ordinalY = versionKeyInfoMap(y._1)(i).index
+        val comparV =
+          versionKeyInfoMap(x._1)(i).keyType match {
+            case StringType => inputX.getUTF8String(ordinalX).compareTo(inputY.getUTF8String(ordinalY))
+            case IntegerType | DateType => inputX.getInt(ordinalX) compareTo (inputY getInt ordinalY)
+            case LongType | TimestampType => inputX.getLong(ordinalX).compareTo(inputY.getLong(ordinalY))
+            case t => throw new RuntimeException("Unsupported data type for merge,type is " + t.getClass.getTypeName)
+          }
+        if (comparV != 0) {
+          return comparV
+        }
+      }
+      x._1.compareTo(y._1)
+    }
+  }
+}
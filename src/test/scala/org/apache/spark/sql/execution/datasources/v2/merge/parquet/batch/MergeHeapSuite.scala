@@ -0,0 +1,75 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.types.LongType
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+class MergeHeapSuite extends SparkFunSuite {
+
+  private def merge(files: Seq[Seq[Long]], mergeHeap: MergeHeapCommon): Seq[(Long, Long)] = {
+    mergeHeap.enqueueBySeq(files.zipWithIndex.filter(_._1.nonEmpty).map { case (keys, version) =>
+      version.toLong -> keys.map(key => InternalRow(key)).iterator.zipWithIndex.buffered
+    })
+    val merged = new ArrayBuffer[(Long, Long)]()
+    while (mergeHeap.nonEmpty) {
+      val file = mergeHeap.dequeue()
+      merged += (file._2.head._1.getLong(0) -> file._1)
+      file._2.next()
+      if (file._2.hasNext) mergeHeap.enqueue(file) else mergeHeap.poll()
+    }
+    merged
+  }
+
+  test("all merge structures order files by key, then by version") {
+    val random = new Random(42)
+    Seq(1, 2, 3, 7, 16, 33).foreach { k =>
+      val files = (0 until k).map(_ => Seq.fill(random.nextInt(20))(random.nextInt(50).toLong).sorted)
+      val versionKeyInfoMap = (0 until k).map(_.toLong -> Array(KeyIndex(0, LongType))).toMap
+      val expected = files.zipWithIndex.flatMap { case (keys, version) => keys.map(_ -> version.toLong) }.sorted
+
+      assert(merge(files, new MergeOptimizeHeap(versionKeyInfoMap)) == expected)
+      assert(merge(files, new MergePriorityQ(versionKeyInfoMap)) == expected)
+      assert(merge(files, new MergeLoserTree(versionKeyInfoMap)) == expected)
+    }
+  }
+
+  test("runner-up is the file merged after the current one") {
+    val files = Seq(Seq(3L, 9L), Seq(1L, 4L), Seq(7L), Seq(2L, 5L))
+    val versionKeyInfoMap = files.indices.map(_.toLong -> Array(KeyIndex(0, LongType))).toMap
+    Seq(new MergeOptimizeHeap(versionKeyInfoMap), new MergePriorityQ(versionKeyInfoMap),
+      new MergeLoserTree(versionKeyInfoMap)).foreach { mergeHeap =>
+      mergeHeap.enqueueBySeq(files.zipWithIndex.map { case (keys, version) =>
+        version.toLong -> keys.map(key => InternalRow(key)).iterator.zipWithIndex.buffered
+      })
+      val runnerUps = new ArrayBuffer[Long]()
+      while (mergeHeap.nonEmpty) {
+        val file = mergeHeap.dequeue()
+        val runnerUp = mergeHeap.runnerUp()
+        runnerUps += (if (runnerUp == null) -1L else runnerUp._2.head._1.getLong(0))
+        file._2.next()
+        if (file._2.hasNext) mergeHeap.enqueue(file) else mergeHeap.poll()
+      }
+      assert(runnerUps == Seq(2L, 3L, 4L, 5L, 7L, 9L, -1L))
+    }
+  }
+}
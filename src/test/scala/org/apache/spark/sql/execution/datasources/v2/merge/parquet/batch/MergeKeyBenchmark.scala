@@ -0,0 +1,106 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnarBatch
+import org.apache.spark.unsafe.types.UTF8String
+
+import scala.collection.JavaConverters._
+
+/**
+  * Manually executed benchmark of the duplicate key detection of merge on read, comparing the previous
+  * string concatenation of the key columns with MergeKey, in rows/sec over sorted batches with duplicate keys.
+  * Usage: MergeKeyBenchmark [rows] [duplicatesPerKey] [iterations]
+  */
+object MergeKeyBenchmark {
+  def main(args: Array[String]): Unit = {
+    val rows = if (args.length > 0) args(0).toInt else 4096
+    val duplicates = if (args.length > 1) args(1).toInt else 2
+    val iterations = if (args.length > 2) args(2).toInt else 2000
+
+    Seq(
+      ("int", Array(KeyIndex(0, IntegerType))),
+      ("long", Array(KeyIndex(1, LongType))),
+      ("string", Array(KeyIndex(2, StringType))),
+      ("int,string", Array(KeyIndex(0, IntegerType), KeyIndex(2, StringType)))
+    ).foreach { case (name, keyInfo) =>
+      val columnarBatch = batch(rows, duplicates)
+      Seq[(String, () => Int)](
+        ("previous", () => countKeysByString(columnarBatch, keyInfo)),
+        ("mergeKey", () => countKeysByMergeKey(columnarBatch, keyInfo))
+      ).foreach { case (mode, run) =>
+        (0 until iterations / 10).foreach(_ => run())
+        val start = System.nanoTime()
+        var keys = 0
+        (0 until iterations).foreach(_ => keys = run())
+        val seconds = (System.nanoTime() - start) / 1e9
+        println(s"key=$name mode=$mode keys=$keys rows/sec=${"%.0f".format(rows.toLong * iterations / seconds)}")
+      }
+    }
+  }
+
+  private def batch(rows: Int, duplicates: Int): ColumnarBatch = {
+    val ints = new OnHeapColumnVector(rows, IntegerType)
+    val longs = new OnHeapColumnVector(rows, LongType)
+    val strings = new OnHeapColumnVector(rows, StringType)
+    (0 until rows).foreach(i => {
+      val key = i / duplicates
+      ints.putInt(i, key)
+      longs.putLong(i, key * 1000003L)
+      strings.putByteArray(i, UTF8String.fromString(f"user_$key%010d").getBytes)
+    })
+    val columnarBatch = new ColumnarBatch(Array(ints, longs, strings))
+    columnarBatch.setNumRows(rows)
+    columnarBatch
+  }
+
+  private def combineKey(row: InternalRow, keyInfo: Array[KeyIndex]): String = {
+    keyInfo.map(keyIndex => {
+      row.get(keyIndex.index, keyIndex.keyType).toString
+    })
+      .reduce(_.concat(_))
+  }
+
+  private def countKeysByString(columnarBatch: ColumnarBatch, keyInfo: Array[KeyIndex]): Int = {
+    var keys = 0
+    var lastKey: String = null
+    columnarBatch.rowIterator().asScala.foreach(row => {
+      val key = combineKey(row, keyInfo)
+      if (!key.equals(lastKey)) {
+        lastKey = key
+        keys += 1
+      }
+    })
+    keys
+  }
+
+  private def countKeysByMergeKey(columnarBatch: ColumnarBatch, keyInfo: Array[KeyIndex]): Int = {
+    var keys = 0
+    val lastKey = new MergeKey(keyInfo.map(_.keyType))
+    columnarBatch.rowIterator().asScala.foreach(row => {
+      if (lastKey.isEmpty || !lastKey.matches(row, keyInfo)) {
+        lastKey.set(row, keyInfo)
+        keys += 1
+      }
+    })
+    keys
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.MergeBatchTestUtils.batch
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnarBatch
+import org.apache.spark.unsafe.types.UTF8String
+
+class MergeKeySuite extends SparkFunSuite {
+
+  test("keys are compared by column, not by their concatenation") {
+    val keyInfo = Array(KeyIndex(0, StringType), KeyIndex(1, LongType))
+    val rows = batch(Seq(("1", 23L), ("12", 3L), ("1", 23L)))
+    val key = new MergeKey(keyInfo.map(_.keyType))
+    assert(key.isEmpty)
+
+    key.set(rows.getRow(0), keyInfo)
+    assert(!key.isEmpty)
+    assert(!key.matches(rows.getRow(1), keyInfo))
+    assert(key.matches(rows.getRow(2), keyInfo))
+
+    key.clear()
+    assert(key.isEmpty)
+  }
+
+  test("key survives reuse of the column vectors") {
+    val keyInfo = Array(KeyIndex(0, StringType), KeyIndex(1, LongType))
+    val rows = batch(Seq(("a", 1L)))
+    val key = new MergeKey(keyInfo.map(_.keyType))
+    key.set(rows.getRow(0), keyInfo)
+
+    rows.column(0).asInstanceOf[OnHeapColumnVector].reset()
+    rows.column(0).asInstanceOf[OnHeapColumnVector].putByteArray(0, UTF8String.fromString("b").getBytes)
+    assert(!key.matches(rows.getRow(0), keyInfo))
+
+    // another file may have the key columns at other ordinals
+    val other = batch(Seq(("a", 1L)))
+    assert(key.matches(new ColumnarBatch(Array(other.column(1), other.column(0)), 1).getRow(0),
+      Array(KeyIndex(1, StringType), KeyIndex(0, LongType))))
+  }
+
+  test("files are ordered by key, then by version, whatever their key ordinals") {
+    val rows = batch(Seq(("a", 2L), ("a", 1L), ("b", 1L)))
+    val swapped = batch(Seq(("a", 1L)))
+    val comparator = new MergeKeyComparator(Map(
+      1L -> Array(KeyIndex(0, StringType), KeyIndex(1, LongType)),
+      2L -> Array(KeyIndex(1, StringType), KeyIndex(0, LongType))))
+
+    def file(version: Long, columnarBatch: ColumnarBatch, rowId: Int) =
+      (version, Iterator((columnarBatch.getRow(rowId), rowId)).buffered)
+
+    val reordered = new ColumnarBatch(Array(swapped.column(1), swapped.column(0)), 1)
+    assert(comparator.compare(file(1L, rows, 1), file(1L, rows, 0)) < 0)
+    assert(comparator.compare(file(1L, rows, 2), file(1L, rows, 0)) > 0)
+    assert(comparator.compare(file(1L, rows, 1), file(2L, reordered, 0)) < 0)
+    assert(comparator.compare(file(2L, reordered, 0), file(1L, rows, 1)) > 0)
+    assert(comparator.compare(file(2L, reordered, 0), file(1L, rows, 0)) < 0)
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch
+
+import org.apache.spark.sql.execution.datasources.v2.merge.KeyIndex
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnarBatch
+
+import scala.collection.JavaConverters._
+
+/**
+  * Manually executed benchmark of the merge structures, in rows/sec of a k-way merge of sorted batches with
+  * interleaved long keys, for [[MergeOptimizeHeap]], [[MergePriorityQ]] and [[MergeLoserTree]].
+  * Usage: MergeLoserTreeBenchmark [rowsPerMerge] [iterations]
+  */
+object MergeLoserTreeBenchmark {
+
+  def main(args: Array[String]): Unit = {
+    val rowsPerMerge = if (args.length > 0) args(0).toInt else 1 << 18
+    val iterations = if (args.length > 1) args(1).toInt else 20
+
+    Seq(2, 4, 8, 16, 32, 64, 128).foreach { files =>
+      val batches = (0 until files).map(file => batch(file, files, rowsPerMerge / files))
+      val versionKeyInfoMap = (0 until files).map(_.toLong -> Array(KeyIndex(0, LongType))).toMap
+      Seq[(String, () => MergeHeapCommon)](
+        ("heap", () => new MergeOptimizeHeap(versionKeyInfoMap)),
+        ("priorityQueue", () => new MergePriorityQ(versionKeyInfoMap)),
+        ("loserTree", () => new MergeLoserTree(versionKeyInfoMap))
+      ).foreach { case (name, create) =>
+        (0 until math.max(iterations / 10, 1)).foreach(_ => merge(batches, create()))
+        val start = System.nanoTime()
+        var rows = 0
+        (0 until iterations).foreach(_ => rows = merge(batches, create()))
+        val seconds = (System.nanoTime() - start) / 1e9
+        println(s"files=$files structure=$name rows/sec=${"%.0f".format(rows.toLong * iterations / seconds)}")
+      }
+    }
+  }
+
+  // every file holds every files-th key, so the merge interleaves all files
+  private def batch(file: Int, files: Int, rows: Int): ColumnarBatch = {
+    val longs = new OnHeapColumnVector(rows, LongType)
+    (0 until rows).foreach(i => longs.putLong(i, i.toLong * files + file))
+    val columnarBatch = new ColumnarBatch(Array(longs))
+    columnarBatch.setNumRows(rows)
+    columnarBatch
+  }
+
+  private def merge(batches: Seq[ColumnarBatch], mergeHeap: MergeHeapCommon): Int = {
+    mergeHeap.enqueueBySeq(batches.zipWithIndex.map { case (columnarBatch, version) =>
+      version.toLong -> columnarBatch.rowIterator().asScala.zipWithIndex.buffered
+    })
+    var rows = 0
+    while (mergeHeap.nonEmpty) {
+      val file = mergeHeap.dequeue()
+      file._2.next()
+      rows += 1
+      if (file._2.hasNext) mergeHeap.enqueue(file) else mergeHeap.poll()
+    }
+    rows
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.merge_operator
+
+import org.apache.spark.SparkFunSuite
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.connector.read.PartitionReader
+import org.apache.spark.sql.execution.datasources.v2.merge.{FieldInfo, MergePartitionedFile}
+import org.apache.spark.sql.execution.datasources.v2.merge.parquet.batch.MergeBatchTestUtils
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types.LongType
+import org.apache.spark.sql.vectorized.ColumnarBatch
+
+import scala.collection.mutable.ArrayBuffer
+
+class MergeMultiFileWithOperatorSuite extends SparkFunSuite {
+
+  // like the Parquet reader, every batch of a file is read into the same column vectors
+  private def file(version: Long, batches: Seq[Seq[Long]]): (MergePartitionedFile, PartitionReader[ColumnarBatch]) = {
+    val keys = new OnHeapColumnVector(batches.map(_.length).max, LongType)
+    val values = new OnHeapColumnVector(batches.map(_.length).max, LongType)
+    val columnarBatch = new ColumnarBatch(Array(keys, values))
+    MergeBatchTestUtils.file(version, Seq(FieldInfo("hash", LongType), FieldInfo("value", LongType)),
+      batches.iterator.map { batch =>
+        batch.zipWithIndex.foreach { case (key, i) =>
+          keys.putLong(i, key)
+          values.putLong(i, key * 10 + version)
+        }
+        columnarBatch.setNumRows(batch.length)
+        columnarBatch
+      })
+  }
+
+  test("key runs below all other files are passed through") {
+    val totalRowsMerged = MergeMultiFileWithOperator.totalRowsMerged.get
+    val totalRowsPassedThrough = MergeMultiFileWithOperator.totalRowsPassedThrough.get
+    val reader = new MergeParquetFileWithOperatorPartitionByBatchFile[InternalRow](
+      Seq(Seq(
+        file(1, Seq(Seq(1L, 2L, 2L, 3L, 4L), Seq(4L, 10L))),
+        file(2, Seq(Seq(5L, 6L, 7L, 11L))))),
+      Map.empty,
+      new DefaultMergeOp[Any])
+
+    val rows = new ArrayBuffer[(Long, Long)]()
+    while (reader.next()) {
+      val row = reader.get()
+      rows += (row.getLong(0) -> row.getLong(1))
+    }
+    assert(rows == Seq((1L, 11L), (2L, 21L), (3L, 31L), (4L, 41L), (5L, 52L), (6L, 62L), (7L, 72L), (10L, 101L), (11L, 112L)))
+    // the rows of keys 1 to 3 are below key 5 of the other file, key 4 continues in the next batch
+    assert(reader.mergeLogic.rowsPassedThrough == 4)
+    assert(reader.mergeLogic.rowsMerged == 7)
+    reader.close()
+    // the counts are published when the reader is done with the files
+    assert(MergeMultiFileWithOperator.totalRowsPassedThrough.get - totalRowsPassedThrough == 4)
+    assert(MergeMultiFileWithOperator.totalRowsMerged.get - totalRowsMerged == 7)
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.lakesoul
+
+import org.apache.hadoop.fs.Path
+import org.apache.spark.sql._
+import org.apache.spark.sql.functions.expr
+import org.apache.spark.sql.lakesoul.test.LakeSoulTestUtils
+import org.apache.spark.sql.lakesoul.utils.SparkUtil
+import org.apache.spark.sql.test.SharedSparkSession
+import org.apache.spark.sql.types.{DateType, IntegerType, StructType}
+
+class PartitionFilterSuite
+  extends QueryTest
+    with SharedSparkSession
+    with LakeSoulTestUtils {
+
+  import testImplicits._
+
+  test("partition filters are evaluated in the driver") {
+    withTempDir(dir => {
+      val tablePath = SparkUtil.makeQualifiedTablePath(new Path(dir.getCanonicalPath)).toString
+      Seq((1, "x", 1), (2, "x", 2), (2, "y", 3), (3, "y", 4)).toDF("range", "hash", "value")
+        .write
+        .mode("append")
+        .format("lakesoul")
+        .option("rangePartitions", "range")
+        .save(tablePath)
+      val snapshot = SnapshotManagement(tablePath).snapshot
+
+      def partitionsForScan(condition: String): Set[String] = {
+        val group = "partition-filter-suite"
+        spark.sparkContext.setJobGroup(group, group)
+        try {
+          val partitions = PartitionFilter.partitionsForScan(snapshot, Seq(expr(condition).expr))
+          assert(spark.sparkContext.statusTracker.getJobIdsForGroup(group).isEmpty)
+          partitions.map(_.range_value).toSet
+        } finally {
+          spark.sparkContext.clearJobGroup()
+        }
+      }
+
+      assert(partitionsForScan("range = 2") == Set("range=2"))
+      assert(partitionsForScan("range >= '2'") == Set("range=2", "range=3"))
+      assert(partitionsForScan("range in (1, 3) or range is null") == Set("range=1", "range=3"))
+      assert(partitionsForScan("range > 3").isEmpty)
+
+      val files = PartitionFilter.filesForScan(snapshot, Seq(expr("range < 3").expr))
+      assert(files.map(_.range_partitions).toSet == Set("range=1", "range=2"))
+      assert(PartitionFilter.filterFileList(snapshot.getTableInfo.range_partition_schema, files,
+        Seq(expr("range = 1").expr)).map(_.range_partitions).toSet == Set("range=1"))
+    })
+  }
+
+  test("partition index prunes ranges and caches typed rows") {
+    val schema = new StructType().add("dt", DateType).add("hour", IntegerType)
+    val rangeValues = for (day <- (1 to 5).toArray; hour <- Array(0, 12))
+      yield s"dt=2022-01-0$day,hour=$hour"
+    val index = new PartitionIndex(schema, rangeValues :+ "dt=bad,hour=1", "UTC")
+
+    def prune(condition: String): Seq[String] =
+      index.prune(Seq(expr(condition).expr)).get.map(index.rangeValues).toSeq
+
+    assert(prune("dt >= '2022-01-02' and dt < '2022-01-04'") ==
+      Seq("dt=2022-01-02,hour=0", "dt=2022-01-02,hour=12", "dt=2022-01-03,hour=0", "dt=2022-01-03,hour=12"))
+    assert(prune("'2022-01-04' < dt and hour > 6") == Seq("dt=2022-01-05,hour=12"))
+    assert(prune("dt in ('2022-01-01', '2022-01-05') and hour = 0") ==
+      Seq("dt=2022-01-01,hour=0", "dt=2022-01-05,hour=0"))
+    assert(prune("dt > '2022-01-05' or hour = 1") == Seq("dt=bad,hour=1"))
+    assert(prune("dt < '2022-01-01'").isEmpty)
+    assert(index.prune(Seq(expr("value > 1").expr)).isEmpty)
+
+    assert(index.row("dt=bad,hour=1").isNullAt(0))
+    assert(index.row(rangeValues.head) eq index.row(rangeValues.head))
+    val next = new PartitionIndex(schema, rangeValues.tail, "UTC", Some(index))
+    assert(next.row(rangeValues(1)) eq index.row(rangeValues(1)))
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright [2022] [DMetaSoul Team]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.lakesoul
+
+import com.dmetasoul.lakesoul.tables.LakeSoulTable
+import org.apache.hadoop.fs.Path
+import org.apache.spark.sql._
+import org.apache.spark.sql.lakesoul.test.LakeSoulTestUtils
+import org.apache.spark.sql.lakesoul.utils.SparkUtil
+import org.apache.spark.sql.test.SharedSparkSession
+
+class SnapshotManagementSuite
+  extends QueryTest
+    with SharedSparkSession
+    with LakeSoulTestUtils {
+
+  import testImplicits._
+
+  test("updateSnapshot only fetches partitions whose version moved") {
+    withTempDir(dir => {
+      val tablePath = SparkUtil.makeQualifiedTablePath(new Path(dir.getCanonicalPath)).toString
+      def append(ranges: Seq[String]): Unit = {
+        ranges.map(range => (range, 1)).toDF("range", "value")
+          .write
+          .mode("append")
+          .format("lakesoul")
+          .option("rangePartitions", "range")
+          .save(tablePath)
+      }
+      append(Seq("a", "b", "c"))
+      val snapshotManagement = SnapshotManagement(tablePath)
+      val before = snapshotManagement.updateSnapshot().getPartitionInfoArray.map(p => (p.range_value, p)).toMap
+
+      val refreshedBefore = SnapshotManagement.refreshedPartitions.get
+      append(Seq("b", "d"))
+      val after = snapshotManagement.updateSnapshot().getPartitionInfoArray.map(p => (p.range_value, p)).toMap
+
+      assert(after.keySet == Set("a", "b", "c", "d"))
+      assert(after("a") eq before("a"))
+      assert(after("c") eq before("c"))
+      assert(after("b").version == before("b").version + 1)
+      assert(after("b").read_files.length == 2)
+      assert(SnapshotManagement.refreshedPartitions.get - refreshedBefore == 2)
+
+      val unchanged = snapshotManagement.updateSnapshot().getPartitionInfoArray.map(p => (p.range_value, p)).toMap
+      assert(unchanged.forall { case (range, p) => p eq after(range) })
+      assert(SnapshotManagement.refreshLatency.getCount >= 3)
+
+      checkAnswer(spark.read.format("lakesoul").load(tablePath).groupBy("range").count(),
+        Seq(Row("a", 1L), Row("b", 2L), Row("c", 1L), Row("d", 1L)))
+
+      // written again as often as before the drop, the partition must not keep its dropped files
+      LakeSoulTable.forPath(tablePath).dropPartition("range='b'")
+      append(Seq("b"))
+      append(Seq("b"))
+      val rewritten = snapshotManagement.updateSnapshot().getPartitionInfoArray.map(p => (p.range_value, p)).toMap
+      assert(rewritten("b").version > after("b").version)
+      assert(rewritten("b").read_files.length == 2)
+      assert(rewritten("b").read_files.intersect(after("b").read_files).isEmpty)
+      assert(rewritten("a") eq after("a"))
+    })
+  }
+
+  test("snapshot cache weighs tables and records stats") {
+    withTempDir(dir => {
+      val tablePath = SparkUtil.makeQualifiedTablePath(new Path(dir.getCanonicalPath)).toString
+      Seq(("a", 1), ("b", 1)).toDF("range", "value")
+        .write
+        .mode("append")
+        .format("lakesoul")
+        .option("rangePartitions", "range")
+        .save(tablePath)
+      SnapshotManagement.clearCache()
+      val before = SnapshotManagement.cacheStats
+
+      val snapshotManagement = SnapshotManagement(tablePath)
+      assert(SnapshotManagement(tablePath) eq snapshotManagement)
+      val stats = SnapshotManagement.cacheStats.minus(before)
+      assert(stats.missCount == 1)
+      assert(stats.hitCount == 1)
+      assert(snapshotManagement.weight == 1 + 2 + 2)
+    })
+  }
+
+  test("tables heavier than a quarter of the cache weight stay cached") {
+    withTempDir(dir => {
+      val tablePath = SparkUtil.makeQualifiedTablePath(new Path(dir.getCanonicalPath)).toString
+      Seq(("a", 1), ("b", 1)).toDF("range", "value")
+        .write
+        .mode("append")
+        .format("lakesoul")
+        .option("rangePartitions", "range")
+        .save(tablePath)
+      val snapshotManagement = SnapshotManagement(tablePath)
+      assert(snapshotManagement.weight == 5)
+
+      val cache = SnapshotManagement.buildCache(8, 60)
+      cache.put(tablePath, snapshotManagement)
+      assert(cache.getIfPresent(tablePath) eq snapshotManagement)
+
+      // heavier than the whole cache, counted at the maximum weight
+      val smallCache = SnapshotManagement.buildCache(2, 60)
+      smallCache.put(tablePath, snapshotManagement)
+      assert(smallCache.getIfPresent(tablePath) eq snapshotManagement)
+    })
+  }
+}